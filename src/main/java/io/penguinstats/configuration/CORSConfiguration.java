@@ -16,8 +16,8 @@ public class CORSConfiguration implements WebMvcConfigurer {
         registry.addMapping("/**").allowedMethods("GET", "POST", "OPTIONS").allowedOrigins("*")
                 .allowedHeaders("origin", "content-type", "accept", "authorization", "Access-Control-Allow-Origin",
                         "Access-Control-Allow-Credentials", CustomHeader.X_PENGUIN_VARIANT)
-                .exposedHeaders(CustomHeader.X_PENGUIN_SET_PENGUIN_ID, CustomHeader.X_PENGUIN_COMPATIBLE,
-                        CustomHeader.X_PENGUIN_UPGRAGE)
+                .exposedHeaders(CustomHeader.X_PENGUIN_SET_PENGUIN_ID, CustomHeader.X_PENGUIN_SET_PENGUIN_TOKEN,
+                        CustomHeader.X_PENGUIN_COMPATIBLE, CustomHeader.X_PENGUIN_UPGRAGE)
                 .allowCredentials(true);
     }
 
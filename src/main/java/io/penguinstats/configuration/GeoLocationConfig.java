@@ -1,8 +1,11 @@
 package io.penguinstats.configuration;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.io.Resource;
@@ -13,13 +16,19 @@ import com.maxmind.geoip2.DatabaseReader;
 
 import lombok.extern.log4j.Log4j2;
 
+/**
+ * Loads the GeoLite2 Country database. If geoip.path is set, the file there is memory-mapped, so the database stays
+ * off the heap and is not copied at startup. Otherwise the copy shipped in the classpath is read into memory.
+ */
 @Log4j2
 @Configuration
 public class GeoLocationConfig {
 
-	private static DatabaseReader reader = null;
 	private final ResourceLoader resourceLoader;
 
+	@Value("${geoip.path:}")
+	private String path;
+
 	public GeoLocationConfig(ResourceLoader resourceLoader) {
 		this.resourceLoader = resourceLoader;
 	}
@@ -27,20 +36,26 @@ public class GeoLocationConfig {
 	@Bean
 	public DatabaseReader databaseReader() {
 		try {
-			log.info("GeoLocationConfig: Trying to load GeoLite2-Country database...");
-
-			Resource resource = resourceLoader.getResource("classpath:maxmind/GeoLite2-City.mmdb");
-			InputStream dbAsStream = resource.getInputStream();
-
-			log.info("GeoLocationConfig: Database was loaded successfully.");
-
-			// Initialize the reader
-			return reader = new DatabaseReader.Builder(dbAsStream).fileMode(Reader.FileMode.MEMORY).build();
+			if (StringUtils.isNotEmpty(path)) {
+				log.info("GeoLocationConfig: Trying to map GeoLite2-Country database from {}...", path);
+				DatabaseReader reader =
+						new DatabaseReader.Builder(new File(path)).fileMode(Reader.FileMode.MEMORY_MAPPED).build();
+				log.info("GeoLocationConfig: Database was mapped successfully.");
+				return reader;
+			}
 
+			log.info("GeoLocationConfig: Trying to load GeoLite2-Country database...");
+			Resource resource = resourceLoader.getResource("classpath:maxmind/GeoLite2-Country.mmdb");
+			try (InputStream dbAsStream = resource.getInputStream()) {
+				DatabaseReader reader =
+						new DatabaseReader.Builder(dbAsStream).fileMode(Reader.FileMode.MEMORY).build();
+				log.info("GeoLocationConfig: Database was loaded successfully.");
+				return reader;
+			}
 		} catch (IOException | NullPointerException e) {
 			log.error("Database reader cound not be initialized. ", e);
 			return null;
 		}
 	}
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,82 @@
+package io.penguinstats.configuration;
+
+import java.util.Arrays;
+
+import org.bson.Document;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.data.convert.ReadingConverter;
+import org.springframework.data.convert.WritingConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.mapping.event.AbstractMongoEventListener;
+import org.springframework.data.mongodb.core.mapping.event.AfterLoadEvent;
+
+import io.penguinstats.model.Drop;
+import io.penguinstats.model.ItemDrop;
+import io.penguinstats.model.ItemDropFields;
+
+@Configuration
+public class MongoConfig {
+
+    @Bean
+    public MongoCustomConversions customConversions() {
+        return new MongoCustomConversions(Arrays.asList(DropWritingConverter.INSTANCE, DropReadingConverter.INSTANCE));
+    }
+
+    @Bean
+    public LegacyItemDropListener legacyItemDropListener() {
+        return new LegacyItemDropListener();
+    }
+
+    /**
+     * Reports written before the compact schema are renamed to it before they are mapped, so that every entity read
+     * of item drops sees all fields whichever schema they are stored in.
+     */
+    static class LegacyItemDropListener extends AbstractMongoEventListener<ItemDrop> {
+
+        @Override
+        public void onAfterLoad(AfterLoadEvent<ItemDrop> event) {
+            if (event.getDocument() != null)
+                ItemDropFields.normalizeLegacyFields(event.getDocument());
+        }
+
+    }
+
+    /**
+     * Drops are stored as {i: itemId, q: quantity}.
+     */
+    @WritingConverter
+    enum DropWritingConverter implements Converter<Drop, Document> {
+
+        INSTANCE;
+
+        @Override
+        public Document convert(Drop drop) {
+            return new Document(ItemDropFields.DROP_ITEM_ID, drop.getItemId()).append(ItemDropFields.DROP_QUANTITY,
+                    drop.getQuantity());
+        }
+
+    }
+
+    /**
+     * Drops written before the compact schema use the full field names, both are accepted.
+     */
+    @ReadingConverter
+    enum DropReadingConverter implements Converter<Document, Drop> {
+
+        INSTANCE;
+
+        @Override
+        public Drop convert(Document doc) {
+            String itemId = doc.containsKey(ItemDropFields.DROP_ITEM_ID) ? doc.getString(ItemDropFields.DROP_ITEM_ID)
+                    : doc.getString(ItemDropFields.LEGACY_DROP_ITEM_ID);
+            Integer quantity = doc.containsKey(ItemDropFields.DROP_QUANTITY)
+                    ? doc.getInteger(ItemDropFields.DROP_QUANTITY)
+                    : doc.getInteger(ItemDropFields.LEGACY_DROP_QUANTITY);
+            return new Drop(itemId, quantity);
+        }
+
+    }
+
+}
@@ -79,7 +79,6 @@ public class RedisConfig {
         durationMap.put(CacheValue.SEGMENTED_DROP_MATRIX, Duration.ZERO);
         durationMap.put(CacheValue.PATTERN_MATRIX, Duration.ZERO);
         durationMap.put(CacheValue.DROP_INFO_LIST, Duration.ofDays(1L));
-        durationMap.put(CacheValue.DROP_SET, Duration.ofDays(1L));
         durationMap.put(CacheValue.LATEST_DROP_INFO_MAP, Duration.ofDays(1L));
         durationMap.put(CacheValue.LATEST_MAX_ACCUMULATABLE_TIME_RANGE_MAP, Duration.ofDays(1L));
         durationMap.put(CacheValue.LATEST_TIME_RANGE_MAP, Duration.ofDays(1L));
@@ -3,7 +3,6 @@ package io.penguinstats.configuration.handler;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
-import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.BindException;
@@ -13,6 +12,7 @@ import org.springframework.web.bind.annotation.ExceptionHandler;
 
 import io.penguinstats.controller.v2.response.ErrorResponseWrapper;
 import io.penguinstats.enums.ErrorCode;
+import io.penguinstats.model.AuthPrincipal;
 import io.penguinstats.util.AuthUtil;
 import io.penguinstats.util.ValidationUtil;
 import io.penguinstats.util.exception.BusinessException;
@@ -25,13 +25,10 @@ public class RestExceptionHandler {
 
     private static final String SERVICE_UNAVAILABLE = "Service unavailable, you can report to penguin-statistics.";
 
-    @Autowired
-    private AuthUtil authUtil;
-
     @ExceptionHandler({BusinessException.class})
     public ResponseEntity<ErrorResponseWrapper> handleBusinessException(BusinessException ex,
             HttpServletRequest request) {
-        String userID = authUtil.authUserFromRequest(request);
+        String userID = getUserID(request);
         log.info("business exception: uid={} msg={}", userID, ex.getMessage());
 
         ErrorResponseWrapper errorResponse = new ErrorResponseWrapper(
@@ -54,7 +51,7 @@ public class RestExceptionHandler {
                     .fieldErrorToString((((MethodArgumentNotValidException)ex).getBindingResult().getFieldErrors()));
             apiResponse.setMessage(validationErrorStr);
         }
-        String userID = authUtil.authUserFromRequest(request);
+        String userID = getUserID(request);
         log.info("validation error: uid={} validationInfo={}", userID, validationErrorStr);
 
         return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(apiResponse);
@@ -85,4 +82,13 @@ public class RestExceptionHandler {
         return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(errorResponse);
     }
 
+    /**
+     * Only the principal already resolved by the request is logged. Resolving it here would look up the user again,
+     * and may run the IP update, on every error.
+     */
+    private static String getUserID(HttpServletRequest request) {
+        AuthPrincipal principal = AuthUtil.peekPrincipal(request);
+        return principal == null ? null : principal.getUserID();
+    }
+
 }
@@ -20,6 +20,7 @@ public class Constant {
         public static final String X_PENGUIN_UPGRAGE = "X-Penguin-Upgrade";
         public static final String X_PENGUIN_COMPATIBLE = "X-Penguin-Compatible";
         public static final String X_PENGUIN_SET_PENGUIN_ID = "X-Penguin-Set-PenguinID";
+        public static final String X_PENGUIN_SET_PENGUIN_TOKEN = "X-Penguin-Set-PenguinToken";
         public static final String X_PENGUIN_VARIANT = "X-Penguin-Variant";
     }
 
@@ -42,6 +43,10 @@ public class Constant {
         public static final String OUTLIER_IMG_USERNAME = "outlier_img_username";
         public static final String OUTLIER_IMG_PASSWORD = "outlier_img_password";
         public static final String OUTLIER_IMG_EXPIRATION = "outlier_img_expiration";
+        public static final String EXPORT_USER_ID_SALT = "export_user_id_salt";
+        public static final String PENGUIN_TOKEN_KEYS = "penguin_token_keys";
+        public static final String PENGUIN_TOKEN_TTL = "penguin_token_ttl";
+        public static final String UPLOAD_COUNTERS_SINCE = "upload_counters_since";
     }
 
     public static class CacheKeyPrefix {
@@ -73,6 +78,9 @@ public class Constant {
         public static final int OUTLIER_IMG_EXPIRATION = 30;
         public static final long SCREENSHOT_REPORT_TIMESTAMP_THRESHOLD = 1800000L;
         public static final int USER_ID_COOKIE_EXPIRY = 60 * 60 * 24 * 365 * 10;
+        public static final int REPORT_HISTORY_PAGE_SIZE = 50;
+        public static final int REPORT_HISTORY_PAGE_SIZE_MAX = 200;
+        public static final long PENGUIN_TOKEN_TTL = 60 * 60 * 24 * 7;
     }
 
     public static class OutlierUpYunSignature {
@@ -90,7 +98,6 @@ public class Constant {
         public static final String SEGMENTED_DROP_MATRIX = "segmented_drop_matrix";
         public static final String PATTERN_MATRIX = "pattern_matrix";
         public static final String DROP_INFO_LIST = "drop_info_list";
-        public static final String DROP_SET = "drop_set";
         public static final String LATEST_DROP_INFO_MAP = "latest_drop_info_map";
         public static final String LATEST_MAX_ACCUMULATABLE_TIME_RANGE_MAP = "latest_max_accumulatable_time_range_map";
         public static final String LATEST_TIME_RANGE_MAP = "latest_time_range_map";
@@ -102,6 +109,7 @@ public class Constant {
 
     public static class Auth {
         public static final String AUTHORIZATION_REALM_PENGUIN_ID = "PenguinID";
+        public static final String AUTHORIZATION_REALM_PENGUIN_TOKEN = "PenguinToken";
     }
 
 }
@@ -0,0 +1,47 @@
+package io.penguinstats.controller.v2.api;
+
+import java.util.Date;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import io.penguinstats.enums.Server;
+import io.penguinstats.model.ReferenceBundle;
+import io.penguinstats.service.ReferenceBundleService;
+import io.penguinstats.util.DateUtil;
+import io.penguinstats.util.EncodedResponseUtil;
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+import io.swagger.annotations.ApiParam;
+
+@RestController("bundleController_v2")
+@RequestMapping("/api/v2/bundle")
+@Api(tags = {"Bundle"})
+public class BundleController {
+
+    @Autowired
+    private ReferenceBundleService referenceBundleService;
+
+    @ApiOperation(value = "Get the reference bundle",
+            notes = "Items, stages with their current drop infos, zones, event periods, notices, frontend configs and "
+                    + "formula in one document. Supports If-None-Match and gzip.")
+    @GetMapping(produces = "application/json;charset=UTF-8")
+    public ResponseEntity<byte[]> getBundle(
+            @ApiParam(value = "Indicate which server you want to query. Default is CN.",
+                    required = false) @RequestParam(name = "server", required = false,
+                            defaultValue = "CN") Server server,
+            @RequestHeader(name = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            @RequestHeader(name = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        ReferenceBundle bundle = referenceBundleService.getBundle(server);
+        HttpHeaders headers = new HttpHeaders();
+        headers.add(HttpHeaders.LAST_MODIFIED, DateUtil.formatDate(new Date(bundle.getLastModified())));
+        return EncodedResponseUtil.toResponse(bundle.getDocument(), headers, ifNoneMatch, acceptEncoding);
+    }
+
+}
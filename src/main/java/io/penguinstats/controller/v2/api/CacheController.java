@@ -1,5 +1,6 @@
 package io.penguinstats.controller.v2.api;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Caching;
 import org.springframework.http.HttpStatus;
@@ -9,15 +10,29 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
 import io.penguinstats.constant.Constant.CacheValue;
+import io.penguinstats.service.CustomQueryCacheService;
+import io.penguinstats.service.DropInfoIndexService;
+import io.penguinstats.service.FormulaService;
+import io.penguinstats.service.ReferenceBundleService;
 
 @RestController("cacheController_v2")
 @RequestMapping("/api/v2/cache")
 public class CacheController {
 
+    @Autowired
+    private DropInfoIndexService dropInfoIndexService;
+    @Autowired
+    private ReferenceBundleService referenceBundleService;
+    @Autowired
+    private FormulaService formulaService;
+    @Autowired
+    private CustomQueryCacheService customQueryCacheService;
+
     @DeleteMapping(path = "/item")
     @Caching(evict = {@CacheEvict(value = CacheValue.LISTS, key = "'itemList'"),
             @CacheEvict(value = CacheValue.MAPS, key = "'itemMap'")})
     public ResponseEntity<String> evictItemCache() {
+        referenceBundleService.invalidate();
         return new ResponseEntity<>(HttpStatus.NO_CONTENT);
     }
 
@@ -25,6 +40,7 @@ public class CacheController {
     @Caching(evict = {@CacheEvict(value = CacheValue.LISTS, key = "'zoneList'"),
             @CacheEvict(value = CacheValue.MAPS, key = "'zoneMap'")})
     public ResponseEntity<String> evictZoneCache() {
+        referenceBundleService.invalidate();
         return new ResponseEntity<>(HttpStatus.NO_CONTENT);
     }
 
@@ -35,9 +51,11 @@ public class CacheController {
             @CacheEvict(value = CacheValue.DROP_INFO_LIST, allEntries = true),
             @CacheEvict(value = CacheValue.LATEST_DROP_INFO_MAP, allEntries = true),
             @CacheEvict(value = CacheValue.LATEST_MAX_ACCUMULATABLE_TIME_RANGE_MAP, allEntries = true),
-            @CacheEvict(value = CacheValue.LATEST_TIME_RANGE_MAP, allEntries = true),
-            @CacheEvict(value = CacheValue.DROP_SET, allEntries = true)})
+            @CacheEvict(value = CacheValue.LATEST_TIME_RANGE_MAP, allEntries = true)})
     public ResponseEntity<String> evictStageCache() {
+        referenceBundleService.invalidate();
+        dropInfoIndexService.invalidate();
+        customQueryCacheService.invalidateAll();
         return new ResponseEntity<>(HttpStatus.NO_CONTENT);
     }
 
@@ -45,12 +63,16 @@ public class CacheController {
     @Caching(evict = {@CacheEvict(value = CacheValue.LISTS, key = "'timeRangeList'"),
             @CacheEvict(value = CacheValue.MAPS, key = "'timeRangeMap'")})
     public ResponseEntity<String> evictTimeRangeCache() {
+        referenceBundleService.invalidate();
+        dropInfoIndexService.invalidate();
+        customQueryCacheService.invalidateAll();
         return new ResponseEntity<>(HttpStatus.NO_CONTENT);
     }
 
     @DeleteMapping(path = "/notice")
     @Caching(evict = {@CacheEvict(value = CacheValue.LISTS, key = "'noticeList'")})
     public ResponseEntity<String> evictNoticeCache() {
+        referenceBundleService.invalidate();
         return new ResponseEntity<>(HttpStatus.NO_CONTENT);
     }
 
@@ -63,12 +85,20 @@ public class CacheController {
     @DeleteMapping(path = "/config")
     @Caching(evict = {@CacheEvict(value = CacheValue.MAPS, key = "'frontendConfigMap'")})
     public ResponseEntity<String> evictFrontendConfigsCache() {
+        referenceBundleService.invalidate();
         return new ResponseEntity<>(HttpStatus.NO_CONTENT);
     }
 
     @DeleteMapping(path = "/event-period")
     @Caching(evict = {@CacheEvict(value = CacheValue.LISTS, key = "'eventPeriodList'")})
     public ResponseEntity<String> evictEventPeriodCache() {
+        referenceBundleService.invalidate();
+        return new ResponseEntity<>(HttpStatus.NO_CONTENT);
+    }
+
+    @DeleteMapping(path = "/formula")
+    public ResponseEntity<String> reloadFormula() {
+        formulaService.reload();
         return new ResponseEntity<>(HttpStatus.NO_CONTENT);
     }
 
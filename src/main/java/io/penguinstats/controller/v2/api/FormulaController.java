@@ -1,18 +1,15 @@
 package io.penguinstats.controller.v2.api;
 
-import java.io.BufferedReader;
-import java.io.File;
-import java.io.FileReader;
-
-import org.springframework.core.io.ClassPathResource;
-import org.springframework.core.io.Resource;
-import org.springframework.http.HttpStatus;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
-import io.penguinstats.util.exception.ServiceException;
+import io.penguinstats.service.FormulaService;
+import io.penguinstats.util.EncodedResponseUtil;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 
@@ -21,29 +18,15 @@ import io.swagger.annotations.ApiOperation;
 @Api(tags = {"Formula"})
 public class FormulaController {
 
+    @Autowired
+    private FormulaService formulaService;
+
     @ApiOperation(value = "Get all Formulas", notes = "Get synthesis conversion formulas.")
     @GetMapping(produces = "application/json;charset=UTF-8")
-    public ResponseEntity<String> getFormula() {
-        Resource resource = new ClassPathResource("json/formula.json");
-        File sourceFile;
-        try {
-            sourceFile = resource.getFile();
-        } catch (Exception ex) {
-            throw new ServiceException(ex);
-        }
-
-        try (FileReader fileReader = new FileReader(sourceFile);
-                BufferedReader reader = new BufferedReader(fileReader)) {
-
-            StringBuilder builder = new StringBuilder();
-            String currentLine = reader.readLine();
-            while (currentLine != null) {
-                builder.append(currentLine).append("\n");
-                currentLine = reader.readLine();
-            }
-            return new ResponseEntity<>(builder.toString(), HttpStatus.OK);
-        } catch (Exception ex) {
-            throw new ServiceException(ex);
-        }
+    public ResponseEntity<byte[]> getFormula(
+            @RequestHeader(name = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            @RequestHeader(name = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        return EncodedResponseUtil.toResponse(formulaService.getDocument(), new HttpHeaders(), ifNoneMatch,
+                acceptEncoding);
     }
 }
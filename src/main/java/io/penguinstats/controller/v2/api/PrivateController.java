@@ -1,19 +1,32 @@
 package io.penguinstats.controller.v2.api;
 
+import java.util.Map;
+
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 
+import org.bson.types.ObjectId;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import io.penguinstats.controller.v2.response.MatrixQueryResponse;
 import io.penguinstats.controller.v2.response.PatternQueryResponse;
 import io.penguinstats.controller.v2.response.TrendQueryResponse;
+import io.penguinstats.dao.DerivedDataBulkWriter;
+import io.penguinstats.dao.DerivedDataBulkWriter.Stats;
+import io.penguinstats.enums.ErrorCode;
+import io.penguinstats.enums.ExportFormat;
 import io.penguinstats.enums.Server;
+import io.penguinstats.model.ItemDropExportConditions;
+import io.penguinstats.service.ItemDropExportService;
 import io.penguinstats.util.ResultUtil;
+import io.penguinstats.util.exception.BusinessException;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 
@@ -25,22 +38,30 @@ public class PrivateController {
 	@Autowired
 	private ResultUtil resultUtil;
 
+	@Autowired
+	private DerivedDataBulkWriter derivedDataBulkWriter;
+
+	@Autowired
+	private ItemDropExportService itemDropExportService;
+
 	@ApiOperation(value = "Get matrix result",
 			notes = "Return the Result Matrix in the \"lastest accumulatable time ranges\". This is for internal use.",
-			hidden = true)
+			response = MatrixQueryResponse.class, hidden = true)
 	@GetMapping(path = "/result/matrix/{server:CN|US|JP|KR}/{source:global|personal}",
-			produces = "application/json;charset=UTF-8")
-	public ResponseEntity<MatrixQueryResponse> getMatrix(HttpServletRequest request,
+			produces = {"application/json;charset=UTF-8", "application/cbor",
+					"application/vnd.penguin-stats.matrix+columnar"})
+	public void getMatrix(HttpServletRequest request, HttpServletResponse response,
 			@PathVariable("server") Server server, @PathVariable("source") String source) throws Exception {
-		return resultUtil.getMatrixHelper(request, server, true, null, null, "personal".equals(source));
+		resultUtil.getMatrixHelper(request, response, server, true, null, null, "personal".equals(source));
 	}
 
 	@ApiOperation(value = "Get the segmented Result Matrix for all Items and Stages",
-			notes = "Return the segmented Matrix results of server `server`. This is for internal use.", hidden = true)
+			notes = "Return the segmented Matrix results of server `server`. This is for internal use.",
+			response = TrendQueryResponse.class, hidden = true)
 	@GetMapping(path = "/result/trend/{server:CN|US|JP|KR}", produces = "application/json;charset=UTF-8")
-	public ResponseEntity<TrendQueryResponse> getAllSegmentedDropResults(HttpServletRequest request,
-			@PathVariable("server") Server server) throws Exception {
-		return resultUtil.getTrendHelper(server);
+	public void getAllSegmentedDropResults(HttpServletResponse response, @PathVariable("server") Server server)
+			throws Exception {
+		resultUtil.getTrendHelper(response, server);
 	}
 
 	@ApiOperation(value = "Get pattern result",
@@ -53,4 +74,34 @@ public class PrivateController {
 		return resultUtil.getPatternHelper(request, server, "personal".equals(source));
 	}
 
+	@ApiOperation(value = "Get bulk write stats",
+			notes = "Return the throughput of bulk writes into derived collections. This is for internal use.",
+			hidden = true)
+	@GetMapping(path = "/stats/bulk-write", produces = "application/json;charset=UTF-8")
+	public ResponseEntity<Map<String, Stats>> getBulkWriteStats() {
+		return new ResponseEntity<>(derivedDataBulkWriter.getStatsMap(), HttpStatus.OK);
+	}
+
+	@ApiOperation(value = "Export anonymized drop records",
+			notes = "Stream reliable reports as NDJSON or CSV, with userID replaced by a salted hash. "
+					+ "Every record carries its id; pass the last received id as `after` to resume. "
+					+ "This is for internal use.",
+			hidden = true)
+	@GetMapping(path = "/export/item-drops")
+	public void exportItemDrops(HttpServletResponse response,
+			@RequestParam(value = "server", required = false) Server server,
+			@RequestParam(value = "stageId", required = false) String stageId,
+			@RequestParam(value = "start", required = false) Long start,
+			@RequestParam(value = "end", required = false) Long end,
+			@RequestParam(value = "format", defaultValue = "NDJSON") ExportFormat format,
+			@RequestParam(value = "after", required = false) String after) throws Exception {
+		if (after != null && !ObjectId.isValid(after))
+			throw new BusinessException(ErrorCode.INVALID_PARAMETER, "after is not a valid id.");
+		ItemDropExportConditions conditions = new ItemDropExportConditions().setServer(server).setStageId(stageId)
+				.setStart(start).setEnd(end).setAfterId(after == null ? null : new ObjectId(after));
+		// Written synchronously, an async StreamingResponseBody would be cut off by the default async timeout.
+		response.setContentType(format.getContentType() + ";charset=UTF-8");
+		itemDropExportService.exportItemDrops(conditions, format, response.getOutputStream());
+	}
+
 }
@@ -10,6 +10,7 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
 import java.util.concurrent.CountDownLatch;
 
 import javax.annotation.Resource;
@@ -17,15 +18,19 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
 
+import org.apache.commons.lang3.math.NumberUtils;
+import org.bson.types.ObjectId;
 import org.json.JSONObject;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import io.penguinstats.constant.Constant.DefaultValue;
@@ -35,6 +40,7 @@ import io.penguinstats.controller.v2.request.RecognitionReportRequest;
 import io.penguinstats.controller.v2.request.SingleRecognitionDrop;
 import io.penguinstats.controller.v2.request.SingleReportRequest;
 import io.penguinstats.controller.v2.response.RecognitionReportResponse;
+import io.penguinstats.controller.v2.response.ReportHistoryResponse;
 import io.penguinstats.controller.v2.response.SingleReportResponse;
 import io.penguinstats.enums.ErrorCode;
 import io.penguinstats.enums.Server;
@@ -61,6 +67,7 @@ import io.penguinstats.util.validator.ValidatorContext;
 import io.penguinstats.util.validator.ValidatorFacade;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
+import io.swagger.annotations.ApiParam;
 import lombok.extern.log4j.Log4j2;
 
 @Log4j2
@@ -104,6 +111,7 @@ public class ReportController {
             userID = userService.createNewUser(IpUtil.getIpAddr(request));
         }
         AuthUtil.setUserIDHeader(response, userID);
+        authUtil.setTokenHeader(response, userID, authUtil.getPrincipal(request).getTags());
         try {
             CookieUtil.setUserIDCookie(request, response, userID);
         } catch (UnsupportedEncodingException e) {
@@ -178,6 +186,7 @@ public class ReportController {
             userID = userService.createNewUser(ipAddr);
         }
         AuthUtil.setUserIDHeader(response, userID);
+        authUtil.setTokenHeader(response, userID, authUtil.getPrincipal(request).getTags());
         try {
             CookieUtil.setUserIDCookie(request, response, userID);
         } catch (UnsupportedEncodingException e) {
@@ -213,6 +222,49 @@ public class ReportController {
         return new ResponseEntity<>(HttpStatus.OK);
     }
 
+    @ApiOperation(value = "Get personal report history",
+            notes = "Return your own reports in descending order of submission time. "
+                    + "Use `nextCursor` of the response as `cursor` to get the next page.")
+    @GetMapping(path = "/history", produces = "application/json;charset=UTF-8")
+    public ResponseEntity<ReportHistoryResponse> getReportHistory(
+            @ApiParam(value = "The cursor returned by the previous page. Omit it for the first page.",
+                    required = false) @RequestParam(name = "cursor", required = false) String cursor,
+            @ApiParam(value = "Page size. Default is 50, max is 200.", required = false) @RequestParam(name = "limit",
+                    required = false) Integer limit,
+            HttpServletRequest request) throws Exception {
+        String userID = authUtil.authUserFromRequest(request);
+        if (userID == null) {
+            log.error("Error in getReportHistory: Cannot read user ID");
+            throw new BusinessException(ErrorCode.BUSINESS_EXCEPTION, "Cannot read user ID");
+        }
+        int pageSize = limit == null ? DefaultValue.REPORT_HISTORY_PAGE_SIZE
+                : Math.max(1, Math.min(limit, DefaultValue.REPORT_HISTORY_PAGE_SIZE_MAX));
+
+        Long beforeTimestamp = null;
+        ObjectId beforeId = null;
+        if (cursor != null) {
+            String[] parts = cursor.split("_");
+            if (parts.length != 2 || !ObjectId.isValid(parts[1]) || !NumberUtils.isDigits(parts[0])) {
+                throw new BusinessException(ErrorCode.INVALID_PARAMETER, "Invalid cursor.", Optional.of(cursor));
+            }
+            beforeTimestamp = Long.valueOf(parts[0]);
+            beforeId = new ObjectId(parts[1]);
+        }
+
+        List<ItemDrop> itemDrops = itemDropService.getReportHistory(userID, beforeTimestamp, beforeId, pageSize);
+        List<ReportHistoryResponse.Report> reports = itemDrops.stream()
+                .map(itemDrop -> new ReportHistoryResponse.Report(itemDrop.getStageId(), itemDrop.getServer(),
+                        itemDrop.getTimes(), itemDrop.getDrops(), itemDrop.getTimestamp(), itemDrop.getIsReliable(),
+                        itemDrop.getSource(), itemDrop.getVersion()))
+                .collect(toList());
+        String nextCursor = null;
+        if (itemDrops.size() == pageSize) {
+            ItemDrop last = itemDrops.get(itemDrops.size() - 1);
+            nextCursor = last.getTimestamp() + "_" + last.getId().toHexString();
+        }
+        return new ResponseEntity<>(new ReportHistoryResponse(reports, nextCursor), HttpStatus.OK);
+    }
+
     private RecognitionReportRequest getRecognitionReportRequestFromRequestBody(String requestBody,
             DecryptStrategy decryptStrategy) {
         String dataJSONStr = null;
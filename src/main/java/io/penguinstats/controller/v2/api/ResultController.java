@@ -1,6 +1,7 @@
 package io.penguinstats.controller.v2.api;
 
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
 
 import org.springframework.beans.factory.annotation.Autowired;
@@ -31,10 +32,12 @@ public class ResultController {
 	@Autowired
 	private ResultUtil resultUtil;
 
-	@ApiOperation(value = "Get matrix result",
-			notes = "Return the Result Matrix in the \"lastest accumulatable time ranges\". Detailed instructions can be found at: https://developer.penguin-stats.io/docs/api-v2-instruction/matrix-api")
-	@GetMapping(path = "/matrix", produces = "application/json;charset=UTF-8")
-	public ResponseEntity<MatrixQueryResponse> getMatrix(HttpServletRequest request,
+	@ApiOperation(value = "Get matrix result", response = MatrixQueryResponse.class,
+			notes = "Return the Result Matrix in the \"lastest accumulatable time ranges\". Detailed instructions can be found at: https://developer.penguin-stats.io/docs/api-v2-instruction/matrix-api. "
+					+ "Send `Accept: application/cbor` for CBOR, or `Accept: application/vnd.penguin-stats.matrix+columnar` for the compact columnar layout.")
+	@GetMapping(path = "/matrix", produces = {"application/json;charset=UTF-8", "application/cbor",
+			"application/vnd.penguin-stats.matrix+columnar"})
+	public void getMatrix(HttpServletRequest request, HttpServletResponse response,
 			@ApiParam(value = "Whether to see personal drop matrix or not. Default to be false.",
 					required = false) @RequestParam(name = "is_personal", required = false,
 							defaultValue = "false") boolean isPersonal,
@@ -50,18 +53,18 @@ public class ResultController {
 			@ApiParam(value = "Do filter on final result by item. It should be a list of itemIds separated by commas.",
 					required = false) @RequestParam(name = "itemFilter", required = false) String itemFilter)
 			throws Exception {
-		return resultUtil.getMatrixHelper(request, server, showClosedZones, stageFilter, itemFilter, isPersonal);
+		resultUtil.getMatrixHelper(request, response, server, showClosedZones, stageFilter, itemFilter, isPersonal);
 	}
 
 	@ApiOperation(value = "Get the segmented Result Matrix for all Items and Stages",
-			notes = "Return the segmented Matrix results of server `server`.")
+			notes = "Return the segmented Matrix results of server `server`.", response = TrendQueryResponse.class)
 	@GetMapping(path = "/trends", produces = "application/json;charset=UTF-8")
-	public ResponseEntity<TrendQueryResponse>
-			getAllSegmentedDropResults(@ApiParam(value = "Indicate which server you want to query. Default is CN.",
+	public void getAllSegmentedDropResults(HttpServletResponse response,
+			@ApiParam(value = "Indicate which server you want to query. Default is CN.",
 					required = false) @RequestParam(name = "server", required = false,
 							defaultValue = "CN") Server server)
-					throws Exception {
-		return resultUtil.getTrendHelper(server);
+			throws Exception {
+		resultUtil.getTrendHelper(response, server);
 	}
 
 	@ApiOperation(value = "Get pattern result", notes = "Return the Pattern Result in the \"lastest time ranges\".")
@@ -1,5 +1,8 @@
 package io.penguinstats.controller.v2.api;
 
+import java.util.Collections;
+import java.util.List;
+
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
@@ -7,20 +10,26 @@ import org.json.JSONObject;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import io.penguinstats.controller.v2.response.UserSummaryResponse;
 import io.penguinstats.enums.ErrorCode;
+import io.penguinstats.enums.Server;
 import io.penguinstats.model.User;
 import io.penguinstats.service.UserService;
+import io.penguinstats.service.UserUploadStatsService;
 import io.penguinstats.util.AuthUtil;
 import io.penguinstats.util.CookieUtil;
 import io.penguinstats.util.IpUtil;
 import io.penguinstats.util.exception.BusinessException;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
+import io.swagger.annotations.ApiParam;
 import io.swagger.annotations.ApiResponse;
 import io.swagger.annotations.ApiResponses;
 
@@ -33,6 +42,10 @@ public class UserController {
 
     @Autowired
     private UserService userService;
+    @Autowired
+    private UserUploadStatsService userUploadStatsService;
+    @Autowired
+    private AuthUtil authUtil;
 
     @ApiOperation(value = "Login with User ID", notes = "Login with the specified User ID.")
     @PostMapping(produces = "text/plain;charset=UTF-8")
@@ -46,19 +59,39 @@ public class UserController {
             userID = userID.substring(INTERNAL_USER_ID_PREFIX.length());
         }
         User user = userService.getUserByUserID(userID);
+        List<String> tags = user == null ? null : user.getTags();
         if (user == null) {
             if (isInternal) {
                 userID = userService.createNewUser(userID, IpUtil.getIpAddr(request));
                 if (userID != null) {
                     userService.addTag(userID, "internal");
+                    tags = Collections.singletonList("internal");
                 }
             } else {
                 throw new BusinessException(ErrorCode.NOT_FOUND, String.format("user not found: uid=%s", userID));
             }
         }
         AuthUtil.setUserIDHeader(response, userID);
+        authUtil.setTokenHeader(response, userID, tags);
         CookieUtil.setUserIDCookie(request, response, userID);
         return new ResponseEntity<>(new JSONObject().put("userID", userID).toString(), HttpStatus.OK);
     }
 
+    @ApiOperation(value = "Get upload summary of the current user",
+            notes = "Upload counters and personal times on each stage of the current user.")
+    @GetMapping(path = "/me/summary", produces = "application/json;charset=UTF-8")
+    public ResponseEntity<UserSummaryResponse> getSummary(
+            @ApiParam(value = "Only return stages of this server. Default to all servers.") @RequestParam(
+                    required = false) Server server,
+            HttpServletRequest request) throws Exception {
+        String userID = authUtil.authUserFromRequest(request);
+        if (userID == null)
+            throw new BusinessException(ErrorCode.BUSINESS_EXCEPTION, "Cannot read user ID");
+        User counters = userUploadStatsService.getUploadCounters(userID);
+        if (counters == null)
+            throw new BusinessException(ErrorCode.NOT_FOUND, String.format("user not found: uid=%s", userID));
+        return new ResponseEntity<>(new UserSummaryResponse(userID, counters.getTotalUpload(),
+                counters.getReliableUpload(), userUploadStatsService.getStageTimes(userID, server)), HttpStatus.OK);
+    }
+
 }
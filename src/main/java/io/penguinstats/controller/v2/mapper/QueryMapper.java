@@ -1,16 +1,19 @@
 package io.penguinstats.controller.v2.mapper;
 
 import io.penguinstats.controller.v2.request.SingleQuery;
+import io.penguinstats.controller.v2.response.ApproximateMatrixQueryResponse;
 import io.penguinstats.controller.v2.response.BasicQueryResponse;
 import io.penguinstats.controller.v2.response.MatrixQueryResponse;
 import io.penguinstats.controller.v2.response.TrendQueryResponse;
 import io.penguinstats.enums.QueryType;
 import io.penguinstats.model.DropMatrixElement;
+import io.penguinstats.model.DropSample;
 import io.penguinstats.model.query.BasicQuery;
 import io.penguinstats.model.query.MatrixQuery;
 import io.penguinstats.model.query.QueryFactory;
 import io.penguinstats.model.query.TrendQuery;
 import java.util.List;
+import java.util.stream.Collectors;
 import lombok.extern.log4j.Log4j2;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
@@ -46,4 +49,14 @@ public class QueryMapper {
 		return singleQuery.getInterval() == null ? new MatrixQueryResponse(elements) : new TrendQueryResponse(elements);
 	}
 
+	public BasicQueryResponse estimationToBasicQueryResponse(SingleQuery singleQuery,
+			DropSample.Estimation estimation) {
+		List<ApproximateMatrixQueryResponse.Estimate> estimates = estimation.getEstimates().stream()
+				.map(estimate -> new ApproximateMatrixQueryResponse.Estimate(singleQuery.getStageId(),
+						estimate.getItemId(), estimate.getRate(), estimate.getLower(), estimate.getUpper()))
+				.collect(Collectors.toList());
+		return new ApproximateMatrixQueryResponse(estimates, true, estimation.getReports(), estimation.getTimes(),
+				estimation.getPopulation(), 0.95);
+	}
+
 }
@@ -44,4 +44,8 @@ public class SingleQuery {
 	@ApiModelProperty(notes = "Indicate whether showing personal data.")
 	private Boolean isPersonal;
 
+	@ApiModelProperty(
+			notes = "If true, estimate drop rates with confidence intervals from a sample of reports. Only applies to global matrix queries. Falls back to the exact query when the sample has too few reports in the time range.")
+	private Boolean approximate;
+
 }
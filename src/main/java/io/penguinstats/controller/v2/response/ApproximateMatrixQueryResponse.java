@@ -0,0 +1,63 @@
+package io.penguinstats.controller.v2.response;
+
+import java.io.Serializable;
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@ApiModel(description = "The response model for approximate matrix query.")
+public class ApproximateMatrixQueryResponse implements Serializable, BasicQueryResponse {
+
+	private static final long serialVersionUID = 1L;
+
+	@ApiModelProperty(notes = "Estimated drop rates of all items in the result")
+	@JsonProperty("matrix")
+	private List<Estimate> estimates;
+
+	@ApiModelProperty(notes = "Always true, to tell this result from an exact one.")
+	private Boolean approximate;
+
+	@ApiModelProperty(notes = "Number of sampled reports in the time range.")
+	private Integer sampleSize;
+
+	@ApiModelProperty(notes = "Sum of times of the sampled reports in the time range.")
+	private Long sampleTimes;
+
+	@ApiModelProperty(notes = "Number of reliable reports of the stage the sample is drawn from.")
+	private Long population;
+
+	@ApiModelProperty(notes = "Confidence level of [lower, upper].")
+	private Double confidence;
+
+	@Data
+	@AllArgsConstructor
+	@NoArgsConstructor
+	public static class Estimate implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		private String stageId;
+
+		private String itemId;
+
+		@ApiModelProperty(notes = "Estimated quantity per run.")
+		private Double rate;
+
+		private Double lower;
+
+		private Double upper;
+
+	}
+
+}
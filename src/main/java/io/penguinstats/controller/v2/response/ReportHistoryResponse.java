@@ -0,0 +1,50 @@
+package io.penguinstats.controller.v2.response;
+
+import java.io.Serializable;
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import io.penguinstats.enums.Server;
+import io.penguinstats.model.Drop;
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@ApiModel(description = "The response model for personal report history.")
+public class ReportHistoryResponse implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @ApiModelProperty(notes = "Reports in descending order of submission time.")
+    private List<Report> reports;
+
+    @ApiModelProperty(notes = "Pass it as `cursor` to get the next page. Absent on the last page.")
+    private String nextCursor;
+
+    @Data
+    @AllArgsConstructor
+    @NoArgsConstructor
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public static class Report implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private String stageId;
+        private Server server;
+        private Integer times;
+        private List<Drop> drops;
+        private Long timestamp;
+        private Boolean isReliable;
+        private String source;
+        private String version;
+
+    }
+
+}
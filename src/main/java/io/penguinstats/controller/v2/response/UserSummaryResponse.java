@@ -0,0 +1,35 @@
+package io.penguinstats.controller.v2.response;
+
+import java.io.Serializable;
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import io.penguinstats.model.UserStageTimes;
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@ApiModel(description = "The response model for the upload summary of the current user.")
+public class UserSummaryResponse implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private String userID;
+
+    @ApiModelProperty(notes = "Number of visible reports uploaded by the user.")
+    private Integer totalUpload;
+
+    @ApiModelProperty(notes = "Number of visible reports counted into global data.")
+    private Integer reliableUpload;
+
+    @ApiModelProperty(notes = "Personal times and number of reports on each stage.")
+    private List<UserStageTimes> stages;
+
+}
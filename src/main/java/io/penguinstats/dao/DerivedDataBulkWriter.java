@@ -0,0 +1,134 @@
+package io.penguinstats.dao;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PostConstruct;
+
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Component;
+
+import com.mongodb.WriteConcern;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.InsertManyOptions;
+
+import lombok.Getter;
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * DerivedDataBulkWriter inserts documents of derived collections (matrix elements etc.) with unordered insertMany in
+ * chunks.<br>
+ * Derived data can always be rebuilt from the reports, so a weaker write concern than the default one may be
+ * configured for it.
+ */
+@Log4j2
+@Component("derivedDataBulkWriter")
+public class DerivedDataBulkWriter {
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Value("${bulk-write.chunk-size:1000}")
+    private int chunkSize;
+
+    @Value("${bulk-write.write-concern:W1}")
+    private String writeConcernName;
+
+    private WriteConcern writeConcern;
+
+    private final Map<String, Stats> statsMap = new ConcurrentHashMap<>();
+
+    /**
+     * A misspelled write concern would only fail at the first bulk write, so the application refuses to start.
+     */
+    @PostConstruct
+    public void init() {
+        writeConcern = WriteConcern.valueOf(writeConcernName);
+        if (writeConcern == null)
+            throw new IllegalArgumentException("Unknown bulk-write.write-concern: " + writeConcernName);
+    }
+
+    /**
+     * @Title: insert
+     * @Description: Insert all entities into the collection of entityClass. Ids of the entities are not set back.
+     * @param entities
+     * @param entityClass
+     * @return int The number of inserted documents.
+     */
+    public <T> int insert(Collection<? extends T> entities, Class<T> entityClass) {
+        if (entities.isEmpty())
+            return 0;
+        long startTime = System.nanoTime();
+        String collectionName = mongoTemplate.getCollectionName(entityClass);
+        MongoCollection<Document> collection = mongoTemplate.getCollection(collectionName)
+                .withWriteConcern(writeConcern);
+        InsertManyOptions options = new InsertManyOptions().ordered(false);
+
+        int chunkNum = 0;
+        List<Document> chunk = new ArrayList<>(Math.min(chunkSize, entities.size()));
+        for (T entity : entities) {
+            Document doc = new Document();
+            mongoTemplate.getConverter().write(entity, doc);
+            chunk.add(doc);
+            if (chunk.size() >= chunkSize) {
+                collection.insertMany(chunk, options);
+                chunk = new ArrayList<>(chunkSize);
+                chunkNum++;
+            }
+        }
+        if (!chunk.isEmpty()) {
+            collection.insertMany(chunk, options);
+            chunkNum++;
+        }
+
+        long elapsed = System.nanoTime() - startTime;
+        statsMap.computeIfAbsent(collectionName, k -> new Stats()).record(entities.size(), chunkNum, elapsed);
+        log.debug("{} documents are inserted into {} in {} ms", entities.size(), collectionName, elapsed / 1000000L);
+        return entities.size();
+    }
+
+    public Map<String, Stats> getStatsMap() {
+        return Collections.unmodifiableMap(statsMap);
+    }
+
+    @Getter
+    public static class Stats {
+
+        private final AtomicLong documents = new AtomicLong();
+
+        private final AtomicLong chunks = new AtomicLong();
+
+        private final AtomicLong elapsedMillis = new AtomicLong();
+
+        private volatile long lastDocuments;
+
+        private volatile long lastElapsedMillis;
+
+        private void record(long documents, long chunks, long elapsedNanos) {
+            long elapsedMillis = elapsedNanos / 1000000L;
+            this.documents.addAndGet(documents);
+            this.chunks.addAndGet(chunks);
+            this.elapsedMillis.addAndGet(elapsedMillis);
+            this.lastDocuments = documents;
+            this.lastElapsedMillis = elapsedMillis;
+        }
+
+        /**
+         * Average throughput of all inserts, in documents per second.
+         */
+        public long getDocumentsPerSecond() {
+            long millis = elapsedMillis.get();
+            return millis == 0L ? documents.get() * 1000L : documents.get() * 1000L / millis;
+        }
+
+    }
+
+}
@@ -12,7 +12,8 @@ import io.penguinstats.enums.Server;
 import io.penguinstats.model.DropMatrixElement;
 
 @Repository
-public interface DropMatrixElementDao extends MongoRepository<DropMatrixElement, String> {
+public interface DropMatrixElementDao extends MongoRepository<DropMatrixElement, String>,
+        DropMatrixElementDaoCustom {
 
     @DeleteQuery("{'$and' : [{'type' : ?0}, {'isPast' : ?1}, {'server' : ?2}]}")
     Long deleteAllByIsPastAndServer(DropMatrixElementType type, Boolean isPast, Server server);
@@ -0,0 +1,11 @@
+package io.penguinstats.dao;
+
+import java.util.Collection;
+
+import io.penguinstats.model.DropMatrixElement;
+
+public interface DropMatrixElementDaoCustom {
+
+    int bulkInsert(Collection<DropMatrixElement> elements);
+
+}
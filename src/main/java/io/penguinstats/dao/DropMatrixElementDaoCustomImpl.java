@@ -0,0 +1,19 @@
+package io.penguinstats.dao;
+
+import java.util.Collection;
+
+import org.springframework.beans.factory.annotation.Autowired;
+
+import io.penguinstats.model.DropMatrixElement;
+
+public class DropMatrixElementDaoCustomImpl implements DropMatrixElementDaoCustom {
+
+    @Autowired
+    DerivedDataBulkWriter derivedDataBulkWriter;
+
+    @Override
+    public int bulkInsert(Collection<DropMatrixElement> elements) {
+        return derivedDataBulkWriter.insert(elements, DropMatrixElement.class);
+    }
+
+}
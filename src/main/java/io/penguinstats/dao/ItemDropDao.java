@@ -1,29 +1,15 @@
 package io.penguinstats.dao;
 
-import java.util.List;
-
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.Pageable;
 import org.springframework.data.mongodb.repository.MongoRepository;
-import org.springframework.data.mongodb.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import io.penguinstats.model.ItemDrop;
 
+/**
+ * Finders on fields of the report are declared in {@link ItemDropDaoCustom}, since derived and annotated queries are
+ * mapped to the compact field names only and miss the reports stored with the full ones.
+ */
 @Repository
 public interface ItemDropDao extends MongoRepository<ItemDrop, String>, ItemDropDaoCustom {
 
-    List<ItemDrop> findByIsReliable(Boolean isReliable);
-
-    @Query("{'$and' : [{'isDeleted' : ?0}, {'userID' : ?1}]}")
-    Page<ItemDrop> findByIsDeletedAndUserID(Boolean isDeleted, String userID, Pageable pageable);
-
-    List<ItemDrop> findByUserID(String userID);
-
-    @Query("{'$and' : [{'isDeleted' : false}, {'isReliable' : true}, {'stageId': ?0}]}")
-    Page<ItemDrop> findValidItemDropByStageId(String stageId, Pageable pageable);
-
-    @Query("{'screenshotMetadata.md5' : ?0}")
-    List<ItemDrop> findByMD5(String md5);
-
 }
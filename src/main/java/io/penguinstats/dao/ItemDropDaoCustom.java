@@ -1,13 +1,37 @@
 package io.penguinstats.dao;
 
 import java.util.List;
+import java.util.function.Consumer;
 
 import org.bson.Document;
-
+import org.bson.types.ObjectId;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+
+import io.penguinstats.enums.Server;
+import io.penguinstats.model.DropSample;
+import io.penguinstats.model.ItemDrop;
+import io.penguinstats.model.ItemDropExportConditions;
 import io.penguinstats.model.QueryConditions;
 
 public interface ItemDropDaoCustom {
 
+	List<ItemDrop> findByIsReliable(Boolean isReliable);
+
+	/**
+	 * Pages are in the order of _id, a sort in pageable is not supported.
+	 */
+	Page<ItemDrop> findByIsDeletedAndUserID(Boolean isDeleted, String userID, Pageable pageable);
+
+	List<ItemDrop> findByUserID(String userID);
+
+	/**
+	 * Pages are in the order of _id, a sort in pageable is not supported.
+	 */
+	Page<ItemDrop> findValidItemDropByStageId(String stageId, Pageable pageable);
+
+	List<ItemDrop> findByMD5(String md5);
+
 	List<Document> aggregateItemDrops(QueryConditions conditions);
 
 	List<Document> aggregateDropPatterns(QueryConditions conditions);
@@ -16,4 +40,20 @@ public interface ItemDropDaoCustom {
 
 	List<Document> aggregateItemQuantities(QueryConditions conditions);
 
+	DropSample sampleReliableItemDrops(Server server, String stageId, int size);
+
+	List<ItemDrop> findHistoryByUserID(String userID, Long beforeTimestamp, ObjectId beforeId, int limit);
+
+	boolean markDeleted(ObjectId id);
+
+	void streamForExport(ItemDropExportConditions conditions, Consumer<ItemDrop> consumer);
+
+	Long findFirstReliableTimestamp();
+
+	void archiveItemDrops();
+
+	int migrateLegacyFields(int batchSize);
+
+	void dropLegacyIndexes();
+
 }
@@ -3,25 +3,59 @@ package io.penguinstats.dao;
 import static org.springframework.data.mongodb.core.aggregation.Aggregation.newAggregation;
 import static org.springframework.data.mongodb.core.aggregation.Aggregation.newAggregationOptions;
 
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 import org.bson.Document;
+import org.bson.types.ObjectId;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.domain.Sort.Direction;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
 import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOptions;
 import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
-import org.springframework.data.mongodb.core.aggregation.AggregationResults;
 import org.springframework.data.mongodb.core.aggregation.ArithmeticOperators;
 import org.springframework.data.mongodb.core.aggregation.LiteralOperators;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.IndexOperations;
 import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.util.CloseableIterator;
 
 import com.mongodb.BasicDBObject;
+import com.mongodb.client.result.DeleteResult;
 
+import io.penguinstats.dao.ItemDropPartitionRouter.Route;
 import io.penguinstats.enums.Server;
+import io.penguinstats.model.Drop;
+import io.penguinstats.model.DropSample;
 import io.penguinstats.model.ItemDrop;
+import io.penguinstats.model.ItemDropExportConditions;
+import io.penguinstats.model.ItemDropFields;
 import io.penguinstats.model.QueryConditions;
 import io.penguinstats.model.QueryConditions.StageWithTimeRange;
 import lombok.extern.log4j.Log4j2;
@@ -32,6 +66,68 @@ public class ItemDropDaoCustomImpl implements ItemDropDaoCustom {
 	@Autowired
 	MongoTemplate mongoTemplate;
 
+	@Autowired
+	ItemDropPartitionRouter itemDropPartitionRouter;
+
+	@Value("${item-drop.schema.legacy-compatible:true}")
+	boolean legacyCompatible;
+
+	@Override
+	public List<ItemDrop> findByIsReliable(Boolean isReliable) {
+		return findItemDrops(new Query(inEachSchema(ItemDropFields.IS_RELIABLE, c -> c.is(isReliable))));
+	}
+
+	@Override
+	public Page<ItemDrop> findByIsDeletedAndUserID(Boolean isDeleted, String userID, Pageable pageable) {
+		return findItemDropPage(inEachSchema(schema -> Arrays.asList(
+				schema.matching(ItemDropFields.IS_DELETED, c -> c.is(isDeleted)),
+				schema.matching(ItemDropFields.USER_ID, c -> c.is(userID)))), pageable);
+	}
+
+	@Override
+	public List<ItemDrop> findByUserID(String userID) {
+		return findItemDrops(new Query(inEachSchema(ItemDropFields.USER_ID, c -> c.is(userID))));
+	}
+
+	@Override
+	public Page<ItemDrop> findValidItemDropByStageId(String stageId, Pageable pageable) {
+		return findItemDropPage(inEachSchema(schema -> Arrays.asList(
+				schema.matching(ItemDropFields.IS_DELETED, c -> c.is(false)),
+				schema.matching(ItemDropFields.IS_RELIABLE, c -> c.is(true)),
+				schema.matching(ItemDropFields.STAGE_ID, c -> c.is(stageId)))), pageable);
+	}
+
+	@Override
+	public List<ItemDrop> findByMD5(String md5) {
+		return findItemDrops(new Query(inEachSchema(ItemDropFields.SCREENSHOT_METADATA + ".md5", c -> c.is(md5))));
+	}
+
+	private Page<ItemDrop> findItemDropPage(Criteria criteria, Pageable pageable) {
+		if (pageable.getSort().isSorted())
+			throw new IllegalArgumentException("sort is not supported on item drops, they are in the order of _id");
+		long total = mongoTemplate.count(new Query(criteria), ItemDropPartitionRouter.HOT_COLLECTION_NAME);
+		Query query = new Query(criteria).with(new Sort(Direction.ASC, "_id"));
+		if (pageable.isPaged())
+			query.skip(pageable.getOffset()).limit(pageable.getPageSize());
+		return new PageImpl<>(findItemDrops(query), pageable, total);
+	}
+
+	/** 
+	 * @Title: findItemDrops 
+	 * @Description: Find reports in the hot collection, like the repository does. The query is run on raw documents
+	 * so that its field names are not mapped to the compact ones.
+	 * @param query
+	 * @return List<ItemDrop>
+	 */
+	private List<ItemDrop> findItemDrops(Query query) {
+		return mongoTemplate.find(query, Document.class, ItemDropPartitionRouter.HOT_COLLECTION_NAME).stream()
+				.map(this::toItemDrop).collect(Collectors.toList());
+	}
+
+	private ItemDrop toItemDrop(Document doc) {
+		return mongoTemplate.getConverter().read(ItemDrop.class, ItemDropFields.normalizeLegacyFields(doc));
+	}
+
 	/** 
 	 * @Title: aggregateItemDrops 
 	 * @Description: Use aggregation to get item drop times and quantities under given query conditions
@@ -42,9 +138,21 @@ public class ItemDropDaoCustomImpl implements ItemDropDaoCustom {
 	public List<Document> aggregateItemDrops(QueryConditions conditions) {
 		Long currentTime = System.currentTimeMillis();
 
-		List<String> userIDs = conditions.getUserIDs();
+		List<Route> routes = routeByStages(conditions.getStages());
+		List<List<Document>> partialResults = new ArrayList<>();
+		for (Route route : routes)
+			partialResults.add(aggregateItemDrops(conditions, route));
+
+		log.debug(conditions.toString() + ", time = " + (System.currentTimeMillis() - currentTime) + "ms");
+
+		if (partialResults.size() == 1)
+			return partialResults.get(0);
+		return mergePartialResults(partialResults, new String[] {"section", "stageId", "itemId"}, "quantity",
+				new String[] {"section", "stageId"});
+	}
+
+	private List<Document> aggregateItemDrops(QueryConditions conditions, Route route) {
 		List<String> itemIds = conditions.getItemIds();
-		List<Server> servers = conditions.getServers();
 		List<StageWithTimeRange> stages = conditions.getStages();
 		Long interval = conditions.getInterval();
 
@@ -74,37 +182,8 @@ public class ItemDropDaoCustomImpl implements ItemDropDaoCustom {
 			  }
 			}
 		 */
-		List<Criteria> criteriasInAndInPipe1 = new ArrayList<>();
-
-		criteriasInAndInPipe1.add(Criteria.where("isDeleted").is(false));
-
-		if (userIDs.isEmpty())
-			criteriasInAndInPipe1.add(Criteria.where("isReliable").is(true));
-		else
-			criteriasInAndInPipe1.add(Criteria.where("userID").in(userIDs));
-
-		if (!servers.isEmpty())
-			criteriasInAndInPipe1.add(Criteria.where("server").in(servers));
-
-		if (!stages.isEmpty()) {
-			if (1 == stages.size() && stages.get(0).getStageId() == null) {
-				StageWithTimeRange stage = stages.get(0);
-				Long min = stage.getStart() == null ? 0L : stage.getStart();
-				Long max = stage.getEnd() == null ? System.currentTimeMillis() : stage.getEnd();
-				criteriasInAndInPipe1.add(Criteria.where("timestamp").gte(min).lt(max));
-			} else {
-				List<Criteria> criteriasInOrInPipe1 = new ArrayList<>();
-				stages.forEach(stage -> {
-					Long min = stage.getStart() == null ? 0L : stage.getStart();
-					Long max = stage.getEnd() == null ? System.currentTimeMillis() : stage.getEnd();
-					criteriasInOrInPipe1.add(new Criteria().andOperator(Criteria.where("timestamp").gte(min).lt(max),
-							Criteria.where("stageId").is(stage.getStageId())));
-				});
-				criteriasInAndInPipe1.add(new Criteria().orOperator(criteriasInOrInPipe1.toArray(new Criteria[0])));
-			}
-		}
-
-		operations.add(Aggregation.match(new Criteria().andOperator(criteriasInAndInPipe1.toArray(new Criteria[0]))));
+		operations.add(Aggregation.match(inEachSchema(schema -> conditionCriterias(schema, conditions, route))));
+		operations.add(normalizeFields());
 
 		/* Pipe 2: project section number.
 		 * If no interval is provided, which means we are not calculating segmented results, then project
@@ -228,24 +307,27 @@ public class ItemDropDaoCustomImpl implements ItemDropDaoCustom {
 				.and("drops.quantity").as("quantity"));
 		operations.add(Aggregation.group("section", "stageId", "times", "itemId").sum("quantity").as("quantity"));
 
-		Aggregation aggregation =
-				newAggregation(operations).withOptions(newAggregationOptions().allowDiskUse(true).build());
-
-		AggregationResults<Document> results = mongoTemplate.aggregate(aggregation, ItemDrop.class, Document.class);
-
-		log.debug(conditions.toString() + ", time = " + (System.currentTimeMillis() - currentTime) + "ms");
-
-		return results.getMappedResults();
+		return runAggregation(operations, route);
 	}
 
 	@Override
 	public List<Document> aggregateDropPatterns(QueryConditions conditions) {
 		Long currentTime = System.currentTimeMillis();
 
-		List<String> userIDs = conditions.getUserIDs();
-		List<Server> servers = conditions.getServers();
-		List<StageWithTimeRange> stages = conditions.getStages();
+		List<Route> routes = routeByStages(conditions.getStages());
+		List<List<Document>> partialResults = new ArrayList<>();
+		for (Route route : routes)
+			partialResults.add(aggregateDropPatterns(conditions, route));
 
+		log.debug(conditions.toString() + ", time = " + (System.currentTimeMillis() - currentTime) + "ms");
+
+		if (partialResults.size() == 1)
+			return partialResults.get(0);
+		return mergePartialResults(partialResults, new String[] {"stageId", "pattern"}, "quantity",
+				new String[] {"stageId"});
+	}
+
+	private List<Document> aggregateDropPatterns(QueryConditions conditions, Route route) {
 		List<AggregationOperation> operations = new LinkedList<>();
 
 		/* Pipe 1: filter by isReliable, isDeleted, stageId and timestamp
@@ -272,38 +354,12 @@ public class ItemDropDaoCustomImpl implements ItemDropDaoCustom {
 			  }
 			}
 		 */
-		List<Criteria> criteriasInAndInPipe1 = new ArrayList<>();
-
-		criteriasInAndInPipe1.add(Criteria.where("times").is(1));
-		criteriasInAndInPipe1.add(Criteria.where("isDeleted").is(false));
-
-		if (userIDs.isEmpty())
-			criteriasInAndInPipe1.add(Criteria.where("isReliable").is(true));
-		else
-			criteriasInAndInPipe1.add(Criteria.where("userID").in(userIDs));
-
-		if (!servers.isEmpty())
-			criteriasInAndInPipe1.add(Criteria.where("server").in(servers));
-
-		if (!stages.isEmpty()) {
-			if (1 == stages.size() && stages.get(0).getStageId() == null) {
-				StageWithTimeRange stage = stages.get(0);
-				Long min = stage.getStart() == null ? 0L : stage.getStart();
-				Long max = stage.getEnd() == null ? System.currentTimeMillis() : stage.getEnd();
-				criteriasInAndInPipe1.add(Criteria.where("timestamp").gte(min).lt(max));
-			} else {
-				List<Criteria> criteriasInOrInPipe1 = new ArrayList<>();
-				stages.forEach(stage -> {
-					Long min = stage.getStart() == null ? 0L : stage.getStart();
-					Long max = stage.getEnd() == null ? System.currentTimeMillis() : stage.getEnd();
-					criteriasInOrInPipe1.add(new Criteria().andOperator(Criteria.where("timestamp").gte(min).lt(max),
-							Criteria.where("stageId").is(stage.getStageId())));
-				});
-				criteriasInAndInPipe1.add(new Criteria().orOperator(criteriasInOrInPipe1.toArray(new Criteria[0])));
-			}
-		}
-
-		operations.add(Aggregation.match(new Criteria().andOperator(criteriasInAndInPipe1.toArray(new Criteria[0]))));
+		operations.add(Aggregation.match(inEachSchema(schema -> {
+			List<Criteria> criteriasInAndInPipe1 = conditionCriterias(schema, conditions, route);
+			criteriasInAndInPipe1.add(schema.matching(ItemDropFields.TIMES, c -> c.is(1)));
+			return criteriasInAndInPipe1;
+		})));
+		operations.add(normalizeFields());
 
 		/* Pipe 2: group by stageId, sum up 'times' to calculate total times for this stage
 		{
@@ -424,67 +480,722 @@ public class ItemDropDaoCustomImpl implements ItemDropDaoCustom {
 		 */
 		operations.add(Aggregation.group("pattern", "times", "stageId").sum("quantity").as("quantity"));
 
-		Aggregation aggregation =
-				newAggregation(operations).withOptions(newAggregationOptions().allowDiskUse(true).build());
+		return runAggregation(operations, route);
+	}
 
-		AggregationResults<Document> results = mongoTemplate.aggregate(aggregation, ItemDrop.class, Document.class);
+	@Override
+	public List<Document> aggregateStageTimes(QueryConditions conditions) {
+		Long range = conditions.getRange();
+		Long max = System.currentTimeMillis();
+		Long min = range == null ? null : max - range;
 
-		log.debug(conditions.toString() + ", time = " + (System.currentTimeMillis() - currentTime) + "ms");
+		List<List<Document>> partialResults = new ArrayList<>();
+		for (Route route : itemDropPartitionRouter.route(min, range == null ? null : max))
+			partialResults.add(aggregateStageTimes(conditions, route, min, max));
 
-		return results.getMappedResults();
+		if (partialResults.size() == 1)
+			return partialResults.get(0);
+		return mergePartialResults(partialResults, new String[] {"_id"}, "times", null);
 	}
 
-	@Override
-	public List<Document> aggregateStageTimes(QueryConditions conditions) {
+	private List<Document> aggregateStageTimes(QueryConditions conditions, Route route, Long min, Long max) {
 		List<Server> servers = conditions.getServers();
-		Long range = conditions.getRange();
 
 		List<AggregationOperation> operations = new LinkedList<>();
 
-		List<Criteria> criteriasInAndInPipe1 = new ArrayList<>();
-		criteriasInAndInPipe1.add(Criteria.where("isReliable").is(true));
-		criteriasInAndInPipe1.add(Criteria.where("isDeleted").is(false));
-		if (!servers.isEmpty())
-			criteriasInAndInPipe1.add(Criteria.where("server").in(servers));
-		if (range != null) {
-			Long max = System.currentTimeMillis();
-			Long min = max - range;
-			criteriasInAndInPipe1.add(Criteria.where("timestamp").gte(min).lt(max));
-		}
-		operations.add(Aggregation.match(new Criteria().andOperator(criteriasInAndInPipe1.toArray(new Criteria[0]))));
+		operations.add(Aggregation.match(inEachSchema(schema -> {
+			List<Criteria> criteriasInAndInPipe1 = new ArrayList<>();
+			criteriasInAndInPipe1.add(schema.matching(ItemDropFields.IS_RELIABLE, c -> c.is(true)));
+			criteriasInAndInPipe1.add(schema.matching(ItemDropFields.IS_DELETED, c -> c.is(false)));
+			if (!servers.isEmpty())
+				criteriasInAndInPipe1.add(schema.matching(ItemDropFields.SERVER, c -> c.in(getServerNames(servers))));
+			if (min != null)
+				criteriasInAndInPipe1.add(schema.matching(ItemDropFields.TIMESTAMP, c -> c.gte(min).lt(max)));
+			addPartitionBounds(schema, criteriasInAndInPipe1, route);
+			return criteriasInAndInPipe1;
+		})));
+		operations.add(normalizeFields());
 
 		operations.add(Aggregation.group("stageId").sum("times").as("times"));
 
-		Aggregation aggregation =
-				newAggregation(operations).withOptions(newAggregationOptions().allowDiskUse(true).build());
-
-		AggregationResults<Document> results = mongoTemplate.aggregate(aggregation, ItemDrop.class, Document.class);
-		return results.getMappedResults();
+		return runAggregation(operations, route);
 	}
 
 	@Override
 	public List<Document> aggregateItemQuantities(QueryConditions conditions) {
+		List<List<Document>> partialResults = new ArrayList<>();
+		for (Route route : itemDropPartitionRouter.route(null, null))
+			partialResults.add(aggregateItemQuantities(conditions, route));
+
+		if (partialResults.size() == 1)
+			return partialResults.get(0);
+		return mergePartialResults(partialResults, new String[] {"_id"}, "quantity", null);
+	}
+
+	private List<Document> aggregateItemQuantities(QueryConditions conditions, Route route) {
 		List<Server> servers = conditions.getServers();
 
 		List<AggregationOperation> operations = new LinkedList<>();
 
-		List<Criteria> criteriasInAndInPipe1 = new ArrayList<>();
-		criteriasInAndInPipe1.add(Criteria.where("isReliable").is(true));
-		criteriasInAndInPipe1.add(Criteria.where("isDeleted").is(false));
-		if (!servers.isEmpty())
-			criteriasInAndInPipe1.add(Criteria.where("server").in(servers));
-		operations.add(Aggregation.match(new Criteria().andOperator(criteriasInAndInPipe1.toArray(new Criteria[0]))));
+		operations.add(Aggregation.match(inEachSchema(schema -> {
+			List<Criteria> criteriasInAndInPipe1 = new ArrayList<>();
+			criteriasInAndInPipe1.add(schema.matching(ItemDropFields.IS_RELIABLE, c -> c.is(true)));
+			criteriasInAndInPipe1.add(schema.matching(ItemDropFields.IS_DELETED, c -> c.is(false)));
+			if (!servers.isEmpty())
+				criteriasInAndInPipe1.add(schema.matching(ItemDropFields.SERVER, c -> c.in(getServerNames(servers))));
+			addPartitionBounds(schema, criteriasInAndInPipe1, route);
+			return criteriasInAndInPipe1;
+		})));
+		operations.add(normalizeFields());
 
 		operations.add(Aggregation.unwind("drops", false));
 
 		operations.add(Aggregation.project().and("drops.itemId").as("itemId").and("drops.quantity").as("quantity"));
 		operations.add(Aggregation.group("itemId").sum("quantity").as("quantity"));
 
-		Aggregation aggregation =
-				newAggregation(operations).withOptions(newAggregationOptions().allowDiskUse(true).build());
+		return runAggregation(operations, route);
+	}
+
+	/** 
+	 * @Title: sampleReliableItemDrops 
+	 * @Description: Draw a uniform random sample of the reliable and not deleted reports of one stage with $sample.
+	 * Each partition contributes in proportion to its number of reports, so the sample is uniform over all of them.
+	 * @param server
+	 * @param stageId
+	 * @param size
+	 * @return DropSample
+	 */
+	@Override
+	public DropSample sampleReliableItemDrops(Server server, String stageId, int size) {
+		List<Route> routes = itemDropPartitionRouter.route(null, null);
+		long[] counts = new long[routes.size()];
+		long population = 0L;
+		for (int i = 0; i < routes.size(); i++) {
+			Route route = routes.get(i);
+			counts[i] = mongoTemplate.count(
+					new Query(inEachSchema(schema -> reliableStageCriterias(schema, server, stageId, route))),
+					route.getCollectionName());
+			population += counts[i];
+		}
+
+		DropSample sample = new DropSample(size, population, System.currentTimeMillis());
+		for (int i = 0; i < routes.size() && population > 0; i++) {
+			int routeSize = (int)Math.round((double)size * counts[i] / population);
+			if (routeSize == 0)
+				continue;
+			Route route = routes.get(i);
+			List<AggregationOperation> operations = new LinkedList<>();
+			operations.add(
+					Aggregation.match(inEachSchema(schema -> reliableStageCriterias(schema, server, stageId, route))));
+			operations.add(Aggregation.sample(routeSize));
+			operations.add(normalizeFields());
+			for (Document doc : runAggregation(operations, route)) {
+				List<Drop> drops = new ArrayList<>();
+				Object rawDrops = doc.get("drops");
+				if (rawDrops instanceof List) {
+					for (Object rawDrop : (List<?>)rawDrops) {
+						Document drop = (Document)rawDrop;
+						drops.add(new Drop(drop.getString("itemId"), toInt(drop.get("quantity"))));
+					}
+				}
+				sample.load(doc.getLong("timestamp"), toInt(doc.get("times")), drops);
+			}
+		}
+		return sample;
+	}
+
+	private static int toInt(Object value) {
+		return value instanceof Number ? ((Number)value).intValue() : 0;
+	}
+
+	private List<Criteria> reliableStageCriterias(Schema schema, Server server, String stageId, Route route) {
+		List<Criteria> criterias = new ArrayList<>();
+		criterias.add(schema.matching(ItemDropFields.IS_RELIABLE, c -> c.is(true)));
+		criterias.add(schema.matching(ItemDropFields.IS_DELETED, c -> c.is(false)));
+		criterias.add(schema.matching(ItemDropFields.SERVER, c -> c.is(server.name())));
+		criterias.add(schema.matching(ItemDropFields.STAGE_ID, c -> c.is(stageId)));
+		addPartitionBounds(schema, criterias, route);
+		return criterias;
+	}
+
+	/** 
+	 * @Title: streamForExport 
+	 * @Description: Feed all reliable and not deleted reports matching the conditions to the consumer in ascending
+	 * order of _id, reading from a cursor so that nothing is materialized. ip and screenshot metadata are not loaded.
+	 * Reports in either schema are matched, and normalized before they are mapped.
+	 * @param conditions
+	 * @param consumer
+	 */
+	@Override
+	public void streamForExport(ItemDropExportConditions conditions, Consumer<ItemDrop> consumer) {
+		for (Route route : itemDropPartitionRouter.route(conditions.getStart(), conditions.getEnd())) {
+			Criteria criteria = inEachSchema(schema -> {
+				List<Criteria> criterias = new ArrayList<>();
+				criterias.add(schema.matching(ItemDropFields.IS_DELETED, c -> c.is(false)));
+				criterias.add(schema.matching(ItemDropFields.IS_RELIABLE, c -> c.is(true)));
+				if (conditions.getServer() != null)
+					criterias.add(schema.matching(ItemDropFields.SERVER, c -> c.is(conditions.getServer().name())));
+				if (conditions.getStageId() != null)
+					criterias.add(schema.matching(ItemDropFields.STAGE_ID, c -> c.is(conditions.getStageId())));
+				if (conditions.getStart() != null)
+					criterias.add(schema.matching(ItemDropFields.TIMESTAMP, c -> c.gte(conditions.getStart())));
+				if (conditions.getEnd() != null)
+					criterias.add(schema.matching(ItemDropFields.TIMESTAMP, c -> c.lt(conditions.getEnd())));
+				if (conditions.getAfterId() != null)
+					criterias.add(Criteria.where("_id").gt(conditions.getAfterId()));
+				addPartitionBounds(schema, criterias, route);
+				return criterias;
+			});
+			// _id is in both schemas, so one query in its order covers all reports.
+			Query query = new Query(criteria).with(new Sort(Direction.ASC, "_id"));
+			excludeIpAndScreenshot(query);
+			try (CloseableIterator<Document> iterator =
+					mongoTemplate.stream(query, Document.class, route.getCollectionName())) {
+				iterator.forEachRemaining(doc -> consumer.accept(toItemDrop(doc)));
+			}
+		}
+	}
+
+	/** 
+	 * @Title: markDeleted 
+	 * @Description: Set isDeleted of one report in the hot collection. Archived reports are read-only. The flag is
+	 * written under the name of the schema the report is in, so that it is seen by the queries and kept by the
+	 * migration. A report of a month which is already copied into a partition, but not yet deleted from the hot
+	 * collection, is marked in the partition as well.
+	 * @param id
+	 * @return boolean false if the report is not found in the hot collection or is already deleted
+	 */
+	@Override
+	public boolean markDeleted(ObjectId id) {
+		for (Schema schema : schemas()) {
+			Query query = new Query(new Criteria().andOperator(Criteria.where("_id").is(id),
+					schema.matching(ItemDropFields.STAGE_ID, c -> c.exists(true)),
+					schema.matching(ItemDropFields.IS_DELETED, c -> c.ne(true))));
+			Update update = new Update().set(schema.name(ItemDropFields.IS_DELETED), true);
+			if (mongoTemplate.updateFirst(query, update, ItemDropPartitionRouter.HOT_COLLECTION_NAME)
+					.getMatchedCount() > 0) {
+				markDeletedInPartitions(Collections.singletonList(id));
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/** 
+	 * @Title: markDeletedInPartitions 
+	 * @Description: Set isDeleted of the reports in every partition which has a copy of them.
+	 * @param ids
+	 */
+	private void markDeletedInPartitions(Collection<?> ids) {
+		for (String partitionName : itemDropPartitionRouter.getPartitions().values()) {
+			for (Schema schema : schemas()) {
+				Query query = new Query(new Criteria().andOperator(Criteria.where("_id").in(ids),
+						schema.matching(ItemDropFields.STAGE_ID, c -> c.exists(true)),
+						schema.matching(ItemDropFields.IS_DELETED, c -> c.ne(true))));
+				mongoTemplate.updateMulti(query, new Update().set(schema.name(ItemDropFields.IS_DELETED), true),
+						partitionName);
+			}
+		}
+	}
+
+	@Override
+	public Long findFirstReliableTimestamp() {
+		for (Route route : itemDropPartitionRouter.route(null, null)) {
+			Long timestamp = findMinTimestamp(route.getCollectionName(), schema -> {
+				List<Criteria> criterias = new ArrayList<>();
+				criterias.add(schema.matching(ItemDropFields.IS_RELIABLE, c -> c.is(true)));
+				addPartitionBounds(schema, criterias, route);
+				return criterias;
+			});
+			if (timestamp != null)
+				return timestamp;
+		}
+		return null;
+	}
+
+	/** 
+	 * @Title: findHistoryByUserID 
+	 * @Description: Keyset pagination on (userID, timestamp, _id) in descending order. Only reports strictly before
+	 * the cursor are returned, so the cost of one page does not depend on how deep it is. Each schema is queried on
+	 * its own with its own sort, and the pages are merged. ip and screenshot metadata are not loaded.
+	 * @param userID
+	 * @param beforeTimestamp timestamp of the cursor, null for the first page
+	 * @param beforeId id of the cursor, null for the first page
+	 * @param limit
+	 * @return List<ItemDrop>
+	 */
+	@Override
+	public List<ItemDrop> findHistoryByUserID(String userID, Long beforeTimestamp, ObjectId beforeId, int limit) {
+		List<ItemDrop> result = new ArrayList<>();
+		List<Route> routes = itemDropPartitionRouter.route(null, beforeTimestamp == null ? null : beforeTimestamp + 1);
+		// Newest collection first, the hot collection is always the last route.
+		for (int i = routes.size() - 1; i >= 0 && result.size() < limit; i--) {
+			Route route = routes.get(i);
+			List<ItemDrop> page = new ArrayList<>();
+			for (Schema schema : schemas()) {
+				List<Criteria> criterias = new ArrayList<>();
+				criterias.add(schema.matching(ItemDropFields.USER_ID, c -> c.is(userID)));
+				criterias.add(schema.matching(ItemDropFields.IS_DELETED, c -> c.is(false)));
+				if (beforeTimestamp != null)
+					criterias.add(historyCursor(schema, beforeTimestamp, beforeId));
+				addPartitionBounds(schema, criterias, route);
+				Query query = new Query(allOf(criterias))
+						.with(new Sort(Direction.DESC, schema.name(ItemDropFields.TIMESTAMP))
+								.and(new Sort(Direction.DESC, "_id")))
+						.limit(limit - result.size());
+				excludeIpAndScreenshot(query);
+				mongoTemplate.find(query, Document.class, route.getCollectionName())
+						.forEach(doc -> page.add(toItemDrop(doc)));
+			}
+			result.addAll(newestFirst(page, limit - result.size()));
+		}
+		return result;
+	}
+
+	/** 
+	 * @Title: historyCursor 
+	 * @Description: Reports strictly before the cursor in the order of (timestamp, _id).
+	 * @param schema
+	 * @param beforeTimestamp
+	 * @param beforeId
+	 * @return Criteria
+	 */
+	static Criteria historyCursor(Schema schema, Long beforeTimestamp, ObjectId beforeId) {
+		return new Criteria().orOperator(schema.matching(ItemDropFields.TIMESTAMP, c -> c.lt(beforeTimestamp)),
+				new Criteria().andOperator(schema.matching(ItemDropFields.TIMESTAMP, c -> c.is(beforeTimestamp)),
+						Criteria.where("_id").lt(beforeId)));
+	}
+
+	/** 
+	 * @Title: newestFirst 
+	 * @Description: Sort reports in descending order of (timestamp, _id) and keep the first limit of them.
+	 * @param itemDrops
+	 * @param limit
+	 * @return List<ItemDrop>
+	 */
+	static List<ItemDrop> newestFirst(List<ItemDrop> itemDrops, int limit) {
+		return itemDrops.stream()
+				.sorted(Comparator.comparing(ItemDrop::getTimestamp).thenComparing(ItemDrop::getId).reversed())
+				.limit(limit).collect(Collectors.toList());
+	}
+
+	private void excludeIpAndScreenshot(Query query) {
+		for (Schema schema : schemas())
+			query.fields().exclude(schema.name(ItemDropFields.IP))
+					.exclude(schema.name(ItemDropFields.SCREENSHOT_METADATA));
+	}
+
+	/** 
+	 * @Title: archiveItemDrops 
+	 * @Description: Copy every closed month before the hot months into its own partition collection using $out.
+	 * Reports which were copied in a former run are deleted from the hot collection first. Deleting one run later
+	 * gives all instances enough time to see the new partition, so no instance ever misses those reports. Reports
+	 * deleted in between, e.g. while $out was copying them, are marked deleted in the partitions before that.
+	 */
+	@Override
+	public void archiveItemDrops() {
+		if (!itemDropPartitionRouter.isEnabled())
+			return;
+
+		itemDropPartitionRouter.refresh();
+		itemDropPartitionRouter.getPartitions().values().forEach(this::ensurePartitionIndexes);
+		Long archivedUntil = itemDropPartitionRouter.getArchivedUntil();
+		if (archivedUntil != null) {
+			for (Schema schema : schemas()) {
+				Query query = new Query(new Criteria().andOperator(
+						schema.matching(ItemDropFields.TIMESTAMP, c -> c.lt(archivedUntil)),
+						schema.matching(ItemDropFields.IS_DELETED, c -> c.is(true))));
+				query.fields().include("_id");
+				List<Object> ids = mongoTemplate
+						.find(query, Document.class, ItemDropPartitionRouter.HOT_COLLECTION_NAME).stream()
+						.map(doc -> doc.get("_id")).collect(Collectors.toList());
+				if (!ids.isEmpty())
+					markDeletedInPartitions(ids);
+			}
+			DeleteResult result = mongoTemplate.remove(
+					new Query(inEachSchema(ItemDropFields.TIMESTAMP, c -> c.lt(archivedUntil))),
+					ItemDropPartitionRouter.HOT_COLLECTION_NAME);
+			log.info("{} archived item drops are deleted from the hot collection", result.getDeletedCount());
+		}
+
+		Long firstTimestamp = findMinTimestamp(ItemDropPartitionRouter.HOT_COLLECTION_NAME, schema -> {
+			List<Criteria> criterias = new ArrayList<>();
+			if (archivedUntil != null)
+				criterias.add(schema.matching(ItemDropFields.TIMESTAMP, c -> c.gte(archivedUntil)));
+			return criterias;
+		});
+		if (firstTimestamp == null)
+			return;
+
+		// Partitions must be contiguous, because the hot collection only answers for timestamps after the last one.
+		YearMonth month = YearMonth.from(
+				Instant.ofEpochMilli(archivedUntil != null ? archivedUntil : firstTimestamp).atZone(ZoneOffset.UTC));
+		YearMonth firstHotMonth = YearMonth.now(ZoneOffset.UTC).minusMonths(itemDropPartitionRouter.getHotMonths() - 1);
+		for (; month.isBefore(firstHotMonth); month = month.plusMonths(1)) {
+			String partitionName = ItemDropPartitionRouter.partitionName(month);
+			long start = ItemDropPartitionRouter.monthStart(month);
+			long end = ItemDropPartitionRouter.monthStart(month.plusMonths(1));
+			Long currentTime = System.currentTimeMillis();
+
+			List<AggregationOperation> operations = new LinkedList<>();
+			operations.add(Aggregation.match(inEachSchema(ItemDropFields.TIMESTAMP, c -> c.gte(start).lt(end))));
+			operations.add(Aggregation.out(partitionName));
+			runAggregation(operations, new Route(ItemDropPartitionRouter.HOT_COLLECTION_NAME, null, null));
+			if (!mongoTemplate.collectionExists(partitionName))
+				mongoTemplate.createCollection(partitionName);
+			ensurePartitionIndexes(partitionName);
+
+			log.info("item drops in {} are archived into {} in {} ms", month, partitionName,
+					System.currentTimeMillis() - currentTime);
+		}
+		itemDropPartitionRouter.refresh();
+	}
+
+	/** 
+	 * @Title: ensurePartitionIndexes 
+	 * @Description: Partitions are read-only, so they only need the indexes used by aggregations and the history.
+	 * While legacy reports are read, the same indexes are needed on the full field names, or the legacy branch of
+	 * every query scans the whole partition. They are dropped by dropLegacyIndexes after the migration.
+	 * @param partitionName
+	 */
+	private void ensurePartitionIndexes(String partitionName) {
+		IndexOperations indexOps = mongoTemplate.indexOps(partitionName);
+		for (Schema schema : schemas()) {
+			String prefix = schema == Schema.COMPACT ? "" : "legacy_";
+			indexOps.ensureIndex(new Index().on(schema.name(ItemDropFields.STAGE_ID), Direction.ASC)
+					.on(schema.name(ItemDropFields.TIMESTAMP), Direction.ASC).named(prefix + "s_ts"));
+			indexOps.ensureIndex(new Index().on(schema.name(ItemDropFields.TIMESTAMP), Direction.ASC)
+					.named(prefix + "ts"));
+			indexOps.ensureIndex(new Index().on(schema.name(ItemDropFields.USER_ID), Direction.ASC)
+					.on(schema.name(ItemDropFields.TIMESTAMP), Direction.DESC).on("_id", Direction.DESC)
+					.named(prefix + "u_ts_id"));
+		}
+	}
+
+	/** 
+	 * @Title: migrateLegacyFields 
+	 * @Description: Rewrite one batch of reports which still use the full field names into the compact schema.
+	 * Already migrated reports are never selected again, so the migration can be stopped and resumed at any time.
+	 * If a report already has the compact name of a field, that value is kept and the full name is only removed.
+	 * A report whose flags were changed after it was read, e.g. by a recall, is not matched by its update and is
+	 * left for the next batch.
+	 * @param batchSize
+	 * @return int The number of reports read in this batch, 0 if there is nothing left.
+	 */
+	@Override
+	public int migrateLegacyFields(int batchSize) {
+		String legacyStageId = ItemDropFields.LEGACY_NAMES.get(ItemDropFields.STAGE_ID);
+		int migrated = 0;
+		for (Route route : itemDropPartitionRouter.route(null, null)) {
+			Query query = new Query(Criteria.where(legacyStageId).exists(true)).limit(batchSize - migrated);
+			List<Document> docs = mongoTemplate.find(query, Document.class, route.getCollectionName());
+			if (docs.isEmpty())
+				continue;
+
+			BulkOperations bulkOps = mongoTemplate.bulkOps(BulkMode.UNORDERED, route.getCollectionName());
+			for (Document doc : docs) {
+				Update update = new Update();
+				ItemDropFields.LEGACY_NAMES.forEach((field, legacyField) -> {
+					if (!doc.containsKey(legacyField))
+						return;
+					update.unset(legacyField);
+					if (doc.containsKey(field))
+						return;
+					Object value = doc.get(legacyField);
+					if (ItemDropFields.DROPS.equals(field) && value instanceof List)
+						value = toCompactDrops((List<?>)value);
+					update.set(field, value);
+				});
+				bulkOps.updateOne(new Query(migrationFilter(doc)), update);
+			}
+			int matched = bulkOps.execute().getMatchedCount();
+			if (matched < docs.size())
+				log.info("{} item drops in {} changed during migration and are retried in the next batch",
+						docs.size() - matched, route.getCollectionName());
+			migrated += docs.size();
+			if (migrated >= batchSize)
+				break;
+		}
+		return migrated;
+	}
+
+	/** 
+	 * @Title: migrationFilter 
+	 * @Description: Match the report only if its flags in both schemas are still the ones that were read, so that
+	 * the migration never writes back a stale isDeleted or isReliable.
+	 * @param doc The report as read by the migration.
+	 * @return Criteria
+	 */
+	static Criteria migrationFilter(Document doc) {
+		List<Criteria> criterias = new ArrayList<>();
+		criterias.add(Criteria.where("_id").is(doc.get("_id")));
+		for (String field : Arrays.asList(ItemDropFields.IS_DELETED, ItemDropFields.IS_RELIABLE)) {
+			for (String name : Arrays.asList(field, ItemDropFields.LEGACY_NAMES.get(field))) {
+				criterias.add(doc.containsKey(name) ? Criteria.where(name).is(doc.get(name))
+						: Criteria.where(name).exists(false));
+			}
+		}
+		return allOf(criterias);
+	}
+
+	@Override
+	public void dropLegacyIndexes() {
+		// Legacy indexes are still used by the compatible criteria on the full field names.
+		if (legacyCompatible) {
+			log.warn("legacy indexes are kept because item-drop.schema.legacy-compatible is on");
+			return;
+		}
+		for (Route route : itemDropPartitionRouter.route(null, null)) {
+			IndexOperations indexOps = mongoTemplate.indexOps(route.getCollectionName());
+			indexOps.getIndexInfo().forEach(indexInfo -> {
+				boolean isLegacy = indexInfo.getIndexFields().stream()
+						.anyMatch(field -> ItemDropFields.LEGACY_NAMES.containsValue(field.getKey().split("\\.")[0]));
+				if (isLegacy) {
+					indexOps.dropIndex(indexInfo.getName());
+					log.info("legacy index {} is dropped from {}", indexInfo.getName(), route.getCollectionName());
+				}
+			});
+		}
+	}
+
+	private List<Document> toCompactDrops(List<?> drops) {
+		List<Document> result = new ArrayList<>();
+		for (Object drop : drops) {
+			Document dropDoc = (Document)drop;
+			result.add(new Document(ItemDropFields.DROP_ITEM_ID, dropDoc.get(ItemDropFields.LEGACY_DROP_ITEM_ID))
+					.append(ItemDropFields.DROP_QUANTITY, dropDoc.get(ItemDropFields.LEGACY_DROP_QUANTITY)));
+		}
+		return result;
+	}
+
+	private List<Route> routeByStages(List<StageWithTimeRange> stages) {
+		if (stages.isEmpty())
+			return itemDropPartitionRouter.route(null, null);
+		Long min = null;
+		Long max = null;
+		for (StageWithTimeRange stage : stages) {
+			Long start = stage.getStart() == null ? 0L : stage.getStart();
+			Long end = stage.getEnd() == null ? System.currentTimeMillis() : stage.getEnd();
+			min = min == null ? start : Math.min(min, start);
+			max = max == null ? end : Math.max(max, end);
+		}
+		return itemDropPartitionRouter.route(min, max);
+	}
+
+	/** 
+	 * @Title: conditionCriterias 
+	 * @Description: Criterias shared by the aggregations on query conditions: not deleted, reliable or from the given
+	 * users, on the given servers, and in the time ranges of the given stages.
+	 * @param schema
+	 * @param conditions
+	 * @param route
+	 * @return List<Criteria>
+	 */
+	private List<Criteria> conditionCriterias(Schema schema, QueryConditions conditions, Route route) {
+		List<String> userIDs = conditions.getUserIDs();
+		List<Server> servers = conditions.getServers();
+		List<StageWithTimeRange> stages = conditions.getStages();
+
+		List<Criteria> criterias = new ArrayList<>();
+		criterias.add(schema.matching(ItemDropFields.IS_DELETED, c -> c.is(false)));
+
+		if (userIDs.isEmpty())
+			criterias.add(schema.matching(ItemDropFields.IS_RELIABLE, c -> c.is(true)));
+		else
+			criterias.add(schema.matching(ItemDropFields.USER_ID, c -> c.in(userIDs)));
+
+		if (!servers.isEmpty())
+			criterias.add(schema.matching(ItemDropFields.SERVER, c -> c.in(getServerNames(servers))));
+
+		addPartitionBounds(schema, criterias, route);
+
+		if (!stages.isEmpty()) {
+			if (1 == stages.size() && stages.get(0).getStageId() == null) {
+				StageWithTimeRange stage = stages.get(0);
+				Long min = stage.getStart() == null ? 0L : stage.getStart();
+				Long max = stage.getEnd() == null ? System.currentTimeMillis() : stage.getEnd();
+				criterias.add(schema.matching(ItemDropFields.TIMESTAMP, c -> c.gte(min).lt(max)));
+			} else {
+				List<Criteria> criteriasInOr = new ArrayList<>();
+				stages.forEach(stage -> {
+					Long min = stage.getStart() == null ? 0L : stage.getStart();
+					Long max = stage.getEnd() == null ? System.currentTimeMillis() : stage.getEnd();
+					criteriasInOr.add(new Criteria().andOperator(
+							schema.matching(ItemDropFields.TIMESTAMP, c -> c.gte(min).lt(max)),
+							schema.matching(ItemDropFields.STAGE_ID, c -> c.is(stage.getStageId()))));
+				});
+				criterias.add(new Criteria().orOperator(criteriasInOr.toArray(new Criteria[0])));
+			}
+		}
+		return criterias;
+	}
+
+	private static void addPartitionBounds(Schema schema, List<Criteria> criterias, Route route) {
+		if (route.getLower() != null && route.getUpper() != null)
+			criterias.add(schema.matching(ItemDropFields.TIMESTAMP, c -> c.gte(route.getLower()).lt(route.getUpper())));
+		else if (route.getLower() != null)
+			criterias.add(schema.matching(ItemDropFields.TIMESTAMP, c -> c.gte(route.getLower())));
+		else if (route.getUpper() != null)
+			criterias.add(schema.matching(ItemDropFields.TIMESTAMP, c -> c.lt(route.getUpper())));
+	}
+
+	/** 
+	 * @Title: inEachSchema 
+	 * @Description: Build the criterias once per schema and match a report by those of its own schema. Each branch
+	 * of the resulting $or only uses the fields of one schema, so it can be answered by the indexes on them. While
+	 * legacy reports can not exist any more, only the compact branch is built.
+	 * @param criterias
+	 * @return Criteria
+	 */
+	private Criteria inEachSchema(Function<Schema, List<Criteria>> criterias) {
+		Criteria compact = allOf(criterias.apply(Schema.COMPACT));
+		if (!legacyCompatible)
+			return compact;
+		return new Criteria().orOperator(compact, allOf(criterias.apply(Schema.LEGACY)));
+	}
+
+	private Criteria inEachSchema(String field, Function<Criteria, Criteria> condition) {
+		return inEachSchema(schema -> Collections.singletonList(schema.matching(field, condition)));
+	}
+
+	private Schema[] schemas() {
+		return legacyCompatible ? Schema.values() : new Schema[] {Schema.COMPACT};
+	}
+
+	private static Criteria allOf(List<Criteria> criterias) {
+		if (criterias.isEmpty())
+			return new Criteria();
+		if (criterias.size() == 1)
+			return criterias.get(0);
+		return new Criteria().andOperator(criterias.toArray(new Criteria[0]));
+	}
+
+	/** 
+	 * @Title: normalizeFields 
+	 * @Description: Project the stored fields used by the aggregations back to their full names, so that the rest of
+	 * each pipeline (and the output docs) are independent of the storage schema.
+	 * @return AggregationOperation
+	 */
+	private AggregationOperation normalizeFields() {
+		Document projection = new Document();
+		projection.put("stageId", storedValue(ItemDropFields.STAGE_ID));
+		projection.put("times", storedValue(ItemDropFields.TIMES));
+		projection.put("timestamp", storedValue(ItemDropFields.TIMESTAMP));
+		Document drop = new Document("itemId", storedDropValue(ItemDropFields.DROP_ITEM_ID)).append("quantity",
+				storedDropValue(ItemDropFields.DROP_QUANTITY));
+		projection.put("drops", new Document("$map", new Document("input", storedValue(ItemDropFields.DROPS))
+				.append("as", "drop").append("in", drop)));
+		return context -> new Document("$project", projection);
+	}
+
+	private Object storedValue(String field) {
+		if (!legacyCompatible)
+			return "$" + field;
+		return new Document("$ifNull", Arrays.asList("$" + field, "$" + ItemDropFields.LEGACY_NAMES.get(field)));
+	}
+
+	private Object storedDropValue(String field) {
+		String legacyField = ItemDropFields.DROP_ITEM_ID.equals(field) ? ItemDropFields.LEGACY_DROP_ITEM_ID
+				: ItemDropFields.LEGACY_DROP_QUANTITY;
+		if (!legacyCompatible)
+			return "$$drop." + field;
+		return new Document("$ifNull", Arrays.asList("$$drop." + field, "$$drop." + legacyField));
+	}
+
+	private List<String> getServerNames(List<Server> servers) {
+		return servers.stream().map(Server::name).collect(Collectors.toList());
+	}
+
+	private Long findMinTimestamp(String collectionName, Function<Schema, List<Criteria>> criterias) {
+		// Query each schema separately, so that every query can be answered by the index on its timestamp.
+		Long result = null;
+		for (Schema schema : schemas()) {
+			String timestampField = schema.name(ItemDropFields.TIMESTAMP);
+			List<Criteria> allCriterias = new ArrayList<>(criterias.apply(schema));
+			allCriterias.add(schema.matching(ItemDropFields.TIMESTAMP, c -> c.exists(true)));
+			Query query = new Query(allOf(allCriterias)).with(new Sort(Direction.ASC, timestampField));
+			Document doc = mongoTemplate.findOne(query, Document.class, collectionName);
+			if (doc != null) {
+				Long timestamp = doc.getLong(timestampField);
+				result = result == null ? timestamp : Math.min(result, timestamp);
+			}
+		}
+		return result;
+	}
+
+	private List<Document> runAggregation(List<AggregationOperation> operations, Route route) {
+		AggregationOptions options = newAggregationOptions().allowDiskUse(true).build();
+		return mongoTemplate.aggregate(newAggregation(operations).withOptions(options), route.getCollectionName(),
+				Document.class).getMappedResults();
+	}
+
+	/** 
+	 * @Title: mergePartialResults 
+	 * @Description: Merge aggregation results from several partitions. Docs with the same keyFields are merged into
+	 * one by summing up sumField. If timesKeyFields is given, 'times' is the total times of a group identified by
+	 * timesKeyFields, which appears once per partition and is repeated in every doc of that group.
+	 * @param partialResults
+	 * @param keyFields
+	 * @param sumField
+	 * @param timesKeyFields
+	 * @return List<Document>
+	 */
+	private List<Document> mergePartialResults(List<List<Document>> partialResults, String[] keyFields,
+			String sumField, String[] timesKeyFields) {
+		Map<String, Document> mergedDocs = new LinkedHashMap<>();
+		Map<String, Integer> timesMap = new HashMap<>();
+		for (List<Document> docs : partialResults) {
+			Set<String> countedTimesKeys = new HashSet<>();
+			for (Document doc : docs) {
+				if (timesKeyFields != null) {
+					String timesKey = getMergeKey(doc, timesKeyFields);
+					if (countedTimesKeys.add(timesKey))
+						timesMap.merge(timesKey, doc.getInteger("times"), Integer::sum);
+				}
+				String key = getMergeKey(doc, keyFields);
+				Document mergedDoc = mergedDocs.get(key);
+				if (mergedDoc == null)
+					mergedDocs.put(key, new Document(doc));
+				else
+					mergedDoc.put(sumField, mergedDoc.getInteger(sumField, 0) + doc.getInteger(sumField, 0));
+			}
+		}
+		if (timesKeyFields != null)
+			mergedDocs.values().forEach(doc -> doc.put("times", timesMap.get(getMergeKey(doc, timesKeyFields))));
+		return new ArrayList<>(mergedDocs.values());
+	}
+
+	private String getMergeKey(Document doc, String[] fields) {
+		List<String> values = new ArrayList<>();
+		for (String field : fields)
+			values.add(String.valueOf(doc.get(field)));
+		return values.stream().collect(Collectors.joining("|"));
+	}
+
+	/**
+	 * The schemas a stored report may be in. A report written before the compact schema uses the full field names.
+	 */
+	enum Schema {
+
+		COMPACT, LEGACY;
+
+		String name(String field) {
+			return this == COMPACT ? field : ItemDropFields.legacyName(field);
+		}
+
+		/** 
+		 * @Title: matching 
+		 * @Description: Build the criteria on a stored field in this schema. If a report has both names of the field,
+		 * only the compact one is matched.
+		 * @param field
+		 * @param condition
+		 * @return Criteria
+		 */
+		Criteria matching(String field, Function<Criteria, Criteria> condition) {
+			Criteria criteria = condition.apply(Criteria.where(name(field)));
+			return this == COMPACT ? criteria : criteria.and(field).exists(false);
+		}
 
-		AggregationResults<Document> results = mongoTemplate.aggregate(aggregation, ItemDrop.class, Document.class);
-		return results.getMappedResults();
 	}
 
 }
@@ -0,0 +1,136 @@
+package io.penguinstats.dao;
+
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Component;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * ItemDropPartitionRouter knows the monthly archive partitions of item_drop_v2.<br>
+ * Reports before {@link #getArchivedUntil()} live in read-only collections named item_drop_v2_yyyyMM (UTC months).
+ * The hot collection item_drop_v2 only answers for timestamps after that, so reports which are already copied into
+ * a partition but not yet deleted from the hot collection are never counted twice.
+ */
+@Component("itemDropPartitionRouter")
+public class ItemDropPartitionRouter {
+
+    public static final String HOT_COLLECTION_NAME = "item_drop_v2";
+
+    private static final String PARTITION_PREFIX = HOT_COLLECTION_NAME + "_";
+
+    private static final DateTimeFormatter PARTITION_FORMATTER = DateTimeFormatter.ofPattern("uuuuMM");
+
+    private static final long REFRESH_INTERVAL = 60000L;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Getter
+    @Value("${item-drop.partition.enabled:false}")
+    private boolean enabled;
+
+    @Getter
+    @Value("${item-drop.partition.hot-months:2}")
+    private int hotMonths;
+
+    private volatile Map<YearMonth, String> partitions = Collections.emptyMap();
+
+    private volatile long lastRefreshTime = 0L;
+
+    /**
+     * @Title: route
+     * @Description: Get all collections which may contain reports in [min, max).
+     * @param min null means no lower bound
+     * @param max null means no upper bound
+     * @return List<Route> The hot collection is always the last one.
+     */
+    public List<Route> route(Long min, Long max) {
+        if (!enabled)
+            return Collections.singletonList(new Route(HOT_COLLECTION_NAME, null, null));
+        if (System.currentTimeMillis() - lastRefreshTime > REFRESH_INTERVAL)
+            refresh();
+
+        List<Route> routes = new ArrayList<>();
+        Long archivedUntil = null;
+        for (Map.Entry<YearMonth, String> entry : partitions.entrySet()) {
+            long start = monthStart(entry.getKey());
+            long end = monthStart(entry.getKey().plusMonths(1));
+            archivedUntil = end;
+            if ((min == null || min < end) && (max == null || max > start))
+                routes.add(new Route(entry.getValue(), start, end));
+        }
+        if (max == null || archivedUntil == null || max > archivedUntil)
+            routes.add(new Route(HOT_COLLECTION_NAME, archivedUntil, null));
+        return routes;
+    }
+
+    public Long getArchivedUntil() {
+        YearMonth last = null;
+        for (YearMonth month : partitions.keySet())
+            last = month;
+        return last == null ? null : monthStart(last.plusMonths(1));
+    }
+
+    public Map<YearMonth, String> getPartitions() {
+        return partitions;
+    }
+
+    public synchronized void refresh() {
+        Map<YearMonth, String> newPartitions = new TreeMap<>();
+        for (String collectionName : mongoTemplate.getCollectionNames()) {
+            YearMonth month = parsePartitionName(collectionName);
+            if (month != null)
+                newPartitions.put(month, collectionName);
+        }
+        partitions = Collections.unmodifiableMap(newPartitions);
+        lastRefreshTime = System.currentTimeMillis();
+    }
+
+    public static String partitionName(YearMonth month) {
+        return PARTITION_PREFIX + month.format(PARTITION_FORMATTER);
+    }
+
+    public static long monthStart(YearMonth month) {
+        return month.atDay(1).atStartOfDay().toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    private static YearMonth parsePartitionName(String collectionName) {
+        if (!collectionName.startsWith(PARTITION_PREFIX))
+            return null;
+        String suffix = collectionName.substring(PARTITION_PREFIX.length());
+        if (suffix.length() != 6 || !suffix.chars().allMatch(Character::isDigit))
+            return null;
+        return YearMonth.parse(suffix, PARTITION_FORMATTER);
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class Route {
+
+        private String collectionName;
+
+        /**
+         * Inclusive lower bound of timestamp, null if unbounded.
+         */
+        private Long lower;
+
+        /**
+         * Exclusive upper bound of timestamp, null if unbounded.
+         */
+        private Long upper;
+
+    }
+
+}
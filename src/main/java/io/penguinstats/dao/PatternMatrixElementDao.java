@@ -9,7 +9,8 @@ import io.penguinstats.enums.Server;
 import io.penguinstats.model.PatternMatrixElement;
 
 @Repository
-public interface PatternMatrixElementDao extends MongoRepository<PatternMatrixElement, String> {
+public interface PatternMatrixElementDao extends MongoRepository<PatternMatrixElement, String>,
+		PatternMatrixElementDaoCustom {
 
 	Long deleteByServer(Server server);
 
@@ -0,0 +1,11 @@
+package io.penguinstats.dao;
+
+import java.util.Collection;
+
+import io.penguinstats.model.PatternMatrixElement;
+
+public interface PatternMatrixElementDaoCustom {
+
+	int bulkInsert(Collection<PatternMatrixElement> elements);
+
+}
@@ -0,0 +1,19 @@
+package io.penguinstats.dao;
+
+import java.util.Collection;
+
+import org.springframework.beans.factory.annotation.Autowired;
+
+import io.penguinstats.model.PatternMatrixElement;
+
+public class PatternMatrixElementDaoCustomImpl implements PatternMatrixElementDaoCustom {
+
+	@Autowired
+	DerivedDataBulkWriter derivedDataBulkWriter;
+
+	@Override
+	public int bulkInsert(Collection<PatternMatrixElement> elements) {
+		return derivedDataBulkWriter.insert(elements, PatternMatrixElement.class);
+	}
+
+}
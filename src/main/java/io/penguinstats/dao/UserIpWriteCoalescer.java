@@ -0,0 +1,106 @@
+package io.penguinstats.dao;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import io.penguinstats.constant.Constant.CacheValue;
+import io.penguinstats.model.User;
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * UserIpWriteCoalescer buffers (userID, ip) pairs of users seen from a new IP and writes them in periodic bulk
+ * updates, instead of one update per request.<br>
+ * Pairs are deduplicated in memory until the next flush. The ips array of a user is capped at user-ip.max-ips: new
+ * IPs are appended and the earliest ones are dropped, so cached User objects stay small.<br>
+ * Writes are best effort. Pending pairs are lost if the instance dies before a flush, and new ones are dropped while
+ * user-ip.max-pending-users users are already waiting.
+ */
+@Log4j2
+@Component("userIpWriteCoalescer")
+public class UserIpWriteCoalescer {
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Value("${user-ip.max-ips:20}")
+    private int maxIps;
+
+    @Value("${user-ip.max-pending-users:100000}")
+    private int maxPendingUsers;
+
+    private final Map<String, Set<String>> pending = new ConcurrentHashMap<>();
+
+    /**
+     * @Title: add
+     * @Description: Queue an IP to be added to the user at the next flush.
+     * @param userID
+     * @param ip
+     */
+    public void add(String userID, String ip) {
+        if (pending.size() >= maxPendingUsers && !pending.containsKey(userID)) {
+            log.warn("pending user ip writes are full, ip {} of user {} is dropped", ip, userID);
+            return;
+        }
+        pending.compute(userID, (k, ips) -> {
+            Set<String> result = ips == null ? new LinkedHashSet<>() : ips;
+            if (result.size() < maxIps)
+                result.add(ip);
+            return result;
+        });
+    }
+
+    /**
+     * @Title: flush
+     * @Description: Write all pending IPs with one ordered bulk operation, and evict the cached users.
+     * @return int The number of users written.
+     */
+    @PreDestroy
+    public synchronized int flush() {
+        if (pending.isEmpty())
+            return 0;
+        long startTime = System.currentTimeMillis();
+        BulkOperations bulkOps = mongoTemplate.bulkOps(BulkMode.ORDERED, User.class);
+        List<String> userIDs = new ArrayList<>();
+        for (String userID : new ArrayList<>(pending.keySet())) {
+            Set<String> ips = pending.remove(userID);
+            if (ips == null || ips.isEmpty())
+                continue;
+            Object[] values = ips.toArray();
+            Query query = new Query(Criteria.where("userID").is(userID));
+            // $pull and $push cannot touch the same field in one update, so move existing IPs to the end in two steps
+            bulkOps.updateOne(query, new Update().pullAll("ips", values));
+            bulkOps.updateOne(query, new Update().push("ips").slice(-maxIps).each(values));
+            userIDs.add(userID);
+        }
+        if (userIDs.isEmpty())
+            return 0;
+        bulkOps.execute();
+
+        Cache cache = cacheManager.getCache(CacheValue.USERS);
+        if (cache != null)
+            userIDs.forEach(cache::evict);
+        log.debug("ips of {} users are written in {} ms", userIDs.size(), System.currentTimeMillis() - startTime);
+        return userIDs.size();
+    }
+
+}
@@ -0,0 +1,19 @@
+package io.penguinstats.dao;
+
+import java.util.List;
+
+import org.bson.types.ObjectId;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+import io.penguinstats.enums.Server;
+import io.penguinstats.model.UserStageTimes;
+
+@Repository
+public interface UserStageTimesDao extends MongoRepository<UserStageTimes, ObjectId> {
+
+    List<UserStageTimes> findByUserID(String userID);
+
+    List<UserStageTimes> findByUserIDAndServer(String userID, Server server);
+
+}
@@ -0,0 +1,12 @@
+package io.penguinstats.enums;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public enum ExportFormat {
+    NDJSON("application/x-ndjson"), CSV("text/csv");
+
+    private String contentType;
+}
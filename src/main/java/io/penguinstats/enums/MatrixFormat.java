@@ -0,0 +1,46 @@
+package io.penguinstats.enums;
+
+import java.util.List;
+
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public enum MatrixFormat {
+    JSON("application/json;charset=UTF-8"), CBOR("application/cbor"),
+    COLUMNAR("application/vnd.penguin-stats.matrix+columnar");
+
+    private String contentType;
+
+    /**
+     * @Title: fromAccept
+     * @Description: Pick the format with the highest quality in the Accept header. JSON if nothing else is asked for
+     *               explicitly, so browsers and existing clients are not affected.
+     * @param accept
+     * @return MatrixFormat
+     */
+    public static MatrixFormat fromAccept(String accept) {
+        if (accept == null)
+            return JSON;
+        List<MediaType> mediaTypes;
+        try {
+            mediaTypes = MediaType.parseMediaTypes(accept);
+        } catch (InvalidMediaTypeException e) {
+            return JSON;
+        }
+        MediaType.sortBySpecificityAndQuality(mediaTypes);
+        for (MediaType mediaType : mediaTypes) {
+            if (mediaType.isWildcardType() || mediaType.isWildcardSubtype())
+                return JSON;
+            for (MatrixFormat format : values()) {
+                if (MediaType.parseMediaType(format.contentType).equalsTypeAndSubtype(mediaType))
+                    return format;
+            }
+        }
+        return JSON;
+    }
+}
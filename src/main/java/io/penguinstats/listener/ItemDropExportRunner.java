@@ -0,0 +1,73 @@
+package io.penguinstats.listener;
+
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.util.List;
+
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+import org.springframework.stereotype.Component;
+
+import io.penguinstats.enums.ExportFormat;
+import io.penguinstats.enums.Server;
+import io.penguinstats.model.ItemDropExportConditions;
+import io.penguinstats.service.ItemDropExportService;
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * Runs an export and exits when the application is started with --export.output=&lt;file&gt;.<br>
+ * Other options: --export.server, --export.stageId, --export.start, --export.end, --export.format (NDJSON or CSV)
+ * and --export.after (resume token).
+ */
+@Log4j2
+@Component("itemDropExportRunner")
+public class ItemDropExportRunner implements ApplicationRunner {
+
+    private static final String OPTION_PREFIX = "export.";
+
+    @Autowired
+    private ItemDropExportService itemDropExportService;
+
+    @Autowired
+    private ApplicationContext applicationContext;
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        String output = getOption(args, "output");
+        if (output == null)
+            return;
+
+        String server = getOption(args, "server");
+        String start = getOption(args, "start");
+        String end = getOption(args, "end");
+        String after = getOption(args, "after");
+        String format = getOption(args, "format");
+        ItemDropExportConditions conditions = new ItemDropExportConditions()
+                .setServer(server == null ? null : Server.valueOf(server)).setStageId(getOption(args, "stageId"))
+                .setStart(start == null ? null : Long.valueOf(start)).setEnd(end == null ? null : Long.valueOf(end))
+                .setAfterId(after == null ? null : new ObjectId(after));
+
+        int exitCode = 0;
+        log.info("start to export item drops into {}", output);
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(output, after != null))) {
+            itemDropExportService.exportItemDrops(conditions,
+                    format == null ? ExportFormat.NDJSON : ExportFormat.valueOf(format), out);
+        } catch (Exception e) {
+            log.error("export failed", e);
+            exitCode = 1;
+        }
+        final int code = exitCode;
+        System.exit(SpringApplication.exit(applicationContext, () -> code));
+    }
+
+    private String getOption(ApplicationArguments args, String name) {
+        List<String> values = args.getOptionValues(OPTION_PREFIX + name);
+        return values == null || values.isEmpty() ? null : values.get(0);
+    }
+
+}
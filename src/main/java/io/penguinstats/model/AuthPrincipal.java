@@ -0,0 +1,40 @@
+package io.penguinstats.model;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import lombok.Getter;
+
+/**
+ * AuthPrincipal is the user a request is authenticated as. It is resolved at most once per request by AuthUtil and
+ * is immutable, so it can be shared by controllers, ResultUtil and the exception handlers.
+ */
+@Getter
+public class AuthPrincipal {
+
+    public static final AuthPrincipal ANONYMOUS = new AuthPrincipal(null, null);
+
+    /**
+     * null if the request is not authenticated.
+     */
+    private final String userID;
+
+    private final Set<String> tags;
+
+    public AuthPrincipal(String userID, Collection<String> tags) {
+        this.userID = userID;
+        this.tags = tags == null || tags.isEmpty() ? Collections.emptySet()
+                : Collections.unmodifiableSet(new HashSet<>(tags));
+    }
+
+    public boolean isAuthenticated() {
+        return userID != null;
+    }
+
+    public boolean hasTag(String tag) {
+        return tags.contains(tag);
+    }
+
+}
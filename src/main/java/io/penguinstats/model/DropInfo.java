@@ -60,6 +60,11 @@ public class DropInfo implements Serializable {
 	@Transient
 	private TimeRange timeRange;
 
+	@JsonIgnore
+	public DropInfo copy() {
+		return new DropInfo(id, server, stageId, itemId, dropType, timeRangeID, bounds, accumulatable, timeRange);
+	}
+
 	@JsonIgnore
 	public DropInfo toStageView() {
 		this.server = null;
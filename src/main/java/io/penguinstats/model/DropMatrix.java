@@ -0,0 +1,278 @@
+package io.penguinstats.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import io.penguinstats.enums.DropMatrixElementType;
+import io.penguinstats.enums.Server;
+import io.penguinstats.util.index.IdRegistry;
+import io.penguinstats.util.index.LongIntMap;
+
+/**
+ * DropMatrix stores drop matrix cells in parallel primitive arrays, one position per (stage, item) pair.<br>
+ * Adding a cell which already exists combines them the same way as DropMatrixElementUtil.combineElements: quantity
+ * and times are summed, start takes the minimum, end and updateTime take the maximum, and an open end wins.
+ * {@link DropMatrixElement} is only created by {@link #toElements()} as the view for caching and serialization.<br>
+ * Type and server are shared by all cells. isPast is kept per cell and, as in combineElements, taken from the first
+ * element added to the cell. Not thread-safe.
+ */
+public class DropMatrix {
+
+    /**
+     * Stored in end[] for an open interval. It is greater than every real end, so combining ends is a plain max.
+     */
+    private static final long OPEN_END = Long.MAX_VALUE;
+
+    private static final byte PAST_NULL = -1;
+
+    private static final byte PAST_FALSE = 0;
+
+    private static final byte PAST_TRUE = 1;
+
+    private final DropMatrixElementType type;
+
+    private final Server server;
+
+    private final Boolean isPast;
+
+    private final LongIntMap positions;
+
+    private int size;
+
+    private int[] stageIndexes;
+
+    private int[] itemIndexes;
+
+    private int[] quantities;
+
+    private int[] times;
+
+    private long[] starts;
+
+    private long[] ends;
+
+    private long[] updateTimes;
+
+    private byte[] pasts;
+
+    public DropMatrix(DropMatrixElementType type, Server server, Boolean isPast, int expectedSize) {
+        this.type = type;
+        this.server = server;
+        this.isPast = isPast;
+        int capacity = Math.max(16, expectedSize);
+        this.positions = new LongIntMap(capacity);
+        this.stageIndexes = new int[capacity];
+        this.itemIndexes = new int[capacity];
+        this.quantities = new int[capacity];
+        this.times = new int[capacity];
+        this.starts = new long[capacity];
+        this.ends = new long[capacity];
+        this.updateTimes = new long[capacity];
+        this.pasts = new byte[capacity];
+    }
+
+    /**
+     * @Title: of
+     * @Description: Build a matrix from elements. Type, server and the isPast of the matrix are taken from the first
+     *               element.
+     * @param elements
+     * @param firstWins If true, later elements of the same stage and item are ignored instead of combined.
+     * @return DropMatrix
+     */
+    public static DropMatrix of(Collection<DropMatrixElement> elements, boolean firstWins) {
+        DropMatrixElement first = elements.isEmpty() ? null : elements.iterator().next();
+        DropMatrix matrix = new DropMatrix(first == null ? null : first.getType(),
+                first == null ? null : first.getServer(), first == null ? null : first.getIsPast(), elements.size());
+        for (DropMatrixElement element : elements) {
+            if (firstWins)
+                matrix.putIfAbsent(element);
+            else
+                matrix.add(element);
+        }
+        return matrix;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @Title: add
+     * @Description: Add a cell by its fields. A new cell takes the isPast of the matrix.
+     */
+    public void add(String stageId, String itemId, int quantity, int times, long start, Long end, long updateTime) {
+        add(stageId, itemId, quantity, times, start, end, updateTime, isPast);
+    }
+
+    public void add(String stageId, String itemId, int quantity, int times, long start, Long end, long updateTime,
+            Boolean isPast) {
+        add(IdRegistry.STAGES.idOf(stageId), IdRegistry.ITEMS.idOf(itemId), quantity, times, start,
+                end == null ? OPEN_END : end, updateTime, encodePast(isPast));
+    }
+
+    public void add(DropMatrixElement element) {
+        add(IdRegistry.STAGES.idOf(element.getStageId()), IdRegistry.ITEMS.idOf(element.getItemId()),
+                element.getQuantity(), element.getTimes(), element.getStart(),
+                element.getEnd() == null ? OPEN_END : element.getEnd(), element.getUpdateTime(),
+                encodePast(element.getIsPast()));
+    }
+
+    public void putIfAbsent(DropMatrixElement element) {
+        int stageIndex = IdRegistry.STAGES.idOf(element.getStageId());
+        int itemIndex = IdRegistry.ITEMS.idOf(element.getItemId());
+        if (positions.get(IdRegistry.pairKey(stageIndex, itemIndex)) == LongIntMap.NO_VALUE)
+            add(stageIndex, itemIndex, element.getQuantity(), element.getTimes(), element.getStart(),
+                    element.getEnd() == null ? OPEN_END : element.getEnd(), element.getUpdateTime(),
+                    encodePast(element.getIsPast()));
+    }
+
+    /**
+     * @Title: add
+     * @Description: Combine one cell of another matrix into this one.
+     * @param other
+     * @param position
+     */
+    public void add(DropMatrix other, int position) {
+        add(other.stageIndexes[position], other.itemIndexes[position], other.quantities[position],
+                other.times[position], other.starts[position], other.ends[position], other.updateTimes[position],
+                other.pasts[position]);
+    }
+
+    /**
+     * @Title: addAll
+     * @Description: Combine all cells of another matrix into this one.
+     * @param other
+     */
+    public void addAll(DropMatrix other) {
+        for (int i = 0; i < other.size; i++)
+            add(other, i);
+    }
+
+    /**
+     * @Title: copy
+     * @Description: Copy all cells into a new matrix of the same type, server and isPast.
+     * @return DropMatrix
+     */
+    public DropMatrix copy() {
+        DropMatrix result = new DropMatrix(type, server, isPast, size);
+        result.addAll(this);
+        return result;
+    }
+
+    /**
+     * @return int The position of the cell, or -1 if the matrix has no such cell.
+     */
+    public int positionOf(String stageId, String itemId) {
+        int position = positions.get(
+                IdRegistry.pairKey(IdRegistry.STAGES.idOf(stageId), IdRegistry.ITEMS.idOf(itemId)));
+        return position == LongIntMap.NO_VALUE ? -1 : position;
+    }
+
+    public List<DropMatrixElement> toElements() {
+        List<DropMatrixElement> result = new ArrayList<>(size);
+        for (int i = 0; i < size; i++)
+            result.add(toElement(i));
+        return result;
+    }
+
+    public DropMatrixElement toElement(int position) {
+        return new DropMatrixElement(type, getStageId(position), getItemId(position), quantities[position],
+                times[position], starts[position], getEnd(position), server, getIsPast(position),
+                updateTimes[position]);
+    }
+
+    public String getStageId(int position) {
+        return IdRegistry.STAGES.nameOf(stageIndexes[position]);
+    }
+
+    public String getItemId(int position) {
+        return IdRegistry.ITEMS.nameOf(itemIndexes[position]);
+    }
+
+    public int getStageIndex(int position) {
+        return stageIndexes[position];
+    }
+
+    public int getItemIndex(int position) {
+        return itemIndexes[position];
+    }
+
+    public int getQuantity(int position) {
+        return quantities[position];
+    }
+
+    public int getTimes(int position) {
+        return times[position];
+    }
+
+    public long getStart(int position) {
+        return starts[position];
+    }
+
+    /**
+     * @return Long null if the interval is open.
+     */
+    public Long getEnd(int position) {
+        return ends[position] == OPEN_END ? null : ends[position];
+    }
+
+    public long getUpdateTime(int position) {
+        return updateTimes[position];
+    }
+
+    public Boolean getIsPast(int position) {
+        return pasts[position] == PAST_NULL ? null : pasts[position] == PAST_TRUE;
+    }
+
+    public long getMaxUpdateTime() {
+        long result = Long.MIN_VALUE;
+        for (int i = 0; i < size; i++)
+            result = Math.max(result, updateTimes[i]);
+        return result;
+    }
+
+    private static byte encodePast(Boolean isPast) {
+        return isPast == null ? PAST_NULL : isPast ? PAST_TRUE : PAST_FALSE;
+    }
+
+    private void add(int stageIndex, int itemIndex, int quantity, int times, long start, long end, long updateTime,
+            byte past) {
+        long key = IdRegistry.pairKey(stageIndex, itemIndex);
+        int position = positions.get(key);
+        if (position == LongIntMap.NO_VALUE) {
+            if (size == stageIndexes.length)
+                grow();
+            position = size++;
+            positions.put(key, position);
+            this.stageIndexes[position] = stageIndex;
+            this.itemIndexes[position] = itemIndex;
+            this.quantities[position] = quantity;
+            this.times[position] = times;
+            this.starts[position] = start;
+            this.ends[position] = end;
+            this.updateTimes[position] = updateTime;
+            this.pasts[position] = past;
+            return;
+        }
+        this.quantities[position] += quantity;
+        this.times[position] += times;
+        this.starts[position] = Math.min(this.starts[position], start);
+        this.ends[position] = Math.max(this.ends[position], end);
+        this.updateTimes[position] = Math.max(this.updateTimes[position], updateTime);
+    }
+
+    private void grow() {
+        int capacity = stageIndexes.length * 2;
+        stageIndexes = Arrays.copyOf(stageIndexes, capacity);
+        itemIndexes = Arrays.copyOf(itemIndexes, capacity);
+        quantities = Arrays.copyOf(quantities, capacity);
+        times = Arrays.copyOf(times, capacity);
+        starts = Arrays.copyOf(starts, capacity);
+        ends = Arrays.copyOf(ends, capacity);
+        updateTimes = Arrays.copyOf(updateTimes, capacity);
+        pasts = Arrays.copyOf(pasts, capacity);
+    }
+
+}
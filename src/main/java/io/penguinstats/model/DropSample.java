@@ -0,0 +1,224 @@
+package io.penguinstats.model;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * DropSample is a uniform reservoir sample of the reliable reports of one stage, kept in primitive arrays.<br>
+ * It starts from a random sample of the stored reports and is kept uniform with reservoir sampling (Algorithm R) as
+ * new reports arrive. Deleted reports are not taken out, so the owner rebuilds the sample from time to time.<br>
+ * Drop rates are estimated with the ratio estimator sum(quantity) / sum(times) over the sampled reports in the time
+ * range, treating each report as a cluster of times runs. Not thread-safe.
+ */
+public class DropSample {
+
+    /**
+     * z for a two-sided 95% interval.
+     */
+    public static final double Z = 1.96;
+
+    private final int capacity;
+
+    @Getter
+    private final long builtAt;
+
+    /**
+     * Number of reports the sample is drawn from, including those added after it is built.
+     */
+    @Getter
+    private long population;
+
+    private int size;
+
+    private final long[] timestamps;
+
+    private final int[] times;
+
+    private final String[][] itemIds;
+
+    private final int[][] quantities;
+
+    public DropSample(int capacity, long population, long builtAt) {
+        this.capacity = capacity;
+        this.population = population;
+        this.builtAt = builtAt;
+        this.timestamps = new long[capacity];
+        this.times = new int[capacity];
+        this.itemIds = new String[capacity][];
+        this.quantities = new int[capacity][];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @Title: load
+     * @Description: Put a report of the initial sample. It does not count into the population.
+     */
+    public void load(long timestamp, int times, Collection<Drop> drops) {
+        if (size < capacity)
+            set(size++, timestamp, times, drops);
+    }
+
+    /**
+     * @Title: offer
+     * @Description: Count a new report into the population and keep it with probability capacity / population.
+     */
+    public void offer(long timestamp, int times, Collection<Drop> drops) {
+        population++;
+        if (size < capacity) {
+            set(size++, timestamp, times, drops);
+            return;
+        }
+        long slot = ThreadLocalRandom.current().nextLong(population);
+        if (slot < size)
+            set((int)slot, timestamp, times, drops);
+    }
+
+    /**
+     * @Title: estimate
+     * @Description: Estimate drop rates of the items from the sampled reports with start <= timestamp < end.
+     * @param itemIdCandidates Items to estimate besides those seen in the sample. null for none.
+     * @param itemIdFilter Only estimate these items. null or empty for all.
+     * @param start null for no lower bound.
+     * @param end null for no upper bound.
+     * @return Estimation
+     */
+    public Estimation estimate(Collection<String> itemIdCandidates, Collection<String> itemIdFilter, Long start,
+            Long end) {
+        int reports = 0;
+        long totalTimes = 0L;
+        Map<String, long[]> sums = new LinkedHashMap<>();
+        if (itemIdCandidates != null)
+            itemIdCandidates.forEach(itemId -> sums.put(itemId, new long[1]));
+        for (int i = 0; i < size; i++) {
+            if (!inRange(i, start, end))
+                continue;
+            reports++;
+            totalTimes += times[i];
+            for (int j = 0; j < itemIds[i].length; j++)
+                sums.computeIfAbsent(itemIds[i][j], k -> new long[1])[0] += quantities[i][j];
+        }
+
+        List<Estimate> estimates = new ArrayList<>();
+        if (totalTimes == 0L)
+            return new Estimation(reports, totalTimes, population, estimates);
+        // the same fraction of reports in any time range is sampled
+        double fpc = population <= 0 ? 1.0 : Math.max(0.0, 1.0 - (double)size / population);
+        double meanTimes = (double)totalTimes / reports;
+        for (Map.Entry<String, long[]> entry : sums.entrySet()) {
+            String itemId = entry.getKey();
+            if (itemIdFilter != null && !itemIdFilter.isEmpty() && !itemIdFilter.contains(itemId))
+                continue;
+            long quantity = entry.getValue()[0];
+            double rate = (double)quantity / totalTimes;
+            double lower;
+            double upper;
+            if (quantity == 0L) {
+                // rule of three
+                lower = 0.0;
+                upper = 3.0 / totalTimes;
+            } else {
+                double halfWidth = Z * standardError(itemId, rate, reports, meanTimes, fpc, start, end);
+                lower = Math.max(0.0, rate - halfWidth);
+                upper = rate + halfWidth;
+            }
+            estimates.add(new Estimate(itemId, quantity, rate, lower, upper));
+        }
+        return new Estimation(reports, totalTimes, population, estimates);
+    }
+
+    private double standardError(String itemId, double rate, int reports, double meanTimes, double fpc, Long start,
+            Long end) {
+        if (reports < 2)
+            return Double.POSITIVE_INFINITY;
+        double sumSquares = 0.0;
+        for (int i = 0; i < size; i++) {
+            if (!inRange(i, start, end))
+                continue;
+            double residual = quantityOf(i, itemId) - rate * times[i];
+            sumSquares += residual * residual;
+        }
+        double variance = sumSquares / (reports - 1);
+        return Math.sqrt(fpc * variance / reports) / meanTimes;
+    }
+
+    private boolean inRange(int i, Long start, Long end) {
+        return (start == null || timestamps[i] >= start) && (end == null || timestamps[i] < end);
+    }
+
+    private int quantityOf(int i, String itemId) {
+        int result = 0;
+        for (int j = 0; j < itemIds[i].length; j++) {
+            if (itemIds[i][j].equals(itemId))
+                result += quantities[i][j];
+        }
+        return result;
+    }
+
+    private void set(int slot, long timestamp, int times, Collection<Drop> drops) {
+        this.timestamps[slot] = timestamp;
+        this.times[slot] = times;
+        int count = drops == null ? 0 : drops.size();
+        String[] slotItemIds = new String[count];
+        int[] slotQuantities = new int[count];
+        if (drops != null) {
+            int j = 0;
+            for (Drop drop : drops) {
+                slotItemIds[j] = drop.getItemId();
+                slotQuantities[j] = drop.getQuantity() == null ? 0 : drop.getQuantity();
+                j++;
+            }
+        }
+        this.itemIds[slot] = slotItemIds;
+        this.quantities[slot] = slotQuantities;
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class Estimation {
+
+        /**
+         * Number of sampled reports in the time range.
+         */
+        private final int reports;
+
+        /**
+         * Sum of times of the sampled reports in the time range.
+         */
+        private final long times;
+
+        private final long population;
+
+        private final List<Estimate> estimates;
+
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class Estimate {
+
+        private final String itemId;
+
+        /**
+         * Sum of quantities in the sampled reports.
+         */
+        private final long quantity;
+
+        private final double rate;
+
+        private final double lower;
+
+        private final double upper;
+
+    }
+
+}
@@ -0,0 +1,44 @@
+package io.penguinstats.model;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.zip.GZIPOutputStream;
+
+import lombok.Getter;
+
+/**
+ * EncodedDocument is a JSON response body which is encoded once and served as is: the UTF-8 bytes, their gzip form
+ * and an ETag from the content hash.
+ */
+@Getter
+public class EncodedDocument {
+
+    private final byte[] json;
+
+    private final byte[] gzipped;
+
+    /**
+     * Quoted, as sent in the ETag header.
+     */
+    private final String etag;
+
+    private EncodedDocument(byte[] json, byte[] gzipped, String etag) {
+        this.json = json;
+        this.gzipped = gzipped;
+        this.etag = etag;
+    }
+
+    public static EncodedDocument of(byte[] json) throws IOException, NoSuchAlgorithmException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(json.length / 4);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(json);
+        }
+        byte[] digest = MessageDigest.getInstance("SHA-256").digest(json);
+        String hash = String.format("%064x", new BigInteger(1, digest)).substring(0, 32);
+        return new EncodedDocument(json, out.toByteArray(), "\"" + hash + "\"");
+    }
+
+}
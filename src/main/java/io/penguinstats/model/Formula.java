@@ -0,0 +1,67 @@
+package io.penguinstats.model;
+
+import java.util.Collections;
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import io.swagger.annotations.ApiModel;
+import lombok.Getter;
+
+/**
+ * One synthesis conversion formula of json/formula.json. Immutable once parsed.
+ */
+@Getter
+@ApiModel(description = "The model of a synthesis conversion formula.")
+public class Formula {
+
+	private final String id;
+	private final String name;
+	private final Integer goldCost;
+	private final List<Material> costs;
+	private final List<Material> extraOutcome;
+	private final Integer totalWeight;
+
+	@JsonCreator
+	public Formula(@JsonProperty("id") String id, @JsonProperty("name") String name,
+			@JsonProperty("goldCost") Integer goldCost, @JsonProperty("costs") List<Material> costs,
+			@JsonProperty("extraOutcome") List<Material> extraOutcome,
+			@JsonProperty("totalWeight") Integer totalWeight) {
+		this.id = id;
+		this.name = name;
+		this.goldCost = goldCost;
+		this.costs = costs == null ? Collections.emptyList() : Collections.unmodifiableList(costs);
+		this.extraOutcome =
+				extraOutcome == null ? Collections.emptyList() : Collections.unmodifiableList(extraOutcome);
+		this.totalWeight = totalWeight;
+	}
+
+	@Getter
+	@JsonInclude(JsonInclude.Include.NON_NULL)
+	public static class Material {
+
+		private final String id;
+		private final String name;
+		private final Integer rarity;
+		private final Integer count;
+		/**
+		 * Only for extra outcomes.
+		 */
+		private final Integer weight;
+
+		@JsonCreator
+		public Material(@JsonProperty("id") String id, @JsonProperty("name") String name,
+				@JsonProperty("rarity") Integer rarity, @JsonProperty("count") Integer count,
+				@JsonProperty("weight") Integer weight) {
+			this.id = id;
+			this.name = name;
+			this.rarity = rarity;
+			this.count = count;
+			this.weight = weight;
+		}
+
+	}
+
+}
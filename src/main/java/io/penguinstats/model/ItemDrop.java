@@ -7,6 +7,7 @@ import org.springframework.data.annotation.Id;
 import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.index.CompoundIndexes;
 import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.Field;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 
@@ -23,29 +24,38 @@ import lombok.experimental.Accessors;
 @Accessors(chain = true)
 @Document(collection = "item_drop_v2")
 @ApiModel(description = "The model of a drop sample.")
-@CompoundIndexes({@CompoundIndex(def = "{'stageId':1}", name = "stageId"),
-        @CompoundIndex(def = "{'server':1}", name = "server"),
-        @CompoundIndex(def = "{'timestamp':1}", name = "timestamp"),
-        @CompoundIndex(def = "{'isReliable':1}", name = "isReliable"),
-        @CompoundIndex(def = "{'isDeleted':1}", name = "isDeleted"),
-        @CompoundIndex(def = "{'userID':1}", name = "userID"),
-        @CompoundIndex(def = "{'screenshotMetadata':1}", name = "screenshotMetadata"),
-        @CompoundIndex(def = "{'screenshotMetadata.md5':1}", name = "screenshotMetadata_md5")})
+@CompoundIndexes({@CompoundIndex(def = "{'s':1}", name = "s"), @CompoundIndex(def = "{'sv':1}", name = "sv"),
+        @CompoundIndex(def = "{'ts':1}", name = "ts"), @CompoundIndex(def = "{'r':1}", name = "r"),
+        @CompoundIndex(def = "{'del':1}", name = "del"), @CompoundIndex(def = "{'u':1}", name = "u"),
+        @CompoundIndex(def = "{'m':1}", name = "m"), @CompoundIndex(def = "{'m.md5':1}", name = "m_md5"),
+        @CompoundIndex(def = "{'u':1, 'ts':-1, '_id':-1}", name = "u_ts_id")})
 public class ItemDrop {
 
     @Id
     private ObjectId id;
+    @Field(ItemDropFields.STAGE_ID)
     private String stageId;
+    @Field(ItemDropFields.SERVER)
     private Server server;
+    @Field(ItemDropFields.TIMES)
     private Integer times;
+    @Field(ItemDropFields.DROPS)
     private List<Drop> drops;
+    @Field(ItemDropFields.TIMESTAMP)
     private Long timestamp;
+    @Field(ItemDropFields.IP)
     private String ip;
+    @Field(ItemDropFields.IS_RELIABLE)
     private Boolean isReliable;
+    @Field(ItemDropFields.IS_DELETED)
     private Boolean isDeleted = false;
+    @Field(ItemDropFields.SOURCE)
     private String source;
+    @Field(ItemDropFields.VERSION)
     private String version;
+    @Field(ItemDropFields.USER_ID)
     private String userID;
+    @Field(ItemDropFields.SCREENSHOT_METADATA)
     private ScreenshotMetadata screenshotMetadata;
 
     @JsonIgnore
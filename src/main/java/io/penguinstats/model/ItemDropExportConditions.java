@@ -0,0 +1,26 @@
+package io.penguinstats.model;
+
+import org.bson.types.ObjectId;
+
+import io.penguinstats.enums.Server;
+import lombok.Data;
+import lombok.experimental.Accessors;
+
+@Data
+@Accessors(chain = true)
+public class ItemDropExportConditions {
+
+    private Server server;
+
+    private String stageId;
+
+    private Long start;
+
+    private Long end;
+
+    /**
+     * Only reports with _id greater than this one are exported. It is the resume token of an interrupted export.
+     */
+    private ObjectId afterId;
+
+}
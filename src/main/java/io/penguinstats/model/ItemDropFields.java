@@ -0,0 +1,90 @@
+package io.penguinstats.model;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.bson.Document;
+
+/**
+ * Stored field names of {@link ItemDrop} and its {@link Drop}s.<br>
+ * Every report repeats these names, so they are kept as short as possible. Raw aggregation pipelines must use these
+ * names instead of the property names of the model.
+ */
+public final class ItemDropFields {
+
+    public static final String STAGE_ID = "s";
+    public static final String SERVER = "sv";
+    public static final String TIMES = "t";
+    public static final String DROPS = "d";
+    public static final String TIMESTAMP = "ts";
+    public static final String IP = "ip";
+    public static final String IS_RELIABLE = "r";
+    public static final String IS_DELETED = "del";
+    public static final String SOURCE = "src";
+    public static final String VERSION = "v";
+    public static final String USER_ID = "u";
+    public static final String SCREENSHOT_METADATA = "m";
+
+    public static final String DROP_ITEM_ID = "i";
+    public static final String DROP_QUANTITY = "q";
+
+    /**
+     * Key is the stored field name, value is the field name used before the compact schema.
+     */
+    public static final Map<String, String> LEGACY_NAMES;
+
+    static {
+        Map<String, String> legacyNames = new LinkedHashMap<>();
+        legacyNames.put(STAGE_ID, "stageId");
+        legacyNames.put(SERVER, "server");
+        legacyNames.put(TIMES, "times");
+        legacyNames.put(DROPS, "drops");
+        legacyNames.put(TIMESTAMP, "timestamp");
+        legacyNames.put(IS_RELIABLE, "isReliable");
+        legacyNames.put(IS_DELETED, "isDeleted");
+        legacyNames.put(SOURCE, "source");
+        legacyNames.put(VERSION, "version");
+        legacyNames.put(USER_ID, "userID");
+        legacyNames.put(SCREENSHOT_METADATA, "screenshotMetadata");
+        LEGACY_NAMES = Collections.unmodifiableMap(legacyNames);
+    }
+
+    public static final String LEGACY_DROP_ITEM_ID = "itemId";
+    public static final String LEGACY_DROP_QUANTITY = "quantity";
+
+    private ItemDropFields() {}
+
+    /**
+     * @Title: legacyName
+     * @Description: The full name of a stored field. Paths into an embedded document, like "m.md5", keep their tail.
+     * @param field
+     * @return String
+     */
+    public static String legacyName(String field) {
+        int dot = field.indexOf('.');
+        String head = dot < 0 ? field : field.substring(0, dot);
+        String legacyHead = LEGACY_NAMES.getOrDefault(head, head);
+        return dot < 0 ? legacyHead : legacyHead + field.substring(dot);
+    }
+
+    /**
+     * @Title: normalizeLegacyFields
+     * @Description: Rename the full field names in a stored report to the compact ones in place. If a report has both
+     *               names of a field, the compact one wins and the full one is dropped. Drops are left as they are,
+     *               since both of their schemas are read.
+     * @param doc
+     * @return Document the same doc
+     */
+    public static Document normalizeLegacyFields(Document doc) {
+        LEGACY_NAMES.forEach((field, legacyField) -> {
+            if (!doc.containsKey(legacyField))
+                return;
+            Object value = doc.remove(legacyField);
+            if (!doc.containsKey(field))
+                doc.put(field, value);
+        });
+        return doc;
+    }
+
+}
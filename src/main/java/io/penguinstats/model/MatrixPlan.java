@@ -0,0 +1,141 @@
+package io.penguinstats.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import io.penguinstats.enums.Server;
+import lombok.Getter;
+
+/**
+ * MatrixPlan is the compiled form of the latest max accumulatable time ranges of one server.<br>
+ * A matrix build walks through the slices in order. Slice i holds the i-th accumulatable time range of every stage,
+ * together with the items which are counted in that range, so each slice is answered by one aggregation.<br>
+ * Slices are split into past and current by the time the plan is compiled. The plan expires at the first range
+ * boundary after that, when some range moves from current to past.
+ */
+@Getter
+public class MatrixPlan {
+
+    private final Server server;
+
+    private final long compiledAt;
+
+    /**
+     * The plan must be recompiled from this time on. Long.MAX_VALUE if no boundary is ahead.
+     */
+    private final long validUntil;
+
+    private final List<Slice> pastSlices;
+
+    private final List<Slice> currentSlices;
+
+    private MatrixPlan(Server server, long compiledAt, long validUntil, List<Slice> pastSlices,
+            List<Slice> currentSlices) {
+        this.server = server;
+        this.compiledAt = compiledAt;
+        this.validUntil = validUntil;
+        this.pastSlices = pastSlices;
+        this.currentSlices = currentSlices;
+    }
+
+    public List<Slice> getSlices(boolean isPast) {
+        return isPast ? pastSlices : currentSlices;
+    }
+
+    public boolean isExpired(long time) {
+        return time >= validUntil;
+    }
+
+    /**
+     * @Title: compile
+     * @Description: Compile the plan from the result of getLatestMaxAccumulatableTimeRangesMapByServer.
+     * @param server
+     * @param timeRangeIDsMapByStageIdAndItemId Key of the outer map is stageId, key of the inner map is itemId.
+     * @param timeRangeMap All time ranges, key is rangeID.
+     * @param now
+     * @return MatrixPlan
+     */
+    public static MatrixPlan compile(Server server,
+            Map<String, Map<String, List<String>>> timeRangeIDsMapByStageIdAndItemId,
+            Map<String, TimeRange> timeRangeMap, long now) {
+        long validUntil = Long.MAX_VALUE;
+        Map<String, List<StageSlice>> pastByStageId = new HashMap<>();
+        Map<String, List<StageSlice>> currentByStageId = new HashMap<>();
+        for (Map.Entry<String, Map<String, List<String>>> stageEntry : timeRangeIDsMapByStageIdAndItemId.entrySet()) {
+            Map<TimeRange, Set<String>> pastItemIds = new HashMap<>();
+            Map<TimeRange, Set<String>> currentItemIds = new HashMap<>();
+            for (Map.Entry<String, List<String>> itemEntry : stageEntry.getValue().entrySet()) {
+                for (String timeRangeID : itemEntry.getValue()) {
+                    TimeRange range = timeRangeMap.get(timeRangeID);
+                    if (range == null)
+                        continue;
+                    if (range.getStart() > now)
+                        validUntil = Math.min(validUntil, range.getStart());
+                    if (range.getEnd() != null && range.getEnd() > now)
+                        validUntil = Math.min(validUntil, range.getEnd());
+                    Map<TimeRange, Set<String>> target = range.isIn(now) ? currentItemIds : pastItemIds;
+                    target.computeIfAbsent(range, k -> new HashSet<>()).add(itemEntry.getKey());
+                }
+            }
+            pastByStageId.put(stageEntry.getKey(), toStageSlices(pastItemIds));
+            currentByStageId.put(stageEntry.getKey(), toStageSlices(currentItemIds));
+        }
+        return new MatrixPlan(server, now, validUntil, toSlices(pastByStageId), toSlices(currentByStageId));
+    }
+
+    private static List<StageSlice> toStageSlices(Map<TimeRange, Set<String>> itemIdsByRange) {
+        List<StageSlice> result = new ArrayList<>();
+        itemIdsByRange.forEach((range, itemIds) -> result.add(new StageSlice(range, itemIds)));
+        result.sort(Comparator.comparing(stageSlice -> stageSlice.getRange().getStart()));
+        return result;
+    }
+
+    private static List<Slice> toSlices(Map<String, List<StageSlice>> stageSlicesByStageId) {
+        int size = stageSlicesByStageId.values().stream().mapToInt(List::size).max().orElse(0);
+        List<Slice> result = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            Map<String, StageSlice> stages = new HashMap<>();
+            for (Map.Entry<String, List<StageSlice>> entry : stageSlicesByStageId.entrySet()) {
+                if (i < entry.getValue().size())
+                    stages.put(entry.getKey(), entry.getValue().get(i));
+            }
+            result.add(new Slice(Collections.unmodifiableMap(stages)));
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+    @Getter
+    public static class Slice {
+
+        /**
+         * Key is stageId.
+         */
+        private final Map<String, StageSlice> stages;
+
+        private Slice(Map<String, StageSlice> stages) {
+            this.stages = stages;
+        }
+
+    }
+
+    @Getter
+    public static class StageSlice {
+
+        private final TimeRange range;
+
+        private final Set<String> itemIds;
+
+        private StageSlice(TimeRange range, Set<String> itemIds) {
+            this.range = range;
+            this.itemIds = Collections.unmodifiableSet(itemIds);
+        }
+
+    }
+
+}
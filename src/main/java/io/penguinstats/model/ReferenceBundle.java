@@ -0,0 +1,31 @@
+package io.penguinstats.model;
+
+import io.penguinstats.enums.Server;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * ReferenceBundle is the pre-serialized document of all static reference data the frontend needs to boot: items,
+ * stages with the drop infos of one server, zones, event periods, notices, frontend configs and formula.<br>
+ * The JSON is encoded once into an EncodedDocument and served as is.
+ */
+@Getter
+@AllArgsConstructor
+public class ReferenceBundle {
+
+    private final Server server;
+
+    private final EncodedDocument document;
+
+    private final long lastModified;
+
+    /**
+     * Opening drop infos change at this time, so the bundle must be rebuilt from then on.
+     */
+    private final long validUntil;
+
+    public boolean isExpired(long time) {
+        return time >= validUntil;
+    }
+
+}
@@ -29,7 +29,7 @@ public class User implements Serializable {
 	@Id
 	@JsonIgnore
 	private ObjectId id;
-	@Indexed
+	@Indexed(unique = true)
 	private String userID;
 	private Double weight;
 	private List<String> tags;
@@ -0,0 +1,47 @@
+package io.penguinstats.model;
+
+import java.io.Serializable;
+
+import org.bson.types.ObjectId;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import io.penguinstats.enums.Server;
+import io.swagger.annotations.ApiModel;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * UserStageTimes is the rollup of one user's visible reports on one stage. It is maintained with $inc by
+ * UserUploadStatsService when reports are saved or removed, so it is never recomputed from item_drop_v2.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Document(collection = "user_stage_times")
+@CompoundIndex(def = "{'userID':1, 'server':1, 'stageId':1}", name = "userID_server_stageId", unique = true)
+@ApiModel(description = "The personal rollup of reports on a stage.")
+public class UserStageTimes implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @Id
+    @JsonIgnore
+    private ObjectId id;
+
+    @JsonIgnore
+    private String userID;
+
+    private Server server;
+
+    private String stageId;
+
+    private Integer times;
+
+    private Integer reports;
+
+}
@@ -39,7 +39,7 @@ public class GlobalMatrixQuery implements Serializable, BasicQuery {
 
 	@Override
 	public List<? extends MatrixElement> execute() throws Exception {
-		return QueryUtil.runQuery(
+		return QueryUtil.runQuery(QueryUtil.keyOf("globalMatrix", server, userID, isPast),
 				() -> dropMatrixElementService.generateGlobalDropMatrixElements(server, userID, isPast), timeout);
 	}
 
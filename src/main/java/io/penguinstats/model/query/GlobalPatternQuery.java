@@ -45,8 +45,8 @@ public class GlobalPatternQuery implements Serializable, BasicQuery {
 
 	@Override
 	public List<? extends MatrixElement> execute() throws Exception {
-		return QueryUtil.runQuery(() -> patternMatrixElementService.generateGlobalPatternMatrixElements(server, userID),
-				timeout);
+		return QueryUtil.runQuery(QueryUtil.keyOf("globalPattern", server, userID),
+				() -> patternMatrixElementService.generateGlobalPatternMatrixElements(server, userID), timeout);
 	}
 
 }
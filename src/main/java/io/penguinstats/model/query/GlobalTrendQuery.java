@@ -39,7 +39,7 @@ public class GlobalTrendQuery implements Serializable, BasicQuery {
 
 	@Override
 	public List<? extends MatrixElement> execute() throws Exception {
-		return QueryUtil.runQuery(
+		return QueryUtil.runQuery(QueryUtil.keyOf("globalTrend", server, interval, range),
 				() -> dropMatrixElementService.generateSegmentedGlobalDropMatrixElements(server, interval, range),
 				timeout);
 	}
@@ -47,7 +47,7 @@ public class MatrixQuery implements Serializable, BasicQuery {
 
 	@Override
 	public List<? extends MatrixElement> execute() throws Exception {
-		return QueryUtil.runQuery(
+		return QueryUtil.runQuery(QueryUtil.keyOf("matrix", server, stageId, itemIds, start, end, userID),
 				() -> dropMatrixElementService.generateCustomDropMatrixElements(server, stageId, itemIds, start, end,
 						Optional.ofNullable(userID).map(userID -> Arrays.asList(userID)).orElse(null), null),
 				timeout);
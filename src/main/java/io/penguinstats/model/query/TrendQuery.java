@@ -49,7 +49,7 @@ public class TrendQuery implements Serializable, BasicQuery {
 
 	@Override
 	public List<? extends MatrixElement> execute() throws Exception {
-		return QueryUtil.runQuery(
+		return QueryUtil.runQuery(QueryUtil.keyOf("trend", server, stageId, itemIds, start, end, userID, interval),
 				() -> dropMatrixElementService.generateCustomDropMatrixElements(server, stageId, itemIds, start, end,
 						Optional.ofNullable(userID).map(userID -> Arrays.asList(userID)).orElse(null), interval),
 				timeout);
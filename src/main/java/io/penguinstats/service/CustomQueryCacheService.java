@@ -0,0 +1,18 @@
+package io.penguinstats.service;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+import io.penguinstats.enums.Server;
+import io.penguinstats.model.DropMatrixElement;
+
+public interface CustomQueryCacheService {
+
+    List<DropMatrixElement> get(Server server, String stageId, List<String> itemIds, Long start, Long end,
+            Long interval, Supplier<List<DropMatrixElement>> loader);
+
+    void invalidateStage(Server server, String stageId);
+
+    void invalidateAll();
+
+}
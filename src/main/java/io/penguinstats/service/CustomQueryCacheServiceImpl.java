@@ -0,0 +1,114 @@
+package io.penguinstats.service;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Service;
+
+import io.penguinstats.enums.Server;
+import io.penguinstats.model.DropMatrixElement;
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * CustomQueryCacheServiceImpl caches global results of generateCustomDropMatrixElements in Redis, keyed by the
+ * normalized query: server, stage, sorted item ids, start, end and interval.<br>
+ * A query whose end is at least SETTLE_MARGIN in the past only reads reports which are already written, so its
+ * result is kept for custom-query-cache.past-ttl. Any other query is kept for custom-query-cache.open-ttl.<br>
+ * Instead of deleting keys, every key embeds two version counters which are bumped with INCR: one per stage, bumped
+ * when reports of the stage are deleted or their reliability changes, and one global epoch, bumped when time ranges
+ * or drop infos change. Old entries are never read again and expire by their TTL.<br>
+ * Redis errors are logged and the query is computed as if it were not cached.
+ */
+@Log4j2
+@Service("customQueryCacheService")
+public class CustomQueryCacheServiceImpl implements CustomQueryCacheService {
+
+    private static final String KEY_PREFIX = "custom_query::";
+
+    private static final String VERSION_KEY_PREFIX = "custom_query_version::";
+
+    private static final String EPOCH_KEY = VERSION_KEY_PREFIX + "epoch";
+
+    /**
+     * Reports are timestamped by the server when they are saved, so none is written into a range which ended this
+     * long ago.
+     */
+    private static final long SETTLE_MARGIN = 300000L;
+
+    @Autowired
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Value("${custom-query-cache.past-ttl:604800000}")
+    private long pastTtl;
+
+    @Value("${custom-query-cache.open-ttl:60000}")
+    private long openTtl;
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<DropMatrixElement> get(Server server, String stageId, List<String> itemIds, Long start, Long end,
+            Long interval, Supplier<List<DropMatrixElement>> loader) {
+        String key = null;
+        try {
+            List<Object> versions =
+                    redisTemplate.opsForValue().multiGet(Arrays.asList(EPOCH_KEY, versionKey(server, stageId)));
+            key = KEY_PREFIX + versionOf(versions, 0) + "::" + versionOf(versions, 1) + "::" + server + "|" + stageId
+                    + "|" + normalize(itemIds) + "|" + start + "|" + end + "|" + interval;
+            Object cached = redisTemplate.opsForValue().get(key);
+            if (cached != null)
+                return (List<DropMatrixElement>)cached;
+        } catch (Exception e) {
+            log.warn("Error in reading custom query cache: ", e);
+            key = null;
+        }
+
+        List<DropMatrixElement> result = loader.get();
+        if (key != null) {
+            boolean isPast = end != null && end <= System.currentTimeMillis() - SETTLE_MARGIN;
+            try {
+                redisTemplate.opsForValue().set(key, result, isPast ? pastTtl : openTtl, TimeUnit.MILLISECONDS);
+            } catch (Exception e) {
+                log.warn("Error in writing custom query cache: ", e);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public void invalidateStage(Server server, String stageId) {
+        try {
+            redisTemplate.opsForValue().increment(versionKey(server, stageId));
+        } catch (Exception e) {
+            log.error("Error in invalidating custom query cache of stage " + stageId + ": ", e);
+        }
+    }
+
+    @Override
+    public void invalidateAll() {
+        try {
+            redisTemplate.opsForValue().increment(EPOCH_KEY);
+        } catch (Exception e) {
+            log.error("Error in invalidating custom query cache: ", e);
+        }
+    }
+
+    private static String versionKey(Server server, String stageId) {
+        return VERSION_KEY_PREFIX + server + "::" + stageId;
+    }
+
+    private static Object versionOf(List<Object> versions, int index) {
+        Object version = versions == null || versions.size() <= index ? null : versions.get(index);
+        return version == null ? 0 : version;
+    }
+
+    private static String normalize(List<String> itemIds) {
+        return itemIds == null ? "" : itemIds.stream().distinct().sorted().collect(Collectors.joining(","));
+    }
+
+}
@@ -0,0 +1,12 @@
+package io.penguinstats.service;
+
+import io.penguinstats.enums.Server;
+import io.penguinstats.util.index.DropInfoIntervalIndex;
+
+public interface DropInfoIndexService {
+
+    DropInfoIntervalIndex getIndex(Server server);
+
+    void invalidate();
+
+}
@@ -0,0 +1,104 @@
+package io.penguinstats.service;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import io.penguinstats.enums.Server;
+import io.penguinstats.model.DropInfo;
+import io.penguinstats.model.TimeRange;
+import io.penguinstats.util.index.DropInfoIntervalIndex;
+import lombok.extern.log4j.Log4j2;
+
+@Log4j2
+@Service("dropInfoIndexService")
+public class DropInfoIndexServiceImpl implements DropInfoIndexService {
+
+    @Autowired
+    private DropInfoService dropInfoService;
+    @Autowired
+    private TimeRangeService timeRangeService;
+
+    /**
+     * DropInfos and time ranges may be changed through another instance, which only evicts the shared Redis cache.
+     * Indexes older than this are rebuilt from the cache.
+     */
+    @Value("${drop-info-index.max-age:300000}")
+    private long maxAge;
+
+    private final Map<Server, Entry> entries = new EnumMap<>(Server.class);
+
+    /**
+     * @Title: getIndex
+     * @Description: Get the interval index of DropInfos in the server. It is built on first use and rebuilt after
+     *               invalidate() is called or it is older than drop-info-index.max-age. An age-based rebuild from
+     *               unchanged DropInfos and time ranges keeps the previous instance, so that users of the index can
+     *               tell a real change by identity.
+     * @param server
+     * @return DropInfoIntervalIndex
+     */
+    @Override
+    public DropInfoIntervalIndex getIndex(Server server) {
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(server);
+        }
+        if (entry != null && System.currentTimeMillis() - entry.buildTime <= maxAge)
+            return entry.index;
+        return rebuild(server);
+    }
+
+    @Override
+    public void invalidate() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    private DropInfoIntervalIndex rebuild(Server server) {
+        long startTime = System.currentTimeMillis();
+        Map<String, TimeRange> timeRangeMap = timeRangeService.getTimeRangeMap();
+        List<DropInfo> infos = dropInfoService.getDropInfosByServer(server);
+        DropInfoIntervalIndex index = DropInfoIntervalIndex.build(infos, timeRangeMap);
+        Entry previous;
+        synchronized (entries) {
+            previous = entries.get(server);
+        }
+        // compared after build, which sets the time range of each DropInfo in both lists
+        boolean unchanged = previous != null && previous.infos.equals(infos)
+                && previous.timeRangeMap.equals(timeRangeMap);
+        if (unchanged)
+            index = previous.index;
+        synchronized (entries) {
+            entries.put(server, new Entry(index, infos, timeRangeMap, startTime));
+        }
+        log.debug("DropInfo index of server {} is rebuilt in {} ms, unchanged: {}", server,
+                System.currentTimeMillis() - startTime, unchanged);
+        return index;
+    }
+
+    private static class Entry {
+
+        private final DropInfoIntervalIndex index;
+
+        private final List<DropInfo> infos;
+
+        private final Map<String, TimeRange> timeRangeMap;
+
+        private final long buildTime;
+
+        private Entry(DropInfoIntervalIndex index, List<DropInfo> infos, Map<String, TimeRange> timeRangeMap,
+                long buildTime) {
+            this.index = index;
+            this.infos = infos;
+            this.timeRangeMap = timeRangeMap;
+            this.buildTime = buildTime;
+        }
+
+    }
+
+}
@@ -17,8 +17,7 @@ public interface DropInfoService {
     @Caching(evict = {@CacheEvict(value = CacheValue.DROP_INFO_LIST, key = "#dropInfo.server"),
             @CacheEvict(value = CacheValue.LATEST_DROP_INFO_MAP, key = "#dropInfo.server"),
             @CacheEvict(value = CacheValue.LATEST_MAX_ACCUMULATABLE_TIME_RANGE_MAP, key = "#dropInfo.server"),
-            @CacheEvict(value = CacheValue.LATEST_TIME_RANGE_MAP, key = "#dropInfo.server"),
-            @CacheEvict(value = CacheValue.DROP_SET, allEntries = true)})
+            @CacheEvict(value = CacheValue.LATEST_TIME_RANGE_MAP, key = "#dropInfo.server")})
     void saveDropInfo(DropInfo dropInfo);
 
     void batchSave(List<DropInfo> infos);
@@ -37,8 +36,6 @@ public interface DropInfoService {
 
     Map<String, Set<String>> getDropSetMap(Server server, Long time);
 
-    @Cacheable(value = CacheValue.DROP_SET, key = "#server + '_' + #stageId + '_' + #time",
-            condition = "#filter == null")
     Set<String> getDropSet(Server server, String stageId, Long time);
 
     Map<String, List<DropInfo>> getOpeningDropInfosMap(Server server, Long time, boolean excludeRecognitionOnly);
@@ -1,17 +1,16 @@
 package io.penguinstats.service;
 
 import static java.util.stream.Collectors.groupingBy;
-import static java.util.stream.Collectors.mapping;
 import static java.util.stream.Collectors.toList;
-import static java.util.stream.Collectors.toSet;
 
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.context.ApplicationContext;
 import org.springframework.stereotype.Service;
 
 import io.penguinstats.constant.Constant.LastUpdateMapKeyName;
@@ -21,6 +20,7 @@ import io.penguinstats.enums.Server;
 import io.penguinstats.model.DropInfo;
 import io.penguinstats.model.TimeRange;
 import io.penguinstats.util.LastUpdateTimeUtil;
+import io.penguinstats.util.index.DropInfoIntervalIndex;
 
 @Service("dropInfoService")
 public class DropInfoServiceImpl implements DropInfoService {
@@ -30,11 +30,12 @@ public class DropInfoServiceImpl implements DropInfoService {
     @Autowired
     private TimeRangeService timeRangeService;
     @Autowired
-    private ApplicationContext applicationContext;
+    private DropInfoIndexService dropInfoIndexService;
 
     @Override
     public void saveDropInfo(DropInfo dropInfo) {
         dropInfoDao.save(dropInfo);
+        dropInfoIndexService.invalidate();
     }
 
     @Override
@@ -85,34 +86,37 @@ public class DropInfoServiceImpl implements DropInfoService {
      * @Description: Get all dropsets in a map, key is stageId
      * @param server
      * @param time
-     * @return Map<String,Set<String>>
+     * @return Map<String,Set<String>> The dropsets are unmodifiable and shared.
      */
     @Override
     public Map<String, Set<String>> getDropSetMap(Server server, Long time) {
-        Map<String, TimeRange> timeRangeMap = timeRangeService.getTimeRangeMap();
-        List<DropInfo> infos = getSpringProxy().getDropInfosByServer(server);
-
-        Map<String, Set<String>> result =
-                infos.stream().filter(info -> DropType.RECOGNITION_ONLY != info.getDropType()).filter(info -> {
-                    String itemId = info.getItemId();
-                    TimeRange range = timeRangeMap.get(info.getTimeRangeID());
-                    return itemId != null && range.isIn(time);
-                }).collect(groupingBy(DropInfo::getStageId, mapping(DropInfo::getItemId, toSet())));
+        Map<String, Set<String>> result = new HashMap<>();
+        if (time == null)
+            return result;
+        DropInfoIntervalIndex index = dropInfoIndexService.getIndex(server);
+        for (String stageId : index.getOpeningStages(time)) {
+            Set<String> dropSet = index.getDropSet(stageId, time);
+            if (!dropSet.isEmpty())
+                result.put(stageId, dropSet);
+        }
         return result;
     }
 
     /** 
      * @Title: getDropSet 
-     * @Description: Get all dropped itemIds in a set, under given server, stage and time
+     * @Description: Get all dropped itemIds in a set, under given server, stage and time. The set is looked up by
+     *               the segment of DropInfo breakpoints containing the time, so every time in the same segment gets
+     *               the same instance.
      * @param server
      * @param stageId
      * @param time
-     * @return Set<String>
+     * @return Set<String> Unmodifiable and shared, empty if the stage is not open.
      */
     @Override
     public Set<String> getDropSet(Server server, String stageId, Long time) {
-        Map<String, Set<String>> dropsetMap = getDropSetMap(server, time);
-        return dropsetMap.get(stageId);
+        if (time == null)
+            return Collections.emptySet();
+        return dropInfoIndexService.getIndex(server).getDropSet(stageId, time);
     }
 
     /** 
@@ -125,15 +129,17 @@ public class DropInfoServiceImpl implements DropInfoService {
     @Override
     public Map<String, List<DropInfo>> getOpeningDropInfosMap(Server server, Long time,
             boolean excludeRecognitionOnly) {
-        Map<String, TimeRange> timeRangeMap = timeRangeService.getTimeRangeMap();
-        List<DropInfo> infos = getSpringProxy().getDropInfosByServer(server);
-
-        Map<String, List<DropInfo>> result = infos.stream().filter(info -> {
-            return !excludeRecognitionOnly || DropType.RECOGNITION_ONLY != info.getDropType();
-        }).filter(info -> {
-            TimeRange range = timeRangeMap.get(info.getTimeRangeID());
-            return range.isIn(time);
-        }).collect(groupingBy(DropInfo::getStageId));
+        Map<String, List<DropInfo>> result = new HashMap<>();
+        if (time == null)
+            return result;
+        DropInfoIntervalIndex index = dropInfoIndexService.getIndex(server);
+        Set<String> stageIds = excludeRecognitionOnly ? index.getOpeningStages(time) : index.getActiveStages(time);
+        for (String stageId : stageIds) {
+            List<DropInfo> infos = index.getActiveDropInfos(stageId, time).stream()
+                    .filter(info -> !excludeRecognitionOnly || DropType.RECOGNITION_ONLY != info.getDropType())
+                    .map(DropInfo::copy).collect(toList());
+            result.put(stageId, infos);
+        }
         return result;
     }
 
@@ -146,35 +152,15 @@ public class DropInfoServiceImpl implements DropInfoService {
      */
     @Override
     public Set<String> getOpeningStages(Server server, Long time) {
-        Map<String, TimeRange> timeRangeMap = timeRangeService.getTimeRangeMap();
-        List<DropInfo> infos = getSpringProxy().getDropInfosByServer(server);
-        Set<String> stageIds = new HashSet<>();
-        infos.forEach(info -> {
-            if (DropType.RECOGNITION_ONLY != info.getDropType()) {
-                String stageId = info.getStageId();
-                if (!stageIds.contains(stageId)) {
-                    TimeRange range = timeRangeMap.get(info.getTimeRangeID());
-                    if (range != null && range.isIn(time)) {
-                        stageIds.add(stageId);
-                    }
-                }
-            }
-        });
-        return stageIds;
-    }
-
-    /** 
-     * @Title: getSpringProxy 
-     * @Description: Use proxy to hit cache 
-     * @return DropInfoService
-     */
-    private DropInfoService getSpringProxy() {
-        return applicationContext.getBean(DropInfoService.class);
+        if (time == null)
+            return new HashSet<>();
+        return new HashSet<>(dropInfoIndexService.getIndex(server).getOpeningStages(time));
     }
 
     @Override
     public void batchSave(List<DropInfo> infos) {
         dropInfoDao.saveAll(infos);
+        dropInfoIndexService.invalidate();
     }
 
 }
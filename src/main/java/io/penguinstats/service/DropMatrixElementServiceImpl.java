@@ -1,7 +1,6 @@
 package io.penguinstats.service;
 
 import static java.util.stream.Collectors.groupingBy;
-import static java.util.stream.Collectors.toList;
 
 import java.util.ArrayList;
 import java.util.Collection;
@@ -10,7 +9,6 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Collectors;
@@ -25,10 +23,14 @@ import io.penguinstats.dao.DropMatrixElementDao;
 import io.penguinstats.dao.ItemDropDao;
 import io.penguinstats.enums.DropMatrixElementType;
 import io.penguinstats.enums.Server;
+import io.penguinstats.model.DropMatrix;
 import io.penguinstats.model.DropMatrixElement;
+import io.penguinstats.model.MatrixPlan;
 import io.penguinstats.model.QueryConditions;
 import io.penguinstats.model.TimeRange;
 import io.penguinstats.util.DropMatrixElementUtil;
+import io.penguinstats.util.index.IdRegistry;
+import io.penguinstats.util.index.LongObjectMap;
 import io.penguinstats.util.misc.DirtyStages;
 import lombok.extern.log4j.Log4j2;
 
@@ -54,9 +56,18 @@ public class DropMatrixElementServiceImpl implements DropMatrixElementService {
     @Autowired
     private DirtyStages dirtyStages;
 
+    @Autowired
+    private DropTimeIndexService dropTimeIndexService;
+
+    @Autowired
+    private MatrixPlanService matrixPlanService;
+
+    @Autowired
+    private CustomQueryCacheService customQueryCacheService;
+
     @Override
     public void batchSave(Collection<DropMatrixElement> elements) {
-        dropMatrixElementDao.saveAll(elements);
+        dropMatrixElementDao.bulkInsert(elements);
     }
 
     @Override
@@ -83,83 +94,44 @@ public class DropMatrixElementServiceImpl implements DropMatrixElementService {
     public List<DropMatrixElement> generateGlobalDropMatrixElements(Server server, String userID, boolean isPast) {
         Long startTime = System.currentTimeMillis();
 
-        Map<String, Map<String, List<String>>> latestMaxAccumulatableTimeRangesMap =
-                timeRangeService.getLatestMaxAccumulatableTimeRangesMapByServer(server);
-
-        Map<String, TimeRange> allTimeRangesMap = timeRangeService.getTimeRangeMap();
-
-        int maxSize = 0;
-        Map<String, List<Entry<String, List<String>>>> convertedMap = new HashMap<>();
-        for (String stageId : latestMaxAccumulatableTimeRangesMap.keySet()) {
-            if (userID == null && isPast) {
-                Set<String> dirtyStageIds = dirtyStages.getStageIds(server);
-                if (!dirtyStageIds.contains(stageId)) {
-                    continue;
-                }
-            }
-
-            Map<String, List<String>> timeRangeIDsMapItemId = latestMaxAccumulatableTimeRangesMap.get(stageId);
-            Map<String, List<String>> itemIdsMapTimeRangeID = convertItemIdBasedTimeRangesToTimeRangeBasedItemIds(
-                    timeRangeIDsMapItemId, allTimeRangesMap, isPast);
-            convertedMap.put(stageId, new ArrayList<>(itemIdsMapTimeRangeID.entrySet()));
-            int timeRangeNums = itemIdsMapTimeRangeID.keySet().size();
-            if (maxSize < timeRangeNums)
-                maxSize = timeRangeNums;
-        }
+        List<MatrixPlan.Slice> slices = matrixPlanService.getPlan(server).getSlices(isPast);
+        Set<String> dirtyStageIds = userID == null && isPast ? dirtyStages.getStageIds(server) : null;
 
         List<String> userIDs = userID != null ? Collections.singletonList(userID) : new ArrayList<>();
-        Map<String, Map<String, List<DropMatrixElement>>> allElementsMap = new HashMap<>();
+        DropMatrix matrix = new DropMatrix(DropMatrixElementType.REGULAR, server, isPast, 0);
 
-        for (int i = 0; i < maxSize; i++) {
+        for (int i = 0; i < slices.size(); i++) {
             if (userID == null) {
                 log.info("generateGlobalDropMatrixElements for server {}... ({}/{}), isPast = {}", server, i + 1,
-                        maxSize, isPast);
+                        slices.size(), isPast);
             }
+            Map<String, MatrixPlan.StageSlice> stageSlices = slices.get(i).getStages();
             Map<String, List<TimeRange>> timeRangeMap = new HashMap<>();
-            for (String stageId : convertedMap.keySet()) {
-                List<Entry<String, List<String>>> entries = convertedMap.get(stageId);
-                if (i >= entries.size())
-                    continue;
-                Entry<String, List<String>> entry = entries.get(i);
-                TimeRange range = allTimeRangesMap.get(entry.getKey());
-                if (range != null) {
-                    timeRangeMap.put(stageId, Collections.singletonList(range));
-                }
-            }
-            List<DropMatrixElement> elements = generateDropMatrixElementsFromTimeRangeMapByStageId(server, timeRangeMap,
-                    new ArrayList<>(), userIDs, isPast);
-
-            for (String stageId : convertedMap.keySet()) {
-                Map<String, List<DropMatrixElement>> subMap = allElementsMap.getOrDefault(stageId, new HashMap<>());
-                List<Entry<String, List<String>>> entries = convertedMap.get(stageId);
-                if (i >= entries.size())
-                    continue;
-                Entry<String, List<String>> entry = entries.get(i);
-                Set<String> itemIdSet = new HashSet<>(entry.getValue());
-                List<DropMatrixElement> filteredElements = elements.stream()
-                        .filter(el -> el.getStageId().equals(stageId) && itemIdSet.contains(el.getItemId()))
-                        .collect(toList());
-                filteredElements.forEach(el -> {
-                    String itemId = el.getItemId();
-                    List<DropMatrixElement> subList = subMap.getOrDefault(itemId, new ArrayList<>());
-                    subList.add(el);
-                    subMap.put(itemId, subList);
-                    itemIdSet.remove(itemId);
-                });
-                allElementsMap.put(stageId, subMap);
+            stageSlices.forEach((stageId, stageSlice) -> {
+                if (dirtyStageIds == null || dirtyStageIds.contains(stageId))
+                    timeRangeMap.put(stageId, Collections.singletonList(stageSlice.getRange()));
+            });
+            if (timeRangeMap.isEmpty())
+                continue;
+            DropMatrix sliceMatrix =
+                    generateDropMatrixFromTimeRangeMapByStageId(server, timeRangeMap, null, userIDs, isPast, false);
+
+            for (int position = 0; position < sliceMatrix.size(); position++) {
+                String stageId = sliceMatrix.getStageId(position);
+                if (timeRangeMap.containsKey(stageId)
+                        && stageSlices.get(stageId).getItemIds().contains(sliceMatrix.getItemId(position)))
+                    matrix.add(sliceMatrix, position);
             }
         }
 
-        List<DropMatrixElement> result = allElementsMap.values().stream()
-                .flatMap(m -> m.values().stream().map(els -> DropMatrixElementUtil.combineElements(els)))
-                .collect(toList());
+        List<DropMatrixElement> result = matrix.toElements();
 
         if (userID == null && isPast) {
             List<DropMatrixElement> pastElements = getGlobalDropMatrixElements(server, isPast);
-            Map<String, DropMatrixElement> postElementsMap = pastElements.stream()
-                    .collect(Collectors.toMap(el -> el.getStageId() + "_" + el.getItemId(), el -> el));
-            result.forEach(el -> postElementsMap.put(el.getStageId() + "_" + el.getItemId(), el));
-            result = new ArrayList<>(postElementsMap.values());
+            LongObjectMap<DropMatrixElement> pastElementsMap = new LongObjectMap<>(pastElements.size());
+            pastElements.forEach(el -> pastElementsMap.put(DropMatrixElementUtil.keyOf(el), el));
+            result.forEach(el -> pastElementsMap.put(DropMatrixElementUtil.keyOf(el), el));
+            result = pastElementsMap.values();
         }
 
         if (userID == null) {
@@ -184,7 +156,7 @@ public class DropMatrixElementServiceImpl implements DropMatrixElementService {
         Long end = System.currentTimeMillis();
         Long start = end - range;
         List<DropMatrixElement> result =
-                generateSegmentedDropMatrixElements(server, null, null, start, end, null, interval);
+                generateSegmentedDropMatrixElements(server, null, null, start, end, null, interval, false);
         log.info("generateSegmentedGlobalDropMatrixElementMap done in {} ms for server {}",
                 System.currentTimeMillis() - end, server);
         return result;
@@ -193,37 +165,28 @@ public class DropMatrixElementServiceImpl implements DropMatrixElementService {
     @Override
     public List<DropMatrixElement> generateCustomDropMatrixElements(Server server, String stageId, List<String> itemIds,
             Long start, Long end, List<String> userIDs, Long interval) {
+        if (userIDs == null || userIDs.isEmpty()) {
+            return customQueryCacheService.get(server, stageId, itemIds, start, end, interval,
+                    () -> computeCustomDropMatrixElements(server, stageId, itemIds, start, end, null, interval));
+        }
+        return computeCustomDropMatrixElements(server, stageId, itemIds, start, end, userIDs, interval);
+    }
+
+    private List<DropMatrixElement> computeCustomDropMatrixElements(Server server, String stageId,
+            List<String> itemIds, Long start, Long end, List<String> userIDs, Long interval) {
         List<TimeRange> splittedRanges = timeRangeService.getSplittedTimeRanges(server, stageId, start, end);
         Map<String, List<TimeRange>> timeRangeMap = new HashMap<>();
         timeRangeMap.put(stageId, splittedRanges);
         if (interval == null)
-            return generateDropMatrixElementsFromTimeRangeMapByStageId(server, timeRangeMap, itemIds, userIDs, null);
+            return generateDropMatrixFromTimeRangeMapByStageId(server, timeRangeMap, itemIds, userIDs, null, true)
+                    .toElements();
         else
-            return generateSegmentedDropMatrixElements(server, stageId, itemIds, start, end, userIDs, interval);
-    }
-
-    private Map<String, List<String>> convertItemIdBasedTimeRangesToTimeRangeBasedItemIds(
-            Map<String, List<String>> timeRangeIDsMapItemId, Map<String, TimeRange> timeRangeMap, boolean isPast) {
-        Map<String, List<String>> result = new HashMap<>();
-        timeRangeIDsMapItemId.forEach((itemId, timeRangeIDs) -> {
-            for (String timeRangeID : timeRangeIDs) {
-                TimeRange range = timeRangeMap.get(timeRangeID);
-                if (range == null) {
-                    continue;
-                }
-                boolean isCurrentTimeInRange = range.isIn(System.currentTimeMillis());
-                if (isPast && isCurrentTimeInRange || !isPast && !isCurrentTimeInRange)
-                    continue;
-                List<String> itemIds = result.getOrDefault(timeRangeID, new ArrayList<>());
-                itemIds.add(itemId);
-                result.put(timeRangeID, itemIds);
-            }
-        });
-        return result;
+            return generateSegmentedDropMatrixElements(server, stageId, itemIds, start, end, userIDs, interval, true);
     }
 
-    private List<DropMatrixElement> generateDropMatrixElementsFromTimeRangeMapByStageId(Server server,
-            Map<String, List<TimeRange>> timeRangeMap, List<String> itemIds, List<String> userIDs, Boolean isPast) {
+    private DropMatrix generateDropMatrixFromTimeRangeMapByStageId(Server server,
+            Map<String, List<TimeRange>> timeRangeMap, List<String> itemIds, List<String> userIDs, Boolean isPast,
+            boolean useTimeIndex) {
         Integer maxSize = null;
         for (String stageId : timeRangeMap.keySet()) {
             List<TimeRange> ranges = timeRangeMap.get(stageId);
@@ -231,7 +194,7 @@ public class DropMatrixElementServiceImpl implements DropMatrixElementService {
                 maxSize = ranges.size();
         }
 
-        Map<String, Map<String, List<DropMatrixElement>>> mapByStageIdAndItemId = new HashMap<>();
+        DropMatrix matrix = new DropMatrix(DropMatrixElementType.REGULAR, server, isPast, 0);
         for (int i = 0; i < maxSize; i++) {
             QueryConditions conditions = new QueryConditions();
             if (server != null)
@@ -253,16 +216,15 @@ public class DropMatrixElementServiceImpl implements DropMatrixElementService {
                 }
             }
 
-            List<Document> docs = itemDropDao.aggregateItemDrops(conditions);
+            List<Document> docs = aggregateItemDrops(conditions, useTimeIndex);
             Map<String, List<Document>> docsGroupByStageId =
                     docs.stream().collect(groupingBy(doc -> doc.getString("stageId")));
             for (String stageId : docsGroupByStageId.keySet()) {
                 List<Document> docsForOneStage = docsGroupByStageId.get(stageId);
                 TimeRange currentRange = currentRangesByStageId.get(stageId);
                 Integer timesForStage = docsForOneStage.get(0).getInteger("times");
-                Set<String> dropSet = dropInfoService.getDropSet(server, stageId, currentRange.getStart());
-                Map<String, List<DropMatrixElement>> mapByItemId =
-                        mapByStageIdAndItemId.getOrDefault(stageId, new HashMap<>());
+                Set<String> dropSet =
+                        new HashSet<>(dropInfoService.getDropSet(server, stageId, currentRange.getStart()));
 
                 docsForOneStage.forEach(doc -> {
                     if (doc.containsKey("itemId")) {
@@ -271,14 +233,8 @@ public class DropMatrixElementServiceImpl implements DropMatrixElementService {
                             log.warn("Item " + itemId + " is invalid in stage " + stageId);
                         else {
                             dropSet.remove(itemId);
-                            Integer quantity = doc.getInteger("quantity");
-                            Integer times = doc.getInteger("times");
-                            DropMatrixElement element = new DropMatrixElement(DropMatrixElementType.REGULAR, stageId,
-                                    itemId, quantity, times, currentRange.getStart(), currentRange.getEnd(), server,
-                                    isPast, System.currentTimeMillis());
-                            List<DropMatrixElement> elements = mapByItemId.getOrDefault(itemId, new ArrayList<>());
-                            elements.add(element);
-                            mapByItemId.put(itemId, elements);
+                            matrix.add(stageId, itemId, doc.getInteger("quantity"), doc.getInteger("times"),
+                                    currentRange.getStart(), currentRange.getEnd(), System.currentTimeMillis());
                         }
                     }
                 });
@@ -286,31 +242,19 @@ public class DropMatrixElementServiceImpl implements DropMatrixElementService {
                 if (!dropSet.isEmpty()) {
                     dropSet.forEach(itemId -> {
                         if (itemIds == null || itemIds.isEmpty() || itemIds.contains(itemId)) {
-                            DropMatrixElement element = new DropMatrixElement(DropMatrixElementType.REGULAR, stageId,
-                                    itemId, 0, timesForStage, currentRange.getStart(), currentRange.getEnd(), server,
-                                    isPast, System.currentTimeMillis());
-                            List<DropMatrixElement> elements = mapByItemId.getOrDefault(itemId, new ArrayList<>());
-                            elements.add(element);
-                            mapByItemId.put(itemId, elements);
+                            matrix.add(stageId, itemId, 0, timesForStage, currentRange.getStart(),
+                                    currentRange.getEnd(), System.currentTimeMillis());
                         }
                     });
                 }
-                mapByStageIdAndItemId.put(stageId, mapByItemId);
             }
         }
 
-        List<DropMatrixElement> result = new ArrayList<>();
-        mapByStageIdAndItemId.forEach((stageId, mapByItemId) -> {
-            mapByItemId.forEach((itemId, elements) -> {
-                DropMatrixElement newElement = DropMatrixElementUtil.combineElements(elements);
-                result.add(newElement);
-            });
-        });
-        return result;
+        return matrix;
     }
 
     private List<DropMatrixElement> generateSegmentedDropMatrixElements(Server server, String stageId,
-            List<String> itemIds, Long start, Long end, List<String> userIDs, Long interval) {
+            List<String> itemIds, Long start, Long end, List<String> userIDs, Long interval, boolean useTimeIndex) {
         if (end == null)
             end = System.currentTimeMillis();
         if (start == null || start.compareTo(end) >= 0)
@@ -334,10 +278,10 @@ public class DropMatrixElementServiceImpl implements DropMatrixElementService {
             itemIds.forEach(itemId -> conditions.addItemId(itemId));
         }
 
-        List<Document> docs = itemDropDao.aggregateItemDrops(conditions);
+        List<Document> docs = aggregateItemDrops(conditions, useTimeIndex);
 
-        Map<String, Map<String, List<DropMatrixElement>>> map = new HashMap<>();
-        Map<String, Map<Integer, Integer>> timesMap = new HashMap<>();
+        LongObjectMap<List<DropMatrixElement>> map = new LongObjectMap<>();
+        LongObjectMap<Map<Integer, Integer>> timesMap = new LongObjectMap<>();
         docs.forEach(doc -> {
             if (doc.containsKey("itemId")) {
                 String stageIdInDoc = doc.getString("stageId");
@@ -349,41 +293,57 @@ public class DropMatrixElementServiceImpl implements DropMatrixElementService {
                 DropMatrixElement element = new DropMatrixElement(DropMatrixElementType.TREND, stageIdInDoc, itemId,
                         quantity, times, new Long(section), null, server, null, System.currentTimeMillis());
 
-                Map<String, List<DropMatrixElement>> subMap = map.getOrDefault(stageIdInDoc, new HashMap<>());
-                List<DropMatrixElement> elements = subMap.getOrDefault(itemId, new ArrayList<>());
-                elements.add(element);
-                subMap.put(itemId, elements);
-                map.put(stageIdInDoc, subMap);
-
-                Map<Integer, Integer> timesMapSubMap = timesMap.getOrDefault(stageIdInDoc, new HashMap<>());
-                timesMapSubMap.put(section, times);
-                timesMap.put(stageIdInDoc, timesMapSubMap);
+                int stageIndex = IdRegistry.STAGES.idOf(stageIdInDoc);
+                map.computeIfAbsent(IdRegistry.pairKey(stageIndex, IdRegistry.ITEMS.idOf(itemId)),
+                        k -> new ArrayList<>()).add(element);
+                timesMap.computeIfAbsent(stageIndex, k -> new HashMap<>()).put(section, times);
             }
         });
 
-        map.forEach((stageIdInDoc, subMap) -> {
-            Map<Integer, Integer> timesSubMap = timesMap.get(stageIdInDoc);
-            subMap.forEach((itemId, elements) -> {
-                Set<Integer> sectionSet = new HashSet<>();
-                for (int i = 0; i < sectionNum; i++)
-                    sectionSet.add(i);
-                elements.forEach(el -> sectionSet.remove(el.getStart().intValue()));
-                sectionSet.forEach(section -> {
-                    Integer times =
-                            timesSubMap == null || !timesSubMap.containsKey(section) ? 0 : timesSubMap.get(section);
-                    DropMatrixElement newElement = new DropMatrixElement(DropMatrixElementType.TREND, stageIdInDoc,
-                            itemId, 0, times, new Long(section), null, server, null, System.currentTimeMillis());
-                    elements.add(newElement);
-                });
-                elements.sort((e1, e2) -> e1.getStart().compareTo(e2.getStart()));
-                elements.forEach(el -> {
-                    el.setStart(el.getStart() * interval + start);
-                    el.setEnd(el.getStart() + interval);
-                });
+        map.forEach((key, elements) -> {
+            int stageIndex = IdRegistry.highOf(key);
+            String stageIdInDoc = IdRegistry.STAGES.nameOf(stageIndex);
+            String itemId = IdRegistry.ITEMS.nameOf(IdRegistry.lowOf(key));
+            Map<Integer, Integer> timesSubMap = timesMap.get(stageIndex);
+            boolean[] hasSection = new boolean[sectionNum];
+            elements.forEach(el -> {
+                int section = el.getStart().intValue();
+                if (section >= 0 && section < sectionNum)
+                    hasSection[section] = true;
+            });
+            for (int section = 0; section < sectionNum; section++) {
+                if (hasSection[section])
+                    continue;
+                Integer times = timesSubMap == null || !timesSubMap.containsKey(section) ? 0 : timesSubMap.get(section);
+                DropMatrixElement newElement = new DropMatrixElement(DropMatrixElementType.TREND, stageIdInDoc, itemId,
+                        0, times, new Long(section), null, server, null, System.currentTimeMillis());
+                elements.add(newElement);
+            }
+            elements.sort((e1, e2) -> e1.getStart().compareTo(e2.getStart()));
+            elements.forEach(el -> {
+                el.setStart(el.getStart() * interval + start);
+                el.setEnd(el.getStart() + interval);
             });
         });
-        return map.values().stream().flatMap(m -> m.values().stream().flatMap(List::stream))
-                .collect(Collectors.toList());
+        return map.values().stream().flatMap(List::stream).collect(Collectors.toList());
+    }
+
+    /**
+     * @Title: aggregateItemDrops
+     * @Description: Try to answer the aggregation from the prefix-sum time index first. The index declines stages
+     *               with removed reports until their series are rebuilt. The global matrix and trend are always
+     *               aggregated from raw reports.
+     * @param conditions
+     * @param useTimeIndex
+     * @return List<Document>
+     */
+    private List<Document> aggregateItemDrops(QueryConditions conditions, boolean useTimeIndex) {
+        if (useTimeIndex) {
+            List<Document> docs = dropTimeIndexService.aggregateItemDrops(conditions);
+            if (docs != null)
+                return docs;
+        }
+        return itemDropDao.aggregateItemDrops(conditions);
     }
 
 }
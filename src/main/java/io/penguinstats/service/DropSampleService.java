@@ -0,0 +1,16 @@
+package io.penguinstats.service;
+
+import java.util.Collection;
+import java.util.List;
+
+import io.penguinstats.enums.Server;
+import io.penguinstats.model.DropSample;
+import io.penguinstats.model.ItemDrop;
+
+public interface DropSampleService {
+
+    DropSample.Estimation estimate(Server server, String stageId, List<String> itemIds, Long start, Long end);
+
+    void offerReports(Collection<ItemDrop> itemDrops);
+
+}
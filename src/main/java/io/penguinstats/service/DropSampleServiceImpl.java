@@ -0,0 +1,127 @@
+package io.penguinstats.service;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import io.penguinstats.dao.ItemDropDao;
+import io.penguinstats.enums.Server;
+import io.penguinstats.model.DropSample;
+import io.penguinstats.model.ItemDrop;
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * DropSampleServiceImpl answers approximate queries from a DropSample per (server, stage).<br>
+ * A sample is drawn from item_drop_v2 on the first approximate query of the stage and rebuilt after
+ * drop-sample.max-age, which also drops deleted reports and picks up reliability changes. Reliable reports saved on
+ * this instance are offered to loaded samples in between. At most drop-sample.max-stages samples are kept, in LRU
+ * order.
+ */
+@Log4j2
+@Service("dropSampleService")
+public class DropSampleServiceImpl implements DropSampleService {
+
+    @Autowired
+    private ItemDropDao itemDropDao;
+    @Autowired
+    private DropInfoService dropInfoService;
+
+    @Value("${drop-sample.size:1000}")
+    private int sampleSize;
+
+    @Value("${drop-sample.max-age:86400000}")
+    private long maxAge;
+
+    @Value("${drop-sample.max-stages:500}")
+    private int maxStages;
+
+    @Value("${drop-sample.min-reports:30}")
+    private int minReports;
+
+    /**
+     * In access order, guarded by itself. A sample is guarded by itself.
+     */
+    private final LinkedHashMap<String, DropSample> samples = new LinkedHashMap<String, DropSample>(16, 0.75f, true) {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, DropSample> eldest) {
+            return size() > maxStages;
+        }
+
+    };
+
+    /**
+     * @Title: estimate
+     * @Description: Estimate drop rates of the stage in [start, end) from its sample.
+     * @param server
+     * @param stageId
+     * @param itemIds Only estimate these items. null or empty for all.
+     * @param start
+     * @param end
+     * @return DropSample.Estimation null if fewer than drop-sample.min-reports sampled reports are in the range, then
+     *         the caller should run the exact query.
+     */
+    @Override
+    public DropSample.Estimation estimate(Server server, String stageId, List<String> itemIds, Long start, Long end) {
+        DropSample sample = getSample(server, stageId);
+        long now = System.currentTimeMillis();
+        Set<String> dropSet =
+                dropInfoService.getDropSet(server, stageId, end == null ? now : Math.min(now, end - 1));
+        DropSample.Estimation estimation;
+        synchronized (sample) {
+            estimation = sample.estimate(dropSet, itemIds, start, end);
+        }
+        return estimation.getReports() < minReports ? null : estimation;
+    }
+
+    @Override
+    public void offerReports(Collection<ItemDrop> itemDrops) {
+        for (ItemDrop itemDrop : itemDrops) {
+            if (!Boolean.TRUE.equals(itemDrop.getIsReliable()) || itemDrop.getServer() == null
+                    || itemDrop.getStageId() == null || itemDrop.getTimestamp() == null)
+                continue;
+            DropSample sample;
+            synchronized (samples) {
+                sample = samples.get(keyOf(itemDrop.getServer(), itemDrop.getStageId()));
+            }
+            if (sample == null)
+                continue;
+            synchronized (sample) {
+                sample.offer(itemDrop.getTimestamp(), itemDrop.getTimes() == null ? 0 : itemDrop.getTimes(),
+                        itemDrop.getDrops());
+            }
+        }
+    }
+
+    private DropSample getSample(Server server, String stageId) {
+        String key = keyOf(server, stageId);
+        DropSample sample;
+        synchronized (samples) {
+            sample = samples.get(key);
+        }
+        if (sample != null && System.currentTimeMillis() - sample.getBuiltAt() < maxAge)
+            return sample;
+
+        long startTime = System.currentTimeMillis();
+        sample = itemDropDao.sampleReliableItemDrops(server, stageId, sampleSize);
+        synchronized (samples) {
+            samples.put(key, sample);
+        }
+        log.debug("sample of stage {} in server {} is built in {} ms, {} of {} reports", stageId, server,
+                System.currentTimeMillis() - startTime, sample.size(), sample.getPopulation());
+        return sample;
+    }
+
+    private static String keyOf(Server server, String stageId) {
+        return server + ":" + stageId;
+    }
+
+}
@@ -0,0 +1,18 @@
+package io.penguinstats.service;
+
+import java.util.List;
+
+import org.bson.Document;
+
+import io.penguinstats.model.ItemDrop;
+import io.penguinstats.model.QueryConditions;
+
+public interface DropTimeIndexService {
+
+    void refresh();
+
+    List<Document> aggregateItemDrops(QueryConditions conditions);
+
+    void applyRemoval(ItemDrop itemDrop);
+
+}
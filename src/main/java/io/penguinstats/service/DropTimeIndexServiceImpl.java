@@ -0,0 +1,493 @@
+package io.penguinstats.service;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.lang3.StringUtils;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Service;
+
+import io.penguinstats.dao.ItemDropDao;
+import io.penguinstats.enums.Server;
+import io.penguinstats.model.ItemDrop;
+import io.penguinstats.model.QueryConditions;
+import io.penguinstats.model.QueryConditions.StageWithTimeRange;
+import io.penguinstats.util.index.DropPrefixSumIndex;
+import io.penguinstats.util.index.DropPrefixSumIndex.Counts;
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * DropTimeIndexServiceImpl keeps one DropPrefixSumIndex per server, extended hourly and rebuilt every
+ * rebuildInterval.<br>
+ * Removing a report from an indexed bucket bumps a version of its stage in Redis, so that every instance sees it.
+ * Each instance remembers the version of a stage when it read the reports of the stage. While the two differ, queries
+ * on the stage are not answered from the index, and the next refresh rebuilds the series of the stage. Stages with a
+ * version are also listed in a Redis set, so that a full build can start from the current version of every stage.
+ */
+@Log4j2
+@Service("dropTimeIndexService")
+public class DropTimeIndexServiceImpl implements DropTimeIndexService {
+
+    private static final int BUILD_CHUNK_BUCKETS = 30;
+
+    private static final int MAX_RAW_SECTION_NUM = 3;
+
+    private static final int FILE_FORMAT_VERSION = 2;
+
+    private static final String VERSION_KEY_PREFIX = "drop_time_index_version::";
+
+    private static final String STAGES_KEY_PREFIX = "drop_time_index_stages::";
+
+    @Autowired
+    private ItemDropDao itemDropDao;
+
+    @Autowired
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Value("${drop-time-index.granularity:86400000}")
+    private long granularity;
+
+    @Value("${drop-time-index.offset:0}")
+    private long offset;
+
+    @Value("${drop-time-index.settle:86400000}")
+    private long settle;
+
+    @Value("${drop-time-index.rebuild-interval:604800000}")
+    private long rebuildInterval;
+
+    @Value("${drop-time-index.path:${java.io.tmpdir}/penguin-drop-time-index.bin}")
+    private String path;
+
+    private volatile Map<Server, DropPrefixSumIndex> indexes = new EnumMap<>(Server.class);
+
+    /**
+     * Stage versions at the time the reports of each stage were read. A missing stage is at version 0.
+     */
+    private volatile Map<Server, Map<String, Long>> syncedVersions = new EnumMap<>(Server.class);
+
+    private long fullBuildTime = 0L;
+
+    private boolean loaded = false;
+
+    /**
+     * @Title: refresh
+     * @Description: Extend the index of every server to the latest settled bucket, after rebuilding the series of
+     *               the stages with removed reports. The index is rebuilt from scratch every rebuildInterval, so that
+     *               reliability changes of old reports are picked up.
+     */
+    @Override
+    public synchronized void refresh() {
+        if (!loaded) {
+            loadFromFile();
+            loaded = true;
+        }
+        boolean rebuild = System.currentTimeMillis() - fullBuildTime > rebuildInterval;
+        long startTime = System.currentTimeMillis();
+        Map<Server, DropPrefixSumIndex> newIndexes = new EnumMap<>(Server.class);
+        Map<Server, Map<String, Long>> newVersions = new EnumMap<>(Server.class);
+        for (Server server : Server.values()) {
+            DropPrefixSumIndex index = indexes.get(server);
+            Map<String, Long> versions = new HashMap<>(syncedVersions.getOrDefault(server, Collections.emptyMap()));
+            // Versions are read before the reports, so a removal in between is found by the next refresh.
+            boolean fullBuild = rebuild || index == null;
+            Map<String, Long> currentVersions =
+                    fullBuild ? readAllVersions(server) : readVersions(server, index.getStageIds());
+            if (fullBuild) {
+                index = null;
+                versions.clear();
+                if (currentVersions != null)
+                    versions.putAll(currentVersions);
+            } else if (currentVersions != null) {
+                for (Map.Entry<String, Long> entry : currentVersions.entrySet()) {
+                    if (entry.getValue().equals(versions.getOrDefault(entry.getKey(), 0L)))
+                        continue;
+                    index = resync(server, index, entry.getKey());
+                    versions.put(entry.getKey(), entry.getValue());
+                }
+            }
+            newIndexes.put(server, extend(server, index));
+            newVersions.put(server, versions);
+        }
+        indexes = newIndexes;
+        syncedVersions = newVersions;
+        if (rebuild)
+            fullBuildTime = startTime;
+        log.info("refresh drop time index done in {} ms, rebuild = {}", System.currentTimeMillis() - startTime,
+                rebuild);
+        saveToFile();
+    }
+
+    /**
+     * @Title: aggregateItemDrops
+     * @Description: Answer a non-personal aggregation from the prefix sums. Only the unaligned edges of each range
+     *               and the part after the index horizon are aggregated from raw reports. The returned documents have
+     *               the same shape as ItemDropDao.aggregateItemDrops.
+     * @param conditions
+     * @return List<Document> null if the index cannot answer the conditions
+     */
+    @Override
+    public List<Document> aggregateItemDrops(QueryConditions conditions) {
+        if (!conditions.getUserIDs().isEmpty() || conditions.getServers().size() != 1)
+            return null;
+        Server server = conditions.getServers().get(0);
+        DropPrefixSumIndex index = indexes.get(server);
+        if (index == null || conditions.getStages().isEmpty())
+            return null;
+
+        Set<String> stageIds = new HashSet<>();
+        for (StageWithTimeRange stage : conditions.getStages()) {
+            if (stage.getStageId() == null || !stageIds.add(stage.getStageId()))
+                return null;
+        }
+        if (!isSynced(server, stageIds))
+            return null;
+
+        Long interval = conditions.getInterval();
+        if (interval == null)
+            return aggregateWithoutInterval(index, server, conditions);
+
+        if (conditions.getStages().size() != 1 || interval % index.getGranularity() != 0)
+            return null;
+        StageWithTimeRange stage = conditions.getStages().get(0);
+        if (stage.getStart() == null || index.bucketStart(index.bucketOf(stage.getStart())) != stage.getStart())
+            return null;
+        return aggregateWithInterval(index, server, conditions, stage, interval);
+    }
+
+    private List<Document> aggregateWithoutInterval(DropPrefixSumIndex index, Server server,
+            QueryConditions conditions) {
+        Map<String, Counts> countsByStageId = new HashMap<>();
+        QueryConditions rawConditions = new QueryConditions().addServer(server);
+        for (StageWithTimeRange stage : conditions.getStages()) {
+            long start = stage.getStart() == null ? 0L : stage.getStart();
+            long end = stage.getEnd() == null ? System.currentTimeMillis() : stage.getEnd();
+            countsByStageId.put(stage.getStageId(), sumFromIndex(index, stage.getStageId(), start, end, rawConditions));
+        }
+        if (!rawConditions.getStages().isEmpty())
+            addRawCounts(countsByStageId, itemDropDao.aggregateItemDrops(rawConditions));
+
+        List<Document> result = new ArrayList<>();
+        countsByStageId.forEach((stageId, counts) -> result.addAll(toDocuments(stageId, 0, counts, conditions)));
+        return result;
+    }
+
+    private List<Document> aggregateWithInterval(DropPrefixSumIndex index, Server server, QueryConditions conditions,
+            StageWithTimeRange stage, long interval) {
+        String stageId = stage.getStageId();
+        long start = stage.getStart();
+        long end = stage.getEnd() == null ? System.currentTimeMillis() : stage.getEnd();
+
+        List<Counts> countsBySection = new ArrayList<>();
+        List<QueryConditions> rawConditionsBySection = new ArrayList<>();
+        int rawSectionNum = 0;
+        for (long sectionStart = start; sectionStart < end; sectionStart += interval) {
+            long sectionEnd = Math.min(sectionStart + interval, end);
+            QueryConditions rawConditions = new QueryConditions().addServer(server);
+            countsBySection.add(sumFromIndex(index, stageId, sectionStart, sectionEnd, rawConditions));
+            rawConditionsBySection.add(rawConditions);
+            if (!rawConditions.getStages().isEmpty())
+                rawSectionNum++;
+        }
+        // Only the sections after the index horizon need raw aggregation. If the index lags behind too much, a
+        // single raw aggregation is cheaper than one per section.
+        if (rawSectionNum > MAX_RAW_SECTION_NUM)
+            return null;
+
+        List<Document> result = new ArrayList<>();
+        for (int section = 0; section < countsBySection.size(); section++) {
+            Map<String, Counts> countsByStageId = new HashMap<>();
+            countsByStageId.put(stageId, countsBySection.get(section));
+            QueryConditions rawConditions = rawConditionsBySection.get(section);
+            if (!rawConditions.getStages().isEmpty())
+                addRawCounts(countsByStageId, itemDropDao.aggregateItemDrops(rawConditions));
+            result.addAll(toDocuments(stageId, section, countsByStageId.get(stageId), conditions));
+        }
+        return result;
+    }
+
+    /**
+     * @Title: sumFromIndex
+     * @Description: Sum up the bucket-aligned middle part of [start, end) from the index, and add the remaining
+     *               edges into rawConditions.
+     */
+    private Counts sumFromIndex(DropPrefixSumIndex index, String stageId, long start, long end,
+            QueryConditions rawConditions) {
+        // The index starts at the bucket of the earliest reliable report, there is nothing to scan before it.
+        start = Math.max(start, index.bucketStart(index.getFirstBucket()));
+        long fromBucket = index.bucketOf(start);
+        if (index.bucketStart(fromBucket) < start)
+            fromBucket++;
+        long toBucket = Math.min(index.bucketOf(end), index.getEndBucket());
+        if (fromBucket >= toBucket) {
+            if (start < end)
+                rawConditions.addStage(stageId, start, end);
+            return new Counts();
+        }
+        long alignedStart = index.bucketStart(fromBucket);
+        long alignedEnd = index.bucketStart(toBucket);
+        if (start < alignedStart)
+            rawConditions.addStage(stageId, start, alignedStart);
+        if (alignedEnd < end)
+            rawConditions.addStage(stageId, alignedEnd, end);
+        return index.sum(stageId, fromBucket, toBucket);
+    }
+
+    /**
+     * @Title: applyRemoval
+     * @Description: Mark the stage of a removed report as changed if the report may be in the index of any instance.
+     *               Reports in unsettled buckets are not, and are left out when those buckets are read.
+     * @param itemDrop
+     */
+    @Override
+    public void applyRemoval(ItemDrop itemDrop) {
+        if (!Boolean.TRUE.equals(itemDrop.getIsReliable()) || itemDrop.getTimestamp() == null)
+            return;
+        long settledEndBucket = Math.floorDiv(System.currentTimeMillis() - settle - offset, granularity);
+        if (Math.floorDiv(itemDrop.getTimestamp() - offset, granularity) >= settledEndBucket)
+            return;
+        try {
+            redisTemplate.opsForSet().add(STAGES_KEY_PREFIX + itemDrop.getServer(), itemDrop.getStageId());
+            redisTemplate.opsForValue().increment(versionKey(itemDrop.getServer(), itemDrop.getStageId()));
+        } catch (Exception e) {
+            log.error("Error in applyRemoval of stage " + itemDrop.getStageId() + ": ", e);
+        }
+    }
+
+    private boolean isSynced(Server server, Collection<String> stageIds) {
+        Map<String, Long> currentVersions = readVersions(server, stageIds);
+        if (currentVersions == null)
+            return false;
+        Map<String, Long> versions = syncedVersions.getOrDefault(server, Collections.emptyMap());
+        return currentVersions.entrySet().stream()
+                .allMatch(entry -> entry.getValue().equals(versions.getOrDefault(entry.getKey(), 0L)));
+    }
+
+    /**
+     * @Title: readVersions
+     * @Description: Read the current versions of the stages, 0 for a stage without removals.
+     * @return Map<String, Long> null if Redis fails
+     */
+    private Map<String, Long> readVersions(Server server, Collection<String> stageIds) {
+        List<String> stageIdList = new ArrayList<>(stageIds);
+        List<String> keys = new ArrayList<>();
+        stageIdList.forEach(stageId -> keys.add(versionKey(server, stageId)));
+        Map<String, Long> result = new HashMap<>();
+        if (keys.isEmpty())
+            return result;
+        try {
+            List<Object> values = redisTemplate.opsForValue().multiGet(keys);
+            for (int i = 0; i < stageIdList.size(); i++) {
+                Object value = values == null || values.size() <= i ? null : values.get(i);
+                result.put(stageIdList.get(i), value instanceof Number ? ((Number)value).longValue() : 0L);
+            }
+            return result;
+        } catch (Exception e) {
+            log.warn("Error in reading drop time index versions: ", e);
+            return null;
+        }
+    }
+
+    /**
+     * @Title: readAllVersions
+     * @Description: Read the current versions of all stages with removals in the server.
+     * @return Map<String, Long> null if Redis fails
+     */
+    private Map<String, Long> readAllVersions(Server server) {
+        Set<String> stageIds = new HashSet<>();
+        try {
+            Set<Object> members = redisTemplate.opsForSet().members(STAGES_KEY_PREFIX + server);
+            if (members != null)
+                members.forEach(member -> stageIds.add(String.valueOf(member)));
+        } catch (Exception e) {
+            log.warn("Error in reading stages of drop time index versions: ", e);
+            return null;
+        }
+        return readVersions(server, stageIds);
+    }
+
+    private static String versionKey(Server server, String stageId) {
+        return VERSION_KEY_PREFIX + server + "::" + stageId;
+    }
+
+    private void addRawCounts(Map<String, Counts> countsByStageId, List<Document> docs) {
+        Set<String> stagesWithTimes = new HashSet<>();
+        docs.forEach(doc -> {
+            String stageId = doc.getString("stageId");
+            Counts counts = countsByStageId.computeIfAbsent(stageId, k -> new Counts());
+            if (stagesWithTimes.add(stageId))
+                counts.addTimes(doc.getInteger("times"));
+            String itemId = doc.getString("itemId");
+            Integer quantity = doc.getInteger("quantity");
+            if (itemId != null && quantity != null)
+                counts.addQuantity(itemId, quantity);
+        });
+    }
+
+    private List<Document> toDocuments(String stageId, int section, Counts counts, QueryConditions conditions) {
+        List<Document> result = new ArrayList<>();
+        if (counts.getTimes() == 0L)
+            return result;
+        List<String> itemIds = conditions.getItemIds();
+        Integer times = Math.toIntExact(counts.getTimes());
+        counts.getQuantities().forEach((itemId, quantity) -> {
+            if (itemIds.isEmpty() || itemIds.contains(itemId)) {
+                result.add(new Document("stageId", stageId).append("section", (double)section).append("times", times)
+                        .append("itemId", itemId).append("quantity", Math.toIntExact(quantity)));
+            }
+        });
+        if (result.isEmpty())
+            result.add(new Document("stageId", stageId).append("section", (double)section).append("times", times));
+        return result;
+    }
+
+    private DropPrefixSumIndex extend(Server server, DropPrefixSumIndex index) {
+        if (index == null) {
+            Long firstTimestamp = itemDropDao.findFirstReliableTimestamp();
+            if (firstTimestamp == null)
+                return null;
+            index = DropPrefixSumIndex.empty(granularity, offset, Math.floorDiv(firstTimestamp - offset, granularity));
+        }
+        long targetEndBucket = index.bucketOf(System.currentTimeMillis() - settle);
+        while (index.getEndBucket() < targetEndBucket) {
+            long chunkEnd = Math.min(index.getEndBucket() + BUILD_CHUNK_BUCKETS, targetEndBucket);
+            QueryConditions conditions = new QueryConditions().addServer(server)
+                    .addStage(null, index.bucketStart(index.getEndBucket()), index.bucketStart(chunkEnd))
+                    .setInterval(granularity);
+            Map<String, Map<Long, Counts>> countsByStageAndBucket = new HashMap<>();
+            for (Document doc : itemDropDao.aggregateItemDrops(conditions)) {
+                addBucketCounts(countsByStageAndBucket.computeIfAbsent(doc.getString("stageId"), k -> new HashMap<>()),
+                        index.getEndBucket(), doc);
+            }
+            index = index.append(chunkEnd, countsByStageAndBucket);
+        }
+        return index;
+    }
+
+    /**
+     * @Title: resync
+     * @Description: Rebuild the series of one stage over all buckets covered by the index.
+     */
+    private DropPrefixSumIndex resync(Server server, DropPrefixSumIndex index, String stageId) {
+        if (index.getEndBucket() <= index.getFirstBucket())
+            return index;
+        QueryConditions conditions = new QueryConditions().addServer(server)
+                .addStage(stageId, index.bucketStart(index.getFirstBucket()), index.bucketStart(index.getEndBucket()))
+                .setInterval(granularity);
+        Map<Long, Counts> countsByBucket = new HashMap<>();
+        for (Document doc : itemDropDao.aggregateItemDrops(conditions))
+            addBucketCounts(countsByBucket, index.getFirstBucket(), doc);
+        log.info("series of stage {} on {} in drop time index is rebuilt", stageId, server);
+        return index.replaceStage(stageId, countsByBucket);
+    }
+
+    private void addBucketCounts(Map<Long, Counts> countsByBucket, long firstBucket, Document doc) {
+        long bucket = firstBucket + doc.getDouble("section").longValue();
+        Counts counts = countsByBucket.get(bucket);
+        if (counts == null) {
+            counts = new Counts().addTimes(doc.getInteger("times"));
+            countsByBucket.put(bucket, counts);
+        }
+        String itemId = doc.getString("itemId");
+        Integer quantity = doc.getInteger("quantity");
+        if (itemId != null && quantity != null)
+            counts.addQuantity(itemId, quantity);
+    }
+
+    private void loadFromFile() {
+        if (StringUtils.isEmpty(path))
+            return;
+        File file = new File(path);
+        if (!file.exists())
+            return;
+        try (DataInputStream in =
+                new DataInputStream(new GZIPInputStream(new BufferedInputStream(new FileInputStream(file))))) {
+            if (in.readInt() != FILE_FORMAT_VERSION) {
+                log.warn("drop time index file {} is in an old format, ignored", path);
+                return;
+            }
+            long savedFullBuildTime = in.readLong();
+            int serverNum = in.readInt();
+            Map<Server, DropPrefixSumIndex> loadedIndexes = new EnumMap<>(Server.class);
+            Map<Server, Map<String, Long>> loadedVersions = new EnumMap<>(Server.class);
+            for (int i = 0; i < serverNum; i++) {
+                Server server = Server.valueOf(in.readUTF());
+                DropPrefixSumIndex index = DropPrefixSumIndex.readFrom(in);
+                if (index.getGranularity() != granularity || index.getOffset() != offset) {
+                    log.warn("drop time index file {} was built with another granularity, ignored", path);
+                    return;
+                }
+                loadedIndexes.put(server, index);
+                int versionNum = in.readInt();
+                Map<String, Long> versions = new HashMap<>(versionNum * 2);
+                for (int j = 0; j < versionNum; j++)
+                    versions.put(in.readUTF(), in.readLong());
+                loadedVersions.put(server, versions);
+            }
+            indexes = loadedIndexes;
+            syncedVersions = loadedVersions;
+            fullBuildTime = savedFullBuildTime;
+            log.info("drop time index is loaded from {}", path);
+        } catch (IOException | IllegalArgumentException e) {
+            log.error("Error in loadFromFile: ", e);
+        }
+    }
+
+    private void saveToFile() {
+        if (StringUtils.isEmpty(path))
+            return;
+        File file = new File(path);
+        File tmpFile = new File(path + ".tmp");
+        Map<Server, DropPrefixSumIndex> current = indexes;
+        Map<Server, Map<String, Long>> currentVersions = syncedVersions;
+        try (DataOutputStream out =
+                new DataOutputStream(new GZIPOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile))))) {
+            out.writeInt(FILE_FORMAT_VERSION);
+            out.writeLong(fullBuildTime);
+            out.writeInt((int)current.values().stream().filter(index -> index != null).count());
+            for (Map.Entry<Server, DropPrefixSumIndex> entry : current.entrySet()) {
+                if (entry.getValue() == null)
+                    continue;
+                out.writeUTF(entry.getKey().name());
+                entry.getValue().writeTo(out);
+                Map<String, Long> versions = currentVersions.getOrDefault(entry.getKey(), Collections.emptyMap());
+                out.writeInt(versions.size());
+                for (Map.Entry<String, Long> version : versions.entrySet()) {
+                    out.writeUTF(version.getKey());
+                    out.writeLong(version.getValue());
+                }
+            }
+        } catch (IOException e) {
+            log.error("Error in saveToFile: ", e);
+            return;
+        }
+        try {
+            Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            log.error("Error in saveToFile: ", e);
+        }
+    }
+
+}
@@ -0,0 +1,18 @@
+package io.penguinstats.service;
+
+import java.util.List;
+
+import io.penguinstats.model.EncodedDocument;
+import io.penguinstats.model.Formula;
+
+public interface FormulaService {
+
+    List<Formula> getFormulas();
+
+    EncodedDocument getDocument();
+
+    void reload();
+
+    boolean reloadIfModified();
+
+}
@@ -0,0 +1,166 @@
+package io.penguinstats.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.annotation.PostConstruct;
+
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.penguinstats.enums.ErrorCode;
+import io.penguinstats.model.EncodedDocument;
+import io.penguinstats.model.Formula;
+import io.penguinstats.model.Formula.Material;
+import io.penguinstats.util.exception.ServiceException;
+import lombok.extern.log4j.Log4j2;
+
+@Log4j2
+@Service("formulaService")
+public class FormulaServiceImpl implements FormulaService {
+
+    private static final String CLASSPATH_LOCATION = "json/formula.json";
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    /**
+     * External formula file. If empty, json/formula.json in the classpath is used and never reloaded.
+     */
+    @Value("${formula.path:}")
+    private String path;
+
+    private volatile Snapshot snapshot;
+
+    /**
+     * The bundled formula must be valid, so the application refuses to start otherwise.
+     */
+    @PostConstruct
+    public void init() {
+        reload();
+    }
+
+    @Override
+    public List<Formula> getFormulas() {
+        return snapshot.formulas;
+    }
+
+    @Override
+    public EncodedDocument getDocument() {
+        return snapshot.document;
+    }
+
+    /**
+     * @Title: reload
+     * @Description: Parse and validate the formula file and replace the served formula. The current one is kept if
+     *               the file cannot be read or is invalid.
+     */
+    @Override
+    public synchronized void reload() {
+        Resource resource = getResource();
+        long lastModified = lastModified(resource);
+        List<Formula> formulas;
+        try (InputStream in = resource.getInputStream()) {
+            formulas = objectMapper.readValue(in, new TypeReference<List<Formula>>() {});
+        } catch (IOException e) {
+            throw new ServiceException(ErrorCode.INTERNAL_SERVER_ERROR,
+                    "Failed to read formula from " + resource.getDescription(), e);
+        }
+        validate(formulas);
+
+        try {
+            List<Formula> unmodifiable = Collections.unmodifiableList(formulas);
+            snapshot = new Snapshot(unmodifiable, EncodedDocument.of(objectMapper.writeValueAsBytes(unmodifiable)),
+                    lastModified);
+        } catch (IOException | NoSuchAlgorithmException e) {
+            throw new ServiceException(e);
+        }
+        log.info("{} formulas are loaded from {}", formulas.size(), resource.getDescription());
+    }
+
+    /**
+     * @Title: reloadIfModified
+     * @Description: Reload if formula.path is set and the file has been modified since the last load.
+     * @return boolean Whether it is reloaded.
+     */
+    @Override
+    public boolean reloadIfModified() {
+        if (StringUtils.isBlank(path))
+            return false;
+        if (lastModified(getResource()) == snapshot.lastModified)
+            return false;
+        reload();
+        return true;
+    }
+
+    private Resource getResource() {
+        return StringUtils.isBlank(path) ? new ClassPathResource(CLASSPATH_LOCATION) : new FileSystemResource(path);
+    }
+
+    private static long lastModified(Resource resource) {
+        try {
+            return resource.lastModified();
+        } catch (IOException e) {
+            return -1L;
+        }
+    }
+
+    private static void validate(List<Formula> formulas) {
+        if (formulas == null || formulas.isEmpty())
+            throw new ServiceException(ErrorCode.INTERNAL_SERVER_ERROR, "Formula is empty.");
+        Set<String> ids = new HashSet<>();
+        for (Formula formula : formulas) {
+            String id = formula.getId();
+            if (StringUtils.isBlank(id) || !ids.add(id))
+                throw new ServiceException(ErrorCode.INTERNAL_SERVER_ERROR, "Formula id is blank or duplicated: " + id);
+            if (formula.getGoldCost() == null || formula.getGoldCost() < 0 || formula.getCosts().isEmpty())
+                throw new ServiceException(ErrorCode.INTERNAL_SERVER_ERROR, "Formula[" + id + "] has invalid costs.");
+            for (Material cost : formula.getCosts()) {
+                if (StringUtils.isBlank(cost.getId()) || cost.getCount() == null || cost.getCount() <= 0)
+                    throw new ServiceException(ErrorCode.INTERNAL_SERVER_ERROR,
+                            "Formula[" + id + "] has an invalid cost.");
+            }
+            int totalWeight = 0;
+            for (Material outcome : formula.getExtraOutcome()) {
+                if (StringUtils.isBlank(outcome.getId()) || outcome.getWeight() == null || outcome.getWeight() < 0)
+                    throw new ServiceException(ErrorCode.INTERNAL_SERVER_ERROR,
+                            "Formula[" + id + "] has an invalid extra outcome.");
+                totalWeight += outcome.getWeight();
+            }
+            if (formula.getTotalWeight() == null || formula.getTotalWeight() != totalWeight)
+                throw new ServiceException(ErrorCode.INTERNAL_SERVER_ERROR,
+                        "Formula[" + id + "] has totalWeight " + formula.getTotalWeight() + ", expected "
+                                + totalWeight);
+        }
+    }
+
+    private static class Snapshot {
+
+        private final List<Formula> formulas;
+
+        private final EncodedDocument document;
+
+        private final long lastModified;
+
+        private Snapshot(List<Formula> formulas, EncodedDocument document, long lastModified) {
+            this.formulas = formulas;
+            this.document = document;
+            this.lastModified = lastModified;
+        }
+
+    }
+
+}
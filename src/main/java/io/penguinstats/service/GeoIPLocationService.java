@@ -10,6 +10,15 @@ public interface GeoIPLocationService {
 
 	GeoIP getIpLocation(String ip) throws IOException, GeoIp2Exception;
 
+	/**
+	 * @Title: getCountryIsoCode
+	 * @Description: Look up the ISO 3166-1 country code of the ip. Results are cached per /24 (IPv4) or /64 (IPv6)
+	 *               prefix when the whole prefix belongs to one network.
+	 * @param ip
+	 * @return String null if the ip is malformed or unknown.
+	 */
+	String getCountryIsoCode(String ip);
+
 	boolean isFromChinaMainland(String ip);
 
 }
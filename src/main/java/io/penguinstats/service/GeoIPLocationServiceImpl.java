@@ -1,56 +1,128 @@
 package io.penguinstats.service;
 
-import static java.util.Objects.nonNull;
-
 import java.io.IOException;
+import java.net.Inet4Address;
 import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Optional;
+
+import javax.annotation.PostConstruct;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import com.google.common.net.InetAddresses;
+import com.maxmind.db.Network;
 import com.maxmind.geoip2.DatabaseReader;
 import com.maxmind.geoip2.exception.GeoIp2Exception;
-import com.maxmind.geoip2.model.CityResponse;
+import com.maxmind.geoip2.model.CountryResponse;
 
 import io.penguinstats.model.GeoIP;
+import io.penguinstats.util.misc.GenerationalCache;
+import lombok.extern.log4j.Log4j2;
 
+@Log4j2
 @Service("geoIPLocationService")
 public class GeoIPLocationServiceImpl implements GeoIPLocationService {
 
+	private static final String CHINA_MAINLAND_ISO_CODE = "CN";
+
+	/**
+	 * Cached for addresses not in the database, since the cache does not take null.
+	 */
+	private static final String UNKNOWN = "";
+
+	private static final int IPV4_PREFIX_LENGTH = 24;
+
+	private static final int IPV6_PREFIX_LENGTH = 64;
+
 	private final DatabaseReader databaseReader;
 
+	@Value("${geoip.cache-size:32768}")
+	private int cacheSize;
+
+	/**
+	 * ISO codes keyed by "address/prefixLength" when the whole prefix is in one network of the database, or by the
+	 * address otherwise.
+	 */
+	private GenerationalCache<String, String> countryCache;
+
 	public GeoIPLocationServiceImpl(DatabaseReader databaseReader) {
 		this.databaseReader = databaseReader;
 	}
 
+	@PostConstruct
+	public void init() {
+		countryCache = new GenerationalCache<>(cacheSize);
+	}
+
 	/**
-	 * get user position by ip address
+	 * get user country by ip address
 	 *
 	 * @param ip String ip address
-	 * @return UserPositionDTO model
-	 * @throws IOException     if local database city not exist
+	 * @return GeoIP model, city is not available in the country database
+	 * @throws IOException     if local database not exist
 	 * @throws GeoIp2Exception if cannot get info by ip address
 	 */
 	@Override
 	public GeoIP getIpLocation(String ip) throws IOException, GeoIp2Exception {
+		if (databaseReader == null)
+			throw new IOException("GeoIP database is not loaded.");
 		GeoIP position = new GeoIP();
-		InetAddress ipAddress = InetAddress.getByName(ip);
-		CityResponse cityResponse = databaseReader.city(ipAddress);
-		if (nonNull(cityResponse) && nonNull(cityResponse.getCity())) {
-			String country = (cityResponse.getCountry() != null) ? cityResponse.getCountry().getName() : "";
-			position.setCountry(country);
-			position.setCity(cityResponse.getCity().getName());
-			position.setIpAddress(ip);
-		}
+		CountryResponse countryResponse = databaseReader.country(parseAddress(ip));
+		if (countryResponse.getCountry() != null)
+			position.setCountry(countryResponse.getCountry().getName());
+		position.setIpAddress(ip);
 		return position;
 	}
 
 	@Override
-	public boolean isFromChinaMainland(String ip) {
+	public String getCountryIsoCode(String ip) {
+		if (databaseReader == null)
+			return null;
+		InetAddress address;
+		try {
+			address = parseAddress(ip);
+		} catch (UnknownHostException e) {
+			return null;
+		}
+
+		String exactKey = InetAddresses.toAddrString(address);
+		int prefixLength = address instanceof Inet4Address ? IPV4_PREFIX_LENGTH : IPV6_PREFIX_LENGTH;
+		String prefixKey = new Network(address, prefixLength).toString();
+		String isoCode = countryCache.get(prefixKey);
+		if (isoCode == null)
+			isoCode = countryCache.get(exactKey);
+		if (isoCode != null)
+			return UNKNOWN.equals(isoCode) ? null : isoCode;
+
 		try {
-			GeoIP geoip = getIpLocation(ip);
-			return "China".equalsIgnoreCase(geoip.getCountry());
+			Optional<CountryResponse> response = databaseReader.tryCountry(address);
+			isoCode = response.map(r -> r.getCountry().getIsoCode()).orElse(null);
+			Network network = response.map(r -> r.getTraits().getNetwork()).orElse(null);
+			String key = network != null && network.getPrefixLength() <= prefixLength ? prefixKey : exactKey;
+			countryCache.put(key, isoCode == null ? UNKNOWN : isoCode);
+			return isoCode;
 		} catch (IOException | GeoIp2Exception e) {
-			return false;
+			log.warn("Failed to look up country of " + ip, e);
+			return null;
+		}
+	}
+
+	@Override
+	public boolean isFromChinaMainland(String ip) {
+		// Hong Kong, Macao and Taiwan have their own ISO codes
+		return CHINA_MAINLAND_ISO_CODE.equals(getCountryIsoCode(ip));
+	}
+
+	/**
+	 * Only takes IP literals, so that a malformed header never leads to a DNS lookup.
+	 */
+	private InetAddress parseAddress(String ip) throws UnknownHostException {
+		try {
+			return InetAddresses.forString(ip == null ? "" : ip.trim());
+		} catch (IllegalArgumentException e) {
+			throw new UnknownHostException(ip);
 		}
 	}
 
@@ -0,0 +1,14 @@
+package io.penguinstats.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import io.penguinstats.enums.ExportFormat;
+import io.penguinstats.model.ItemDropExportConditions;
+
+public interface ItemDropExportService {
+
+    long exportItemDrops(ItemDropExportConditions conditions, ExportFormat format, OutputStream out)
+            throws IOException;
+
+}
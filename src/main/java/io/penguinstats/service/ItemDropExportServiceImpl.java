@@ -0,0 +1,197 @@
+package io.penguinstats.service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import io.penguinstats.constant.Constant.SystemPropertyKey;
+import io.penguinstats.dao.ItemDropDao;
+import io.penguinstats.enums.ErrorCode;
+import io.penguinstats.enums.ExportFormat;
+import io.penguinstats.model.Drop;
+import io.penguinstats.model.ItemDrop;
+import io.penguinstats.model.ItemDropExportConditions;
+import io.penguinstats.util.HashUtil;
+import io.penguinstats.util.exception.ServiceException;
+import lombok.extern.log4j.Log4j2;
+
+@Log4j2
+@Service("itemDropExportService")
+public class ItemDropExportServiceImpl implements ItemDropExportService {
+
+    private static final String CSV_HEADER = "id,stageId,server,times,drops,timestamp,source,version,userHash";
+
+    private static final int FLUSH_INTERVAL = 1000;
+
+    private static final int USER_HASH_CACHE_SIZE = 10000;
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    @Autowired
+    private ItemDropDao itemDropDao;
+
+    @Autowired
+    private SystemPropertyService systemPropertyService;
+
+    /**
+     * @Title: exportItemDrops
+     * @Description: Write reports matching the conditions into out, one record per line. Records are written as soon
+     *               as they are read from the cursor, so a slow reader slows down the cursor instead of filling up
+     *               memory. Each record contains its id, which can be used as afterId to resume the export.
+     * @param conditions
+     * @param format
+     * @param out
+     * @return long The number of exported records.
+     */
+    @Override
+    public long exportItemDrops(ItemDropExportConditions conditions, ExportFormat format, OutputStream out)
+            throws IOException {
+        String salt = systemPropertyService.getPropertyStringValue(SystemPropertyKey.EXPORT_USER_ID_SALT);
+        if (StringUtils.isEmpty(salt)) {
+            throw new ServiceException(ErrorCode.INTERNAL_SERVER_ERROR,
+                    "System property " + SystemPropertyKey.EXPORT_USER_ID_SALT + " is not set.");
+        }
+        UserHasher userHasher = new UserHasher(salt);
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        // A resumed export is appended to the previous output, which already has the header.
+        if (format == ExportFormat.CSV && conditions.getAfterId() == null) {
+            writer.write(CSV_HEADER);
+            writer.write('\n');
+        }
+
+        long startTime = System.currentTimeMillis();
+        long[] count = {0L};
+        try {
+            itemDropDao.streamForExport(conditions, itemDrop -> {
+                try {
+                    if (format == ExportFormat.CSV)
+                        writeCsvRecord(writer, itemDrop, userHasher);
+                    else
+                        writeJsonRecord(writer, itemDrop, userHasher);
+                    if (++count[0] % FLUSH_INTERVAL == 0)
+                        writer.flush();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            log.warn("export is interrupted after {} records: {}", count[0], e.getCause().getMessage());
+            throw e.getCause();
+        }
+        writer.flush();
+        log.info("{} records are exported in {} ms", count[0], System.currentTimeMillis() - startTime);
+        return count[0];
+    }
+
+    private void writeJsonRecord(Writer writer, ItemDrop itemDrop, UserHasher userHasher) throws IOException {
+        JsonGenerator generator = JSON_FACTORY.createGenerator(writer);
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        generator.writeStartObject();
+        generator.writeStringField("id", itemDrop.getId().toHexString());
+        generator.writeStringField("stageId", itemDrop.getStageId());
+        generator.writeStringField("server", itemDrop.getServer().name());
+        generator.writeNumberField("times", itemDrop.getTimes());
+        generator.writeArrayFieldStart("drops");
+        if (itemDrop.getDrops() != null) {
+            for (Drop drop : itemDrop.getDrops()) {
+                generator.writeStartObject();
+                generator.writeStringField("itemId", drop.getItemId());
+                generator.writeNumberField("quantity", drop.getQuantity());
+                generator.writeEndObject();
+            }
+        }
+        generator.writeEndArray();
+        generator.writeNumberField("timestamp", itemDrop.getTimestamp());
+        generator.writeStringField("source", itemDrop.getSource());
+        generator.writeStringField("version", itemDrop.getVersion());
+        generator.writeStringField("userHash", userHasher.hash(itemDrop.getUserID()));
+        generator.writeEndObject();
+        generator.close();
+        writer.write('\n');
+    }
+
+    private void writeCsvRecord(Writer writer, ItemDrop itemDrop, UserHasher userHasher) throws IOException {
+        String drops = itemDrop.getDrops() == null ? ""
+                : itemDrop.getDrops().stream().map(drop -> drop.getItemId() + ":" + drop.getQuantity())
+                        .collect(Collectors.joining(";"));
+        writer.write(itemDrop.getId().toHexString());
+        writer.write(',');
+        writer.write(escapeCsv(itemDrop.getStageId()));
+        writer.write(',');
+        writer.write(itemDrop.getServer().name());
+        writer.write(',');
+        writer.write(String.valueOf(itemDrop.getTimes()));
+        writer.write(',');
+        writer.write(escapeCsv(drops));
+        writer.write(',');
+        writer.write(String.valueOf(itemDrop.getTimestamp()));
+        writer.write(',');
+        writer.write(escapeCsv(itemDrop.getSource()));
+        writer.write(',');
+        writer.write(escapeCsv(itemDrop.getVersion()));
+        writer.write(',');
+        writer.write(userHasher.hash(itemDrop.getUserID()));
+        writer.write('\n');
+    }
+
+    private String escapeCsv(String value) {
+        if (value == null)
+            return "";
+        if (StringUtils.containsAny(value, ',', '"', '\n', '\r'))
+            return "\"" + value.replace("\"", "\"\"") + "\"";
+        return value;
+    }
+
+    /**
+     * Hashes userIDs with a secret salt, so that records of the same user can be linked without revealing the user.
+     * Heavy users appear in many consecutive records, so recent hashes are memoized.
+     */
+    private static class UserHasher {
+
+        private final String salt;
+
+        private final Map<String, String> cache = new LinkedHashMap<String, String>(16, 0.75f, true) {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                return size() > USER_HASH_CACHE_SIZE;
+            }
+
+        };
+
+        private UserHasher(String salt) {
+            this.salt = salt;
+        }
+
+        private String hash(String userID) {
+            if (userID == null)
+                return "";
+            return cache.computeIfAbsent(userID, k -> {
+                try {
+                    return HashUtil.getHash(salt + k);
+                } catch (NoSuchAlgorithmException e) {
+                    throw new ServiceException(e);
+                }
+            });
+        }
+
+    }
+
+}
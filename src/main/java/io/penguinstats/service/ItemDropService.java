@@ -4,6 +4,7 @@ import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
+import org.bson.types.ObjectId;
 import org.springframework.cache.annotation.CachePut;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.data.domain.Page;
@@ -31,12 +32,16 @@ public interface ItemDropService {
 
     Page<ItemDrop> getVisibleItemDropsByUserID(String userID, Pageable pageable);
 
+    List<ItemDrop> getReportHistory(String userID, Long beforeTimestamp, ObjectId beforeId, int limit);
+
     List<ItemDrop> getItemDropsByUserID(String userID);
 
     Page<ItemDrop> getValidItemDropsByStageId(String stageId, Pageable pageable);
 
     List<ItemDrop> getItemDropsByMD5(String md5);
 
+    void archiveItemDrops();
+
     @Cacheable(value = CacheValue.TOTAL_STAGE_TIMES_MAP, key = "#server + (#range == null ? '' : ('_' + #range))",
             condition = "#filter == null", sync = true)
     Map<String, Integer> getTotalStageTimesMap(Server server, Long range);
@@ -1,17 +1,17 @@
 package io.penguinstats.service;
 
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.stream.Collectors;
 
 import org.bson.Document;
+import org.bson.types.ObjectId;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
-import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 
 import io.penguinstats.constant.Constant.LastUpdateMapKeyName;
@@ -29,33 +29,56 @@ public class ItemDropServiceImpl implements ItemDropService {
 
     @Autowired
     private ItemDropDao itemDropDao;
+    @Autowired
+    private UserUploadStatsService userUploadStatsService;
+    @Autowired
+    private PersonalMatrixService personalMatrixService;
+    @Autowired
+    private CustomQueryCacheService customQueryCacheService;
+    @Autowired
+    private DropSampleService dropSampleService;
+    @Autowired
+    private DropTimeIndexService dropTimeIndexService;
 
     @Override
     public void saveItemDrop(ItemDrop itemDrop) {
         itemDropDao.save(itemDrop);
+        userUploadStatsService.recordUploads(Collections.singletonList(itemDrop));
+        personalMatrixService.applyReports(Collections.singletonList(itemDrop));
+        dropSampleService.offerReports(Collections.singletonList(itemDrop));
     }
 
     @Override
     public void batchSaveItemDrops(Collection<ItemDrop> itemDrops) {
         itemDropDao.saveAll(itemDrops);
+        userUploadStatsService.recordUploads(itemDrops);
+        personalMatrixService.applyReports(itemDrops);
+        dropSampleService.offerReports(itemDrops);
     }
 
     @Override
     public void deleteItemDrop(String userID, String itemDropId) throws Exception {
         ItemDrop itemDrop = itemDropDao.findById(itemDropId).orElse(null);
-        if (itemDrop == null || !itemDrop.getUserID().equals(userID)) {
+        if (itemDrop == null || itemDrop.getUserID() == null || !itemDrop.getUserID().equals(userID)) {
             throw new BusinessException(ErrorCode.NOT_FOUND,
                     "ItemDrop[" + itemDropId + "] not found for user with ID[" + userID + "]", Optional.empty());
         }
 
+        // Only the caller that actually sets the flag applies the removal, so a repeated or concurrent delete or
+        // recall never counts it twice.
+        if (Boolean.TRUE.equals(itemDrop.getIsDeleted()) || !itemDropDao.markDeleted(itemDrop.getId()))
+            return;
         itemDrop.setIsDeleted(true);
-        itemDropDao.save(itemDrop);
+        userUploadStatsService.recordRemoval(itemDrop);
+        personalMatrixService.applyRemoval(itemDrop);
+        dropTimeIndexService.applyRemoval(itemDrop);
+        if (Boolean.TRUE.equals(itemDrop.getIsReliable()))
+            customQueryCacheService.invalidateStage(itemDrop.getServer(), itemDrop.getStageId());
     }
 
     @Override
     public void recallItemDrop(String userID, String itemDropHashId) throws Exception {
-        Pageable pageable = PageRequest.of(0, 1, new Sort(Sort.Direction.DESC, "timestamp"));
-        List<ItemDrop> itemDropList = getVisibleItemDropsByUserID(userID, pageable).getContent();
+        List<ItemDrop> itemDropList = getReportHistory(userID, null, null, 1);
         if (itemDropList.size() == 0) {
             throw new BusinessException(ErrorCode.NOT_FOUND,
                     "Visible ItemDrop not found for user with ID[" + userID + "]", Optional.empty());
@@ -68,8 +91,16 @@ public class ItemDropServiceImpl implements ItemDropService {
                     Optional.ofNullable(itemDropHashId));
         }
 
-        lastItemDrop.setIsDeleted(true);
-        itemDropDao.save(lastItemDrop);
+        // The report is loaded without ip and screenshot metadata, so only the flag is updated here.
+        if (!itemDropDao.markDeleted(lastItemDrop.getId())) {
+            throw new BusinessException(ErrorCode.NOT_FOUND,
+                    "Visible ItemDrop not found for user with ID[" + userID + "]", Optional.empty());
+        }
+        userUploadStatsService.recordRemoval(lastItemDrop);
+        personalMatrixService.applyRemoval(lastItemDrop);
+        dropTimeIndexService.applyRemoval(lastItemDrop);
+        if (Boolean.TRUE.equals(lastItemDrop.getIsReliable()))
+            customQueryCacheService.invalidateStage(lastItemDrop.getServer(), lastItemDrop.getStageId());
     }
 
     @Override
@@ -92,6 +123,11 @@ public class ItemDropServiceImpl implements ItemDropService {
         return itemDropDao.findByIsDeletedAndUserID(false, userID, pageable);
     }
 
+    @Override
+    public List<ItemDrop> getReportHistory(String userID, Long beforeTimestamp, ObjectId beforeId, int limit) {
+        return itemDropDao.findHistoryByUserID(userID, beforeTimestamp, beforeId, limit);
+    }
+
     @Override
     public List<ItemDrop> getItemDropsByUserID(String userID) {
         return itemDropDao.findByUserID(userID);
@@ -107,6 +143,11 @@ public class ItemDropServiceImpl implements ItemDropService {
         return itemDropDao.findByMD5(md5);
     }
 
+    @Override
+    public void archiveItemDrops() {
+        itemDropDao.archiveItemDrops();
+    }
+
     @Override
     public Map<String, Integer> getTotalStageTimesMap(Server server, Long range) {
         QueryConditions conditions = new QueryConditions().addServer(server).setRange(range);
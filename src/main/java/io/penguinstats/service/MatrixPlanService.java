@@ -0,0 +1,10 @@
+package io.penguinstats.service;
+
+import io.penguinstats.enums.Server;
+import io.penguinstats.model.MatrixPlan;
+
+public interface MatrixPlanService {
+
+    MatrixPlan getPlan(Server server);
+
+}
@@ -0,0 +1,71 @@
+package io.penguinstats.service;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import io.penguinstats.enums.Server;
+import io.penguinstats.model.MatrixPlan;
+import io.penguinstats.model.TimeRange;
+import io.penguinstats.util.index.DropInfoIntervalIndex;
+import lombok.extern.log4j.Log4j2;
+
+@Log4j2
+@Service("matrixPlanService")
+public class MatrixPlanServiceImpl implements MatrixPlanService {
+
+    @Autowired
+    private TimeRangeService timeRangeService;
+    @Autowired
+    private DropInfoIndexService dropInfoIndexService;
+
+    private final Map<Server, Entry> entries = new EnumMap<>(Server.class);
+
+    /**
+     * @Title: getPlan
+     * @Description: Get the compiled matrix plan of the server. A plan is compiled against one DropInfo index, which
+     *               is only replaced when DropInfos or time ranges change, so it is recompiled then and when a time
+     *               range boundary has passed.
+     * @param server
+     * @return MatrixPlan
+     */
+    @Override
+    public MatrixPlan getPlan(Server server) {
+        DropInfoIntervalIndex index = dropInfoIndexService.getIndex(server);
+        long now = System.currentTimeMillis();
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(server);
+        }
+        if (entry != null && entry.index == index && !entry.plan.isExpired(now))
+            return entry.plan;
+
+        Map<String, Map<String, List<String>>> latestMaxAccumulatableTimeRangesMap =
+                timeRangeService.getLatestMaxAccumulatableTimeRangesMapByServer(server);
+        Map<String, TimeRange> timeRangeMap = timeRangeService.getTimeRangeMap();
+        MatrixPlan plan = MatrixPlan.compile(server, latestMaxAccumulatableTimeRangesMap, timeRangeMap, now);
+        synchronized (entries) {
+            entries.put(server, new Entry(index, plan));
+        }
+        log.debug("matrix plan of server {} is compiled in {} ms, {} past slices, {} current slices", server,
+                System.currentTimeMillis() - now, plan.getPastSlices().size(), plan.getCurrentSlices().size());
+        return plan;
+    }
+
+    private static class Entry {
+
+        private final DropInfoIntervalIndex index;
+
+        private final MatrixPlan plan;
+
+        private Entry(DropInfoIntervalIndex index, MatrixPlan plan) {
+            this.index = index;
+            this.plan = plan;
+        }
+
+    }
+
+}
@@ -38,7 +38,7 @@ public class PatternMatrixElementServiceImpl implements PatternMatrixElementServ
 
 	@Override
 	public void batchSave(Collection<PatternMatrixElement> elements) {
-		patternMatrixElementDao.saveAll(elements);
+		patternMatrixElementDao.bulkInsert(elements);
 	}
 
 	@Override
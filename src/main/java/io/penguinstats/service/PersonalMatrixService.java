@@ -0,0 +1,18 @@
+package io.penguinstats.service;
+
+import java.util.Collection;
+
+import io.penguinstats.enums.Server;
+import io.penguinstats.model.DropMatrix;
+import io.penguinstats.model.ItemDrop;
+
+public interface PersonalMatrixService {
+
+    DropMatrix getPersonalMatrix(Server server, String userID, Integer pastTimeout, Integer currentTimeout)
+            throws Exception;
+
+    void applyReports(Collection<ItemDrop> itemDrops);
+
+    void applyRemoval(ItemDrop itemDrop);
+
+}
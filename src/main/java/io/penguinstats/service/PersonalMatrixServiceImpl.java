@@ -0,0 +1,262 @@
+package io.penguinstats.service;
+
+import static java.util.stream.Collectors.groupingBy;
+import static java.util.stream.Collectors.summingInt;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import io.penguinstats.enums.Server;
+import io.penguinstats.model.Drop;
+import io.penguinstats.model.DropMatrix;
+import io.penguinstats.model.DropMatrixElement;
+import io.penguinstats.model.ItemDrop;
+import io.penguinstats.model.MatrixPlan;
+import io.penguinstats.model.TimeRange;
+import io.penguinstats.util.DropMatrixElementUtil;
+import io.penguinstats.util.QueryUtil;
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * PersonalMatrixServiceImpl keeps the personal drop matrix of recently active users in memory, as the combined past
+ * and current DropMatrix that getMatrixHelper serves.<br>
+ * A report saved or removed on this instance is applied to the cached matrix of its user as a delta, using the same
+ * plan slices and drop sets as generateGlobalDropMatrixElements, so a repeat visit does not aggregate the whole
+ * history of the user again. A removal which empties a cell drops the entry instead, because a full build has no
+ * cell for a stage without reports.<br>
+ * Entries are rebuilt when the matrix plan of the server is recompiled, which only happens when DropInfos or time
+ * ranges change or a range boundary passes, and after personal-matrix.ttl so that reports written by other instances
+ * show up. They are evicted in LRU order once the estimated size of all entries exceeds
+ * personal-matrix.max-bytes.
+ */
+@Log4j2
+@Service("personalMatrixService")
+public class PersonalMatrixServiceImpl implements PersonalMatrixService {
+
+    /**
+     * Estimated bytes of one cell: seven primitive arrays and the position map of DropMatrix.
+     */
+    private static final long BYTES_PER_CELL = 64L;
+
+    private static final long BYTES_PER_ENTRY = 256L;
+
+    private static final int GENERATION_STRIPES = 1024;
+
+    @Autowired
+    private DropMatrixElementService dropMatrixElementService;
+    @Autowired
+    private MatrixPlanService matrixPlanService;
+    @Autowired
+    private DropInfoService dropInfoService;
+
+    @Value("${personal-matrix.ttl:600000}")
+    private long ttl;
+
+    @Value("${personal-matrix.max-bytes:67108864}")
+    private long maxBytes;
+
+    /**
+     * In access order, guarded by itself. An entry is guarded by itself.
+     */
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long totalBytes = 0L;
+
+    /**
+     * Bumped by every delta of a user in the stripe. A build which sees its stripe bumped may have missed a report,
+     * so its result is returned but not cached. It is also part of the single-flight key of a build, so a result
+     * computed before a report is never reused after it.
+     */
+    private final AtomicLongArray generations = new AtomicLongArray(GENERATION_STRIPES);
+
+    /**
+     * @Title: getPersonalMatrix
+     * @Description: Get the personal matrix of the user, past and current combined. The result is a copy which the
+     *               caller may keep.
+     * @param server
+     * @param userID
+     * @param pastTimeout In minutes, null for no timeout.
+     * @param currentTimeout In minutes, null for no timeout.
+     * @return DropMatrix
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public DropMatrix getPersonalMatrix(Server server, String userID, Integer pastTimeout, Integer currentTimeout)
+            throws Exception {
+        String key = keyOf(server, userID);
+        MatrixPlan plan = matrixPlanService.getPlan(server);
+        long now = System.currentTimeMillis();
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(key);
+        }
+        if (entry != null && entry.plan == plan && now - entry.createdAt < ttl) {
+            synchronized (entry) {
+                return entry.matrix.copy();
+            }
+        }
+
+        int stripe = stripeOf(key);
+        long generation = generations.get(stripe);
+        Object pastKey = QueryUtil.keyOf("personalMatrix", server, userID, true, generation);
+        List<DropMatrixElement> pastElements = (List<DropMatrixElement>)QueryUtil.runQuery(pastKey,
+                () -> dropMatrixElementService.generateGlobalDropMatrixElements(server, userID, true), pastTimeout);
+        Object currentKey = QueryUtil.keyOf("personalMatrix", server, userID, false, generation);
+        List<DropMatrixElement> currentElements = (List<DropMatrixElement>)QueryUtil.runQuery(currentKey,
+                () -> dropMatrixElementService.generateGlobalDropMatrixElements(server, userID, false),
+                currentTimeout);
+        DropMatrix matrix = DropMatrixElementUtil.combineIntoMatrix(pastElements, currentElements);
+
+        Entry built = new Entry(server, plan, now, matrix.copy());
+        synchronized (entries) {
+            if (generations.get(stripe) == generation) {
+                Entry old = entries.put(key, built);
+                if (old != null)
+                    totalBytes -= old.bytes;
+                totalBytes += built.bytes;
+                evictOverBudget();
+            }
+        }
+        return matrix;
+    }
+
+    @Override
+    public void applyReports(Collection<ItemDrop> itemDrops) {
+        for (ItemDrop itemDrop : itemDrops)
+            apply(itemDrop, 1);
+    }
+
+    @Override
+    public void applyRemoval(ItemDrop itemDrop) {
+        apply(itemDrop, -1);
+    }
+
+    private void apply(ItemDrop itemDrop, int sign) {
+        if (itemDrop.getUserID() == null || itemDrop.getServer() == null || itemDrop.getStageId() == null
+                || itemDrop.getTimestamp() == null)
+            return;
+        String key = keyOf(itemDrop.getServer(), itemDrop.getUserID());
+        generations.incrementAndGet(stripeOf(key));
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(key);
+        }
+        if (entry == null)
+            return;
+
+        boolean valid;
+        long bytes;
+        try {
+            synchronized (entry) {
+                valid = applyDelta(entry, itemDrop, sign);
+                bytes = estimateBytes(entry.matrix);
+            }
+        } catch (Exception e) {
+            log.error("Error in applying report to personal matrix of user " + itemDrop.getUserID() + ": ", e);
+            valid = false;
+            bytes = entry.bytes;
+        }
+        synchronized (entries) {
+            if (entries.get(key) != entry)
+                return;
+            if (!valid) {
+                entries.remove(key);
+                totalBytes -= entry.bytes;
+                return;
+            }
+            totalBytes += bytes - entry.bytes;
+            entry.bytes = bytes;
+            evictOverBudget();
+        }
+    }
+
+    /**
+     * @Title: applyDelta
+     * @Description: Add the report to every cell a full build would count it in, times sign.
+     * @return boolean false if the entry can no longer be kept.
+     */
+    private boolean applyDelta(Entry entry, ItemDrop itemDrop, int sign) {
+        String stageId = itemDrop.getStageId();
+        long timestamp = itemDrop.getTimestamp();
+        int times = itemDrop.getTimes() == null ? 0 : itemDrop.getTimes();
+        Map<String, Integer> quantities = itemDrop.getDrops() == null ? Collections.emptyMap()
+                : itemDrop.getDrops().stream().collect(groupingBy(Drop::getItemId, summingInt(Drop::getQuantity)));
+        long now = System.currentTimeMillis();
+        for (boolean isPast : new boolean[] {true, false}) {
+            for (MatrixPlan.Slice slice : entry.plan.getSlices(isPast)) {
+                MatrixPlan.StageSlice stageSlice = slice.getStages().get(stageId);
+                if (stageSlice == null || !stageSlice.getRange().isIn(timestamp))
+                    continue;
+                TimeRange range = stageSlice.getRange();
+                Set<String> dropSet = dropInfoService.getDropSet(entry.server, stageId, range.getStart());
+                if (dropSet == null)
+                    continue;
+                for (String itemId : stageSlice.getItemIds()) {
+                    if (!dropSet.contains(itemId))
+                        continue;
+                    entry.matrix.add(stageId, itemId, sign * quantities.getOrDefault(itemId, 0), sign * times,
+                            range.getStart(), range.getEnd(), now, isPast);
+                    if (sign < 0 && entry.matrix.getTimes(entry.matrix.positionOf(stageId, itemId)) <= 0)
+                        return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private void evictOverBudget() {
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (totalBytes > maxBytes && iterator.hasNext()) {
+            totalBytes -= iterator.next().bytes;
+            iterator.remove();
+        }
+    }
+
+    private static String keyOf(Server server, String userID) {
+        return server + ":" + userID;
+    }
+
+    private static int stripeOf(String key) {
+        return (key.hashCode() & Integer.MAX_VALUE) % GENERATION_STRIPES;
+    }
+
+    private static long estimateBytes(DropMatrix matrix) {
+        return BYTES_PER_ENTRY + BYTES_PER_CELL * matrix.size();
+    }
+
+    private static class Entry {
+
+        private final Server server;
+
+        private final MatrixPlan plan;
+
+        private final long createdAt;
+
+        private final DropMatrix matrix;
+
+        /**
+         * Guarded by entries.
+         */
+        private long bytes;
+
+        private Entry(Server server, MatrixPlan plan, long createdAt, DropMatrix matrix) {
+            this.server = server;
+            this.plan = plan;
+            this.createdAt = createdAt;
+            this.matrix = matrix;
+            this.bytes = estimateBytes(matrix);
+        }
+
+    }
+
+}
@@ -0,0 +1,12 @@
+package io.penguinstats.service;
+
+import io.penguinstats.enums.Server;
+import io.penguinstats.model.ReferenceBundle;
+
+public interface ReferenceBundleService {
+
+    ReferenceBundle getBundle(Server server);
+
+    void invalidate();
+
+}
@@ -0,0 +1,174 @@
+package io.penguinstats.service;
+
+import java.io.IOException;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.penguinstats.constant.Constant.LastUpdateMapKeyName;
+import io.penguinstats.enums.DropType;
+import io.penguinstats.enums.Server;
+import io.penguinstats.model.DropInfo;
+import io.penguinstats.model.EncodedDocument;
+import io.penguinstats.model.Formula;
+import io.penguinstats.model.ReferenceBundle;
+import io.penguinstats.model.Stage;
+import io.penguinstats.model.Zone;
+import io.penguinstats.util.LastUpdateTimeUtil;
+import io.penguinstats.util.exception.ServiceException;
+import io.penguinstats.util.index.DropInfoIntervalIndex;
+import lombok.extern.log4j.Log4j2;
+
+@Log4j2
+@Service("referenceBundleService")
+public class ReferenceBundleServiceImpl implements ReferenceBundleService {
+
+    @Autowired
+    private ItemService itemService;
+    @Autowired
+    private StageService stageService;
+    @Autowired
+    private ZoneService zoneService;
+    @Autowired
+    private DropInfoService dropInfoService;
+    @Autowired
+    private DropInfoIndexService dropInfoIndexService;
+    @Autowired
+    private EventPeriodService eventPeriodService;
+    @Autowired
+    private NoticeService noticeService;
+    @Autowired
+    private FrontendConfigService frontendConfigService;
+    @Autowired
+    private FormulaService formulaService;
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    /**
+     * Caches may be evicted through another instance, which this instance cannot see. Bundles older than this are
+     * rebuilt from the caches; the ETag stays the same if nothing has changed.
+     */
+    @Value("${bundle.max-age:60000}")
+    private long maxAge;
+
+    private final Map<Server, Entry> entries = new EnumMap<>(Server.class);
+
+    /**
+     * @Title: getBundle
+     * @Description: Get the reference bundle of the server. It is rebuilt after invalidate() is called, when the
+     *               DropInfo index is rebuilt or formula is reloaded, when opening drop infos change, or when it is
+     *               older than bundle.max-age.
+     * @param server
+     * @return ReferenceBundle
+     */
+    @Override
+    public ReferenceBundle getBundle(Server server) {
+        DropInfoIntervalIndex index = dropInfoIndexService.getIndex(server);
+        long now = System.currentTimeMillis();
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(server);
+        }
+        List<Formula> formulas = formulaService.getFormulas();
+        if (entry != null && entry.index == index && entry.formulas == formulas && !entry.bundle.isExpired(now)
+                && now - entry.buildTime <= maxAge)
+            return entry.bundle;
+
+        ReferenceBundle bundle = build(server, index, formulas, now);
+        synchronized (entries) {
+            entries.put(server, new Entry(index, formulas, bundle, now));
+        }
+        log.debug("reference bundle of server {} is rebuilt in {} ms, {} bytes, {} bytes gzipped", server,
+                System.currentTimeMillis() - now, bundle.getDocument().getJson().length,
+                bundle.getDocument().getGzipped().length);
+        return bundle;
+    }
+
+    @Override
+    public void invalidate() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    private ReferenceBundle build(Server server, DropInfoIntervalIndex index, List<Formula> formulas, long now) {
+        Map<String, Object> document = new LinkedHashMap<>();
+        document.put("server", server);
+        document.put("items", itemService.getAllItems());
+        document.put("stages", getStagesWithDropInfos(server, now));
+        List<Zone> zones = zoneService.getAllZones();
+        zones.forEach(Zone::toNewView);
+        document.put("zones", zones);
+        document.put("periods", eventPeriodService.getAllSortedEventPeriod());
+        document.put("notices", noticeService.getAllNotice());
+        document.put("configs", frontendConfigService.getFrontendConfigMap());
+        document.put("formula", formulas);
+
+        try {
+            byte[] json = objectMapper.writeValueAsBytes(document);
+            long lastModified = Arrays
+                    .asList(LastUpdateMapKeyName.ITEM_LIST, LastUpdateMapKeyName.STAGE_LIST,
+                            LastUpdateMapKeyName.DROP_INFO_LIST + "_" + server, LastUpdateMapKeyName.ZONE_LIST,
+                            LastUpdateMapKeyName.EVENT_PERIOD_LIST, LastUpdateMapKeyName.NOTICE_LIST,
+                            LastUpdateMapKeyName.FRONTEND_CONFIG_MAP)
+                    .stream().mapToLong(LastUpdateTimeUtil::getLastUpdateTime).filter(time -> time >= 0).max()
+                    .orElse(now);
+            return new ReferenceBundle(server, EncodedDocument.of(json), lastModified, index.getNextBreakpoint(now));
+        } catch (IOException | NoSuchAlgorithmException e) {
+            throw new ServiceException(e);
+        }
+    }
+
+    /**
+     * Same view as GET /api/v2/stages.
+     */
+    private List<Stage> getStagesWithDropInfos(Server server, long now) {
+        List<Stage> stages = stageService.getAllStages();
+        Map<String, List<DropInfo>> dropInfosMap = dropInfoService.getOpeningDropInfosMap(server, now, false);
+        for (Stage stage : stages) {
+            List<DropInfo> infos = dropInfosMap.get(stage.getStageId());
+            if (infos == null || infos.isEmpty())
+                continue;
+            infos.forEach(DropInfo::toStageView);
+            stage.setDropInfos(infos.stream().filter(info -> DropType.RECOGNITION_ONLY != info.getDropType())
+                    .collect(Collectors.toList()));
+            List<String> recognitionOnly = infos.stream()
+                    .filter(info -> DropType.RECOGNITION_ONLY == info.getDropType()).map(DropInfo::getItemId)
+                    .collect(Collectors.toList());
+            if (!recognitionOnly.isEmpty())
+                stage.setRecognitionOnly(recognitionOnly);
+        }
+        stages.forEach(Stage::toNewView);
+        return stages;
+    }
+
+    private static class Entry {
+
+        private final DropInfoIntervalIndex index;
+
+        private final List<Formula> formulas;
+
+        private final ReferenceBundle bundle;
+
+        private final long buildTime;
+
+        private Entry(DropInfoIntervalIndex index, List<Formula> formulas, ReferenceBundle bundle, long buildTime) {
+            this.index = index;
+            this.formulas = formulas;
+            this.bundle = bundle;
+            this.buildTime = buildTime;
+        }
+
+    }
+
+}
@@ -31,11 +31,14 @@ public class TimeRangeServiceImpl implements TimeRangeService {
     @Autowired
     private DropInfoService dropInfoService;
     @Autowired
+    private DropInfoIndexService dropInfoIndexService;
+    @Autowired
     private ApplicationContext applicationContext;
 
     @Override
     public void saveTimeRange(TimeRange timeRange) {
         timeRangeDao.save(timeRange);
+        dropInfoIndexService.invalidate();
     }
 
     @Override
@@ -165,11 +168,8 @@ public class TimeRangeServiceImpl implements TimeRangeService {
 
     @Override
     public List<TimeRange> getSplittedTimeRanges(Server server, String stageId, Long start, Long end) {
-        Map<String, TimeRange> timeRangeMap = getSpringProxy().getTimeRangeMap();
-        List<DropInfo> infos = dropInfoService.getDropInfosByServerAndStageId(server, stageId);
         TimeRange givenTimeRange = new TimeRange(start, end);
-        return infos.stream().filter(info -> DropType.RECOGNITION_ONLY != info.getDropType())
-                .map(info -> timeRangeMap.get(info.getTimeRangeID())).filter(range -> range != null).distinct()
+        return dropInfoIndexService.getIndex(server).getTimeRanges(stageId).stream()
                 .map(range -> range.intersection(givenTimeRange)).filter(range -> range != null)
                 .collect(Collectors.toList());
     }
@@ -3,9 +3,10 @@ package io.penguinstats.service;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Optional;
-import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
@@ -43,27 +44,25 @@ public class UserServiceImpl implements UserService {
 
     /**
      * @param ip Initial IP
-     * @return String Newly-created userID. If MAX_RETRY_TIME is exceeded, null will be returned and no new user was
-     * created.
+     * @return String Newly-created userID.
      * @Title: createNewUser
-     * @Description: Create a new user with random userID.
+     * @Description: Create a new user with random userID. userID has a unique index, so the user is inserted directly
+     * and a new userID is tried only when the insert hits a duplicate key. If MAX_RETRY_TIME is exceeded, no new user
+     * is created and ServiceException is thrown.
      */
     @Override
     public String createNewUser(String ip) {
-        String userID = generateUserID();
-        int times = 0;
-        while (times < MAX_RETRY_TIME) {
-            userID = generateUserID();
-            if (getUserByUserID(userID) == null)
-                break;
-            times++;
+        for (int times = 0; times < MAX_RETRY_TIME; times++) {
+            String userID = generateUserID();
+            try {
+                insertUser(userID, ip);
+                return userID;
+            } catch (DuplicateKeyException e) {
+                log.warn("userID " + userID + " is taken, retry");
+            }
         }
-        if (times == MAX_RETRY_TIME) {
-            log.error("Failed to create new user.");
-            throw new ServiceException(ErrorCode.CANNOT_CREATE_USER, "Failed to create new user.", Optional.empty());
-        }
-
-        return createNewUser(userID, ip);
+        log.error("Failed to create new user.");
+        throw new ServiceException(ErrorCode.CANNOT_CREATE_USER, "Failed to create new user.", Optional.empty());
     }
 
     /**
@@ -71,16 +70,25 @@ public class UserServiceImpl implements UserService {
      * @param ip
      * @return String
      * @Title: createNewUser
-     * @Description: Create a new user with indicated userID.
+     * @Description: Create a new user with indicated userID. If the user has been created concurrently, the existing
+     * one is kept.
      */
     @Override
     public String createNewUser(String userID, String ip) {
-        saveUser(new User(null, userID, 1.0, new ArrayList<>(), ip != null ? Arrays.asList(ip) : new ArrayList<>(),
-                null, System.currentTimeMillis(), null, null));
-        log.info("new user " + userID + " is created");
+        try {
+            insertUser(userID, ip);
+        } catch (DuplicateKeyException e) {
+            log.warn("user " + userID + " already exists");
+        }
         return userID;
     }
 
+    private void insertUser(String userID, String ip) {
+        mongoTemplate.insert(new User(null, userID, 1.0, new ArrayList<>(),
+                ip != null ? Arrays.asList(ip) : new ArrayList<>(), null, System.currentTimeMillis(), 0, 0));
+        log.info("new user " + userID + " is created");
+    }
+
     /**
      * @param userID
      * @param ip
@@ -117,8 +125,8 @@ public class UserServiceImpl implements UserService {
      * @Description: Generate a userID. UserID now is a string of 8-digit integer.
      */
     private String generateUserID() {
-        StringBuilder sb = new StringBuilder();
-        Random random = new Random();
+        StringBuilder sb = new StringBuilder(DIGITS);
+        ThreadLocalRandom random = ThreadLocalRandom.current();
         for (int i = 0; i < DIGITS; i++) {
             sb.append(random.nextInt(10));
         }
@@ -0,0 +1,21 @@
+package io.penguinstats.service;
+
+import java.util.Collection;
+import java.util.List;
+
+import io.penguinstats.enums.Server;
+import io.penguinstats.model.ItemDrop;
+import io.penguinstats.model.User;
+import io.penguinstats.model.UserStageTimes;
+
+public interface UserUploadStatsService {
+
+    void recordUploads(Collection<ItemDrop> itemDrops);
+
+    void recordRemoval(ItemDrop itemDrop);
+
+    User getUploadCounters(String userID);
+
+    List<UserStageTimes> getStageTimes(String userID, Server server);
+
+}
@@ -0,0 +1,137 @@
+package io.penguinstats.service;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.PostConstruct;
+
+import org.apache.commons.lang3.tuple.Triple;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import io.penguinstats.constant.Constant.SystemPropertyKey;
+import io.penguinstats.dao.UserStageTimesDao;
+import io.penguinstats.enums.Server;
+import io.penguinstats.model.ItemDrop;
+import io.penguinstats.model.SystemProperty;
+import io.penguinstats.model.User;
+import io.penguinstats.model.UserStageTimes;
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * Upload counters of a user (totalUpload and reliableUpload in User) and the per-stage rollup in UserStageTimes are
+ * kept up to date with $inc when reports are saved or removed. All increments of one call go into a single unordered
+ * bulk write, so a recognition upload of many reports costs one round trip.<br>
+ * Counting is best effort: a failed write is logged and never fails the upload itself.<br>
+ * Counting started at the time in the system property upload_counters_since, which is recorded by the first instance
+ * that starts. Reports saved before it were never counted, so removing them does not decrement anything.
+ */
+@Log4j2
+@Service("userUploadStatsService")
+public class UserUploadStatsServiceImpl implements UserUploadStatsService {
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+    @Autowired
+    private UserStageTimesDao userStageTimesDao;
+
+    private long countingSince;
+
+    @PostConstruct
+    public void init() {
+        Query query = new Query(Criteria.where("key").is(SystemPropertyKey.UPLOAD_COUNTERS_SINCE));
+        mongoTemplate.upsert(query, new Update().setOnInsert("value", String.valueOf(System.currentTimeMillis())),
+                SystemProperty.class);
+        countingSince = Long.parseLong(mongoTemplate.findOne(query, SystemProperty.class).getValue());
+        log.info("Upload counters are maintained since " + countingSince);
+    }
+
+    @Override
+    public void recordUploads(Collection<ItemDrop> itemDrops) {
+        apply(itemDrops, 1);
+    }
+
+    @Override
+    public void recordRemoval(ItemDrop itemDrop) {
+        if (!isCounted(itemDrop, countingSince))
+            return;
+        apply(Collections.singletonList(itemDrop), -1);
+    }
+
+    @Override
+    public User getUploadCounters(String userID) {
+        Query query = new Query(Criteria.where("userID").is(userID));
+        query.fields().include("userID").include("totalUpload").include("reliableUpload");
+        return mongoTemplate.findOne(query, User.class);
+    }
+
+    @Override
+    public List<UserStageTimes> getStageTimes(String userID, Server server) {
+        return server == null ? userStageTimesDao.findByUserID(userID)
+                : userStageTimesDao.findByUserIDAndServer(userID, server);
+    }
+
+    /**
+     * @Title: isCounted
+     * @Description: Whether the report was saved after counting started. Ids are generated at save time, but only
+     *               carry seconds, so reports of the second in which counting started are taken as counted.
+     * @param itemDrop
+     * @param countingSince epoch milliseconds at which counting started.
+     */
+    static boolean isCounted(ItemDrop itemDrop, long countingSince) {
+        return itemDrop.getId() != null && itemDrop.getId().getTimestamp() >= countingSince / 1000;
+    }
+
+    /**
+     * @Title: apply
+     * @Description: Sum up the reports by user and by (user, server, stage), then write the sums multiplied by sign.
+     * @param itemDrops
+     * @param sign 1 for saved reports, -1 for removed ones.
+     */
+    private void apply(Collection<ItemDrop> itemDrops, int sign) {
+        Map<String, int[]> userCounts = new LinkedHashMap<>();
+        Map<Triple<String, Server, String>, int[]> stageCounts = new LinkedHashMap<>();
+        for (ItemDrop itemDrop : itemDrops) {
+            String userID = itemDrop.getUserID();
+            if (userID == null || itemDrop.getStageId() == null || itemDrop.getServer() == null)
+                continue;
+            int times = itemDrop.getTimes() == null ? 0 : itemDrop.getTimes();
+            int[] userCount = userCounts.computeIfAbsent(userID, k -> new int[2]);
+            userCount[0]++;
+            if (Boolean.TRUE.equals(itemDrop.getIsReliable()))
+                userCount[1]++;
+            int[] stageCount = stageCounts.computeIfAbsent(
+                    Triple.of(userID, itemDrop.getServer(), itemDrop.getStageId()), k -> new int[2]);
+            stageCount[0] += times;
+            stageCount[1]++;
+        }
+        if (userCounts.isEmpty())
+            return;
+
+        try {
+            BulkOperations userOps = mongoTemplate.bulkOps(BulkMode.UNORDERED, User.class);
+            userCounts.forEach((userID, count) -> userOps.updateOne(new Query(Criteria.where("userID").is(userID)),
+                    new Update().inc("totalUpload", sign * count[0]).inc("reliableUpload", sign * count[1])));
+            userOps.execute();
+
+            BulkOperations stageOps = mongoTemplate.bulkOps(BulkMode.UNORDERED, UserStageTimes.class);
+            stageCounts.forEach((key, count) -> stageOps.upsert(
+                    new Query(Criteria.where("userID").is(key.getLeft()).and("server").is(key.getMiddle())
+                            .and("stageId").is(key.getRight())),
+                    new Update().inc("times", sign * count[0]).inc("reports", sign * count[1])));
+            stageOps.execute();
+        } catch (Exception e) {
+            log.error("Error in updating upload stats of users " + userCounts.keySet() + ": ", e);
+        }
+    }
+
+}
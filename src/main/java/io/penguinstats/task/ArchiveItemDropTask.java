@@ -0,0 +1,30 @@
+package io.penguinstats.task;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import io.penguinstats.service.ItemDropService;
+import lombok.extern.log4j.Log4j2;
+
+@Log4j2
+@Component
+public class ArchiveItemDropTask implements Task {
+
+    private static ExecutorService singleThreadExecutor = Executors.newSingleThreadExecutor();
+
+    @Autowired
+    private ItemDropService itemDropService;
+
+    @Scheduled(fixedRate = 86400000, initialDelay = 1800000)
+    @Override
+    public void execute() {
+        log.info("execute ArchiveItemDropTask");
+
+        singleThreadExecutor.execute(() -> itemDropService.archiveItemDrops());
+    }
+
+}
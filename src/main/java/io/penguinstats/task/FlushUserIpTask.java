@@ -0,0 +1,27 @@
+package io.penguinstats.task;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import io.penguinstats.dao.UserIpWriteCoalescer;
+import lombok.extern.log4j.Log4j2;
+
+@Log4j2
+@Component
+public class FlushUserIpTask implements Task {
+
+    @Autowired
+    private UserIpWriteCoalescer userIpWriteCoalescer;
+
+    @Scheduled(fixedRate = 10000, initialDelay = 10000)
+    @Override
+    public void execute() {
+        try {
+            userIpWriteCoalescer.flush();
+        } catch (Exception e) {
+            log.error("Error in FlushUserIpTask: ", e);
+        }
+    }
+
+}
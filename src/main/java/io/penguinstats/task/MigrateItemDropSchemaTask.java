@@ -0,0 +1,62 @@
+package io.penguinstats.task;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import io.penguinstats.dao.ItemDropDao;
+import lombok.extern.log4j.Log4j2;
+
+@Log4j2
+@Component
+public class MigrateItemDropSchemaTask implements Task {
+
+    private static final int BATCH_SIZE = 1000;
+
+    private static ExecutorService singleThreadExecutor = Executors.newSingleThreadExecutor();
+
+    @Autowired
+    private ItemDropDao itemDropDao;
+
+    @Value("${item-drop.schema.migration.enabled:false}")
+    private boolean enabled;
+
+    private volatile boolean running = false;
+
+    private volatile boolean finished = false;
+
+    @Scheduled(fixedRate = 600000, initialDelay = 120000)
+    @Override
+    public void execute() {
+        if (!enabled || running || finished)
+            return;
+        log.info("execute MigrateItemDropSchemaTask");
+
+        running = true;
+        singleThreadExecutor.execute(() -> {
+            try {
+                long total = 0L;
+                long startTime = System.currentTimeMillis();
+                int migrated;
+                while ((migrated = itemDropDao.migrateLegacyFields(BATCH_SIZE)) > 0) {
+                    total += migrated;
+                    if (total % (BATCH_SIZE * 100) == 0)
+                        log.info("{} item drops are migrated to the compact schema", total);
+                }
+                log.info("item drop schema migration is done, {} migrated in {} ms", total,
+                        System.currentTimeMillis() - startTime);
+                itemDropDao.dropLegacyIndexes();
+                finished = true;
+            } catch (Exception e) {
+                log.error("Error in MigrateItemDropSchemaTask: ", e);
+            } finally {
+                running = false;
+            }
+        });
+    }
+
+}
@@ -0,0 +1,28 @@
+package io.penguinstats.task;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import io.penguinstats.service.FormulaService;
+import lombok.extern.log4j.Log4j2;
+
+@Log4j2
+@Component
+public class ReloadFormulaTask implements Task {
+
+    @Autowired
+    private FormulaService formulaService;
+
+    @Scheduled(fixedRate = 60000, initialDelay = 60000)
+    @Override
+    public void execute() {
+        try {
+            if (formulaService.reloadIfModified())
+                log.info("formula is reloaded by ReloadFormulaTask");
+        } catch (Exception e) {
+            log.error("Error in ReloadFormulaTask: ", e);
+        }
+    }
+
+}
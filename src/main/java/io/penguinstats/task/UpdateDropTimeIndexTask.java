@@ -0,0 +1,30 @@
+package io.penguinstats.task;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import io.penguinstats.service.DropTimeIndexService;
+import lombok.extern.log4j.Log4j2;
+
+@Log4j2
+@Component
+public class UpdateDropTimeIndexTask implements Task {
+
+    private static ExecutorService singleThreadExecutor = Executors.newSingleThreadExecutor();
+
+    @Autowired
+    private DropTimeIndexService dropTimeIndexService;
+
+    @Scheduled(fixedRate = 3600000, initialDelay = 60000)
+    @Override
+    public void execute() {
+        log.info("execute UpdateDropTimeIndexTask");
+
+        singleThreadExecutor.execute(() -> dropTimeIndexService.refresh());
+    }
+
+}
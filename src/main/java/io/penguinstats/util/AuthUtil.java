@@ -2,6 +2,7 @@ package io.penguinstats.util;
 
 import java.io.UnsupportedEncodingException;
 import java.net.URLDecoder;
+import java.util.Collection;
 
 import javax.annotation.PostConstruct;
 import javax.servlet.http.HttpServletRequest;
@@ -13,6 +14,8 @@ import org.springframework.stereotype.Component;
 
 import io.penguinstats.constant.Constant.Auth;
 import io.penguinstats.constant.Constant.CustomHeader;
+import io.penguinstats.dao.UserIpWriteCoalescer;
+import io.penguinstats.model.AuthPrincipal;
 import io.penguinstats.model.User;
 import io.penguinstats.service.UserService;
 import lombok.extern.log4j.Log4j2;
@@ -21,12 +24,18 @@ import lombok.extern.log4j.Log4j2;
 @Component("authUtil")
 public class AuthUtil {
 
+    private static final String PRINCIPAL_ATTRIBUTE = AuthUtil.class.getName() + ".PRINCIPAL";
+
     private static AuthUtil authUtil;
 
     @Autowired
     private UserService userService;
     @Autowired
     private CookieUtil cookieUtil;
+    @Autowired
+    private UserIpWriteCoalescer userIpWriteCoalescer;
+    @Autowired
+    private PenguinTokenUtil penguinTokenUtil;
 
     @PostConstruct
     public void init() {
@@ -34,7 +43,44 @@ public class AuthUtil {
         authUtil.userService = this.userService;
     }
 
+    /**
+     * @Title: authUserFromRequest
+     * @Description: Get userID of the user the request is authenticated as. Same as getPrincipal(request).getUserID().
+     * @param request
+     * @return String null if not authenticated.
+     */
     public String authUserFromRequest(HttpServletRequest request) {
+        return getPrincipal(request).getUserID();
+    }
+
+    /**
+     * @Title: getPrincipal
+     * @Description: Resolve the user from the Authorization header or the userID cookie. It is done once per
+     *               request, the principal is kept in a request attribute and returned to later callers.
+     * @param request
+     * @return AuthPrincipal ANONYMOUS if not authenticated.
+     */
+    public AuthPrincipal getPrincipal(HttpServletRequest request) {
+        AuthPrincipal principal = peekPrincipal(request);
+        if (principal == null) {
+            principal = resolvePrincipal(request);
+            request.setAttribute(PRINCIPAL_ATTRIBUTE, principal);
+        }
+        return principal;
+    }
+
+    /**
+     * @Title: peekPrincipal
+     * @Description: Get the principal if it has already been resolved in this request, without resolving it. Used by
+     *               error paths, which must not look up or write the user again.
+     * @param request
+     * @return AuthPrincipal null if not resolved yet.
+     */
+    public static AuthPrincipal peekPrincipal(HttpServletRequest request) {
+        return (AuthPrincipal)request.getAttribute(PRINCIPAL_ATTRIBUTE);
+    }
+
+    private AuthPrincipal resolvePrincipal(HttpServletRequest request) {
         String authHeader = request.getHeader("Authorization");
 
         String userID = null;
@@ -50,7 +96,13 @@ public class AuthUtil {
 
             if (!StringUtils.isEmpty(decodedAuth)) {
                 decodedAuth = decodedAuth.trim();
-                if (decodedAuth.startsWith(Auth.AUTHORIZATION_REALM_PENGUIN_ID)) {
+                if (decodedAuth.startsWith(Auth.AUTHORIZATION_REALM_PENGUIN_TOKEN)) {
+                    // a valid signed token is trusted without looking the user up
+                    AuthPrincipal principal = penguinTokenUtil.verify(
+                            StringUtils.substringAfter(decodedAuth, Auth.AUTHORIZATION_REALM_PENGUIN_TOKEN).trim());
+                    if (principal != null)
+                        return principal;
+                } else if (decodedAuth.startsWith(Auth.AUTHORIZATION_REALM_PENGUIN_ID)) {
                     userID = StringUtils.substringAfter(decodedAuth, Auth.AUTHORIZATION_REALM_PENGUIN_ID).trim();
                 }
             }
@@ -61,27 +113,40 @@ public class AuthUtil {
         }
 
         if (StringUtils.isEmpty(userID)) {
-            return null;
+            return AuthPrincipal.ANONYMOUS;
         }
 
         User user = userService.getUserByUserID(userID);
         if (user == null) {
             log.warn("userID " + userID + " is not existed.");
-            userID = null;
-        } else {
-            // old user
-            String ip = IpUtil.getIpAddr(request);
-            if (ip != null && !user.containsIp(ip)) {
-                log.info("Add ip " + ip + " to user " + userID);
-                userService.addIP(userID, ip);
-            }
+            return AuthPrincipal.ANONYMOUS;
         }
 
-        return userID;
+        // old user
+        String ip = IpUtil.getIpAddr(request);
+        if (ip != null && !user.containsIp(ip)) {
+            log.info("Add ip " + ip + " to user " + userID);
+            userIpWriteCoalescer.add(userID, ip);
+        }
+        return new AuthPrincipal(userID, user.getTags());
     }
 
     public static void setUserIDHeader(HttpServletResponse response, String userID) {
         response.addHeader(CustomHeader.X_PENGUIN_SET_PENGUIN_ID, userID);
     }
 
+    /**
+     * @Title: setTokenHeader
+     * @Description: Issue a signed token for the user and send it in X-Penguin-Set-PenguinToken. Nothing is sent if
+     *               no token key is configured.
+     * @param response
+     * @param userID
+     * @param tags
+     */
+    public void setTokenHeader(HttpServletResponse response, String userID, Collection<String> tags) {
+        String token = penguinTokenUtil.issue(userID, tags);
+        if (token != null)
+            response.addHeader(CustomHeader.X_PENGUIN_SET_PENGUIN_TOKEN, token);
+    }
+
 }
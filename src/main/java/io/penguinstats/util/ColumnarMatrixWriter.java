@@ -0,0 +1,144 @@
+package io.penguinstats.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import io.penguinstats.model.DropMatrix;
+
+/**
+ * ColumnarMatrixWriter writes the matrix in a compact binary layout for machine consumers.<br>
+ * Every number is an unsigned LEB128 varint and every string is its UTF-8 byte length followed by the bytes:
+ *
+ * <pre>
+ * version (1)
+ * stageCount, stageId * stageCount
+ * itemCount, itemId * itemCount
+ * rowCount, (stageIdx, itemIdx, quantity, times, start, end) * rowCount
+ * </pre>
+ *
+ * stageIdx and itemIdx point into the two tables above, which are in order of first appearance. end is 0 for an open
+ * time range, otherwise end - start + 1.
+ */
+public class ColumnarMatrixWriter {
+
+    public static final int VERSION = 1;
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private final OutputStream out;
+
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+
+    private int length = 0;
+
+    private ColumnarMatrixWriter(OutputStream out) {
+        this.out = out;
+    }
+
+    /**
+     * @Title: writeMatrix
+     * @Description: Write the cells at the given positions. The stream is flushed but not closed.
+     * @param matrix
+     * @param positions
+     * @param count Number of positions to write.
+     * @param out
+     */
+    public static void writeMatrix(DropMatrix matrix, int[] positions, int count, OutputStream out)
+            throws IOException {
+        List<String> stageIds = new ArrayList<>();
+        List<String> itemIds = new ArrayList<>();
+        int[] stageIdxes = new int[count];
+        int[] itemIdxes = new int[count];
+        int[] localStageIdx = new int[0];
+        int[] localItemIdx = new int[0];
+        for (int i = 0; i < count; i++) {
+            int position = positions[i];
+            int stageIndex = matrix.getStageIndex(position);
+            if (stageIndex >= localStageIdx.length)
+                localStageIdx = grow(localStageIdx, stageIndex);
+            if (localStageIdx[stageIndex] < 0) {
+                localStageIdx[stageIndex] = stageIds.size();
+                stageIds.add(matrix.getStageId(position));
+            }
+            stageIdxes[i] = localStageIdx[stageIndex];
+
+            int itemIndex = matrix.getItemIndex(position);
+            if (itemIndex >= localItemIdx.length)
+                localItemIdx = grow(localItemIdx, itemIndex);
+            if (localItemIdx[itemIndex] < 0) {
+                localItemIdx[itemIndex] = itemIds.size();
+                itemIds.add(matrix.getItemId(position));
+            }
+            itemIdxes[i] = localItemIdx[itemIndex];
+        }
+
+        ColumnarMatrixWriter writer = new ColumnarMatrixWriter(out);
+        writer.writeVarint(VERSION);
+        writer.writeStrings(stageIds);
+        writer.writeStrings(itemIds);
+        writer.writeVarint(count);
+        for (int i = 0; i < count; i++) {
+            int position = positions[i];
+            long start = matrix.getStart(position);
+            Long end = matrix.getEnd(position);
+            writer.writeVarint(stageIdxes[i]);
+            writer.writeVarint(itemIdxes[i]);
+            writer.writeVarint(matrix.getQuantity(position));
+            writer.writeVarint(matrix.getTimes(position));
+            writer.writeVarint(start);
+            writer.writeVarint(end == null ? 0L : end - start + 1);
+        }
+        writer.flush();
+    }
+
+    private static int[] grow(int[] array, int index) {
+        int oldLength = array.length;
+        int[] result = Arrays.copyOf(array, Math.max(index + 1, oldLength * 2));
+        Arrays.fill(result, oldLength, result.length, -1);
+        return result;
+    }
+
+    private void writeStrings(List<String> strings) throws IOException {
+        writeVarint(strings.size());
+        for (String string : strings) {
+            byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+            writeVarint(bytes.length);
+            ensure(bytes.length);
+            if (bytes.length > BUFFER_SIZE) {
+                out.write(bytes);
+            } else {
+                System.arraycopy(bytes, 0, buffer, length, bytes.length);
+                length += bytes.length;
+            }
+        }
+    }
+
+    private void writeVarint(long value) throws IOException {
+        if (value < 0)
+            throw new IllegalArgumentException("Negative value cannot be written as unsigned varint: " + value);
+        ensure(10);
+        while ((value & ~0x7FL) != 0) {
+            buffer[length++] = (byte)((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[length++] = (byte)value;
+    }
+
+    private void ensure(int size) throws IOException {
+        if (length + size > BUFFER_SIZE) {
+            out.write(buffer, 0, length);
+            length = 0;
+        }
+    }
+
+    private void flush() throws IOException {
+        out.write(buffer, 0, length);
+        length = 0;
+        out.flush();
+    }
+
+}
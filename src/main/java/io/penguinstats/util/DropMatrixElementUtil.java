@@ -1,17 +1,13 @@
 package io.penguinstats.util;
 
-import static java.util.stream.Collectors.groupingBy;
-import static java.util.stream.Collectors.toList;
-
-import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 import io.penguinstats.enums.DropMatrixElementType;
 import io.penguinstats.enums.Server;
+import io.penguinstats.model.DropMatrix;
 import io.penguinstats.model.DropMatrixElement;
+import io.penguinstats.util.index.IdRegistry;
 
 public class DropMatrixElementUtil {
 
@@ -45,40 +41,39 @@ public class DropMatrixElementUtil {
 
 	public static List<DropMatrixElement> combineElementLists(Collection<DropMatrixElement> elements1,
 			Collection<DropMatrixElement> elements2) {
-		Map<String, Map<String, DropMatrixElement>> convertedMap = convertElementsToMapByStageIdAndItemId(elements1);
-		elements2.forEach(el -> {
-			String stageId = el.getStageId();
-			String itemId = el.getItemId();
-			Map<String, DropMatrixElement> subMap = convertedMap.getOrDefault(stageId, new HashMap<>());
-			if (subMap.containsKey(itemId))
-				subMap.put(itemId, combineElements(Arrays.asList(subMap.get(itemId), el)));
-			else
-				subMap.put(itemId, el);
-			convertedMap.put(stageId, subMap);
-		});
-		return convertMapByStageIdAndItemIdToElements(convertedMap);
+		return combineIntoMatrix(elements1, elements2).toElements();
 	}
 
-	private static Map<String, Map<String, DropMatrixElement>>
-			convertElementsToMapByStageIdAndItemId(Collection<DropMatrixElement> elements) {
-		Map<String, Map<String, DropMatrixElement>> result = new HashMap<>();
-		Map<String, List<DropMatrixElement>> elementsMapByStageId1 =
-				elements.stream().collect(groupingBy(el -> el.getStageId()));
-		elementsMapByStageId1.forEach((stageId, els) -> {
-			Map<String, DropMatrixElement> subMap = result.getOrDefault(stageId, new HashMap<>());
-			Map<String, List<DropMatrixElement>> elementsMapByItemId =
-					els.stream().collect(groupingBy(el -> el.getItemId()));
-			elementsMapByItemId.forEach((itemId, els2) -> {
-				subMap.put(itemId, els2.get(0));
-			});
-			result.put(stageId, subMap);
-		});
-		return result;
+	/**
+	 * @Title: combineIntoMatrix
+	 * @Description: Combine elements2 into elements1. If elements1 has duplicated stage and item, only the first one
+	 *               is used. Like combineElements, a combined cell keeps the isPast of its element in elements1, and a
+	 *               cell only in elements2 keeps its own.
+	 * @param elements1
+	 * @param elements2
+	 * @return DropMatrix
+	 */
+	public static DropMatrix combineIntoMatrix(Collection<DropMatrixElement> elements1,
+			Collection<DropMatrixElement> elements2) {
+		DropMatrixElement first = !elements1.isEmpty() ? elements1.iterator().next()
+				: elements2.isEmpty() ? null : elements2.iterator().next();
+		DropMatrix matrix = new DropMatrix(first == null ? null : first.getType(),
+				first == null ? null : first.getServer(), first == null ? null : first.getIsPast(),
+				elements1.size() + elements2.size());
+		elements1.forEach(matrix::putIfAbsent);
+		elements2.forEach(matrix::add);
+		return matrix;
 	}
 
-	private static List<DropMatrixElement>
-			convertMapByStageIdAndItemIdToElements(Map<String, Map<String, DropMatrixElement>> map) {
-		return map.values().stream().flatMap(m -> m.values().stream()).collect(toList());
+	/**
+	 * @Title: keyOf
+	 * @Description: Get the primitive (stage, item) key of an element, see {@link IdRegistry#pairKey(int, int)}.
+	 * @param element
+	 * @return long
+	 */
+	public static long keyOf(DropMatrixElement element) {
+		return IdRegistry.pairKey(IdRegistry.STAGES.idOf(element.getStageId()),
+				IdRegistry.ITEMS.idOf(element.getItemId()));
 	}
 
 }
@@ -0,0 +1,35 @@
+package io.penguinstats.util;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import io.penguinstats.model.EncodedDocument;
+
+public class EncodedResponseUtil {
+
+    /**
+     * @Title: toResponse
+     * @Description: Answer with 304 if If-None-Match has the ETag of the document, otherwise with the gzip form if
+     *               the client accepts it, or the plain JSON.
+     * @param document
+     * @param headers Extra headers, such as Last-Modified. ETag and Vary are added.
+     * @param ifNoneMatch Value of If-None-Match, may be null.
+     * @param acceptEncoding Value of Accept-Encoding, may be null.
+     * @return ResponseEntity<byte[]>
+     */
+    public static ResponseEntity<byte[]> toResponse(EncodedDocument document, HttpHeaders headers, String ifNoneMatch,
+            String acceptEncoding) {
+        headers.setETag(document.getEtag());
+        headers.add(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (ifNoneMatch != null && ifNoneMatch.contains(document.getEtag()))
+            return new ResponseEntity<>(headers, HttpStatus.NOT_MODIFIED);
+
+        if (acceptEncoding != null && acceptEncoding.contains("gzip")) {
+            headers.add(HttpHeaders.CONTENT_ENCODING, "gzip");
+            return new ResponseEntity<>(document.getGzipped(), headers, HttpStatus.OK);
+        }
+        return new ResponseEntity<>(document.getJson(), headers, HttpStatus.OK);
+    }
+
+}
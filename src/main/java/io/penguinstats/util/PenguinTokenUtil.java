@@ -0,0 +1,173 @@
+package io.penguinstats.util;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import io.penguinstats.constant.Constant.DefaultValue;
+import io.penguinstats.constant.Constant.SystemPropertyKey;
+import io.penguinstats.model.AuthPrincipal;
+import io.penguinstats.service.SystemPropertyService;
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * PenguinTokenUtil issues and verifies signed PenguinID tokens, which carry userID and tags of a user so that read
+ * endpoints can authorize a request without looking the user up.<br>
+ * A token is {@code v1.<keyId>.<payload>.<signature>}: payload is base64url of {@code userID|tags|expiresAt} and
+ * signature is base64url of HMAC-SHA256 over everything before it.<br>
+ * Keys come from the system property penguin_token_keys, formatted as {@code id1:secret1,id2:secret2}. The first key
+ * signs new tokens, all of them are accepted, so a key is rotated by putting a new one in front and removing the old
+ * one after the token TTL. Keys are reloaded from SystemPropertyService at most once a minute. Without keys no token
+ * is issued or accepted.
+ */
+@Log4j2
+@Component("penguinTokenUtil")
+public class PenguinTokenUtil {
+
+    private static final String VERSION = "v1";
+
+    private static final String ALGORITHM = "HmacSHA256";
+
+    private static final long KEY_REFRESH_INTERVAL = 60000L;
+
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    @Autowired
+    private SystemPropertyService systemPropertyService;
+
+    private volatile Keys keys = new Keys(Collections.emptyMap(), null, 0L, 0L);
+
+    /**
+     * @Title: issue
+     * @Description: Issue a token for the user.
+     * @param userID
+     * @param tags
+     * @return String null if no key is configured or userID cannot be put into a token.
+     */
+    public String issue(String userID, Collection<String> tags) {
+        Keys current = getKeys();
+        if (current.currentKeyId == null || StringUtils.isEmpty(userID) || userID.indexOf('|') >= 0)
+            return null;
+        long expiresAt = System.currentTimeMillis() + current.ttl * 1000L;
+        String joinedTags = tags == null ? ""
+                : tags.stream().filter(tag -> StringUtils.isNotEmpty(tag) && StringUtils.containsNone(tag, ",|"))
+                        .collect(Collectors.joining(","));
+        String payload = userID + "|" + joinedTags + "|" + expiresAt;
+        String signed = VERSION + "." + current.currentKeyId + "."
+                + ENCODER.encodeToString(payload.getBytes(StandardCharsets.UTF_8));
+        return signed + "." + ENCODER.encodeToString(sign(current.secrets.get(current.currentKeyId), signed));
+    }
+
+    /**
+     * @Title: verify
+     * @Description: Verify the token and read the principal from it.
+     * @param token
+     * @return AuthPrincipal null if the token is malformed, signed by an unknown key, forged or expired.
+     */
+    public AuthPrincipal verify(String token) {
+        String[] parts = StringUtils.split(token, '.');
+        if (parts == null || parts.length != 4 || !VERSION.equals(parts[0]))
+            return null;
+        byte[] secret = getKeys().secrets.get(parts[1]);
+        if (secret == null)
+            return null;
+        try {
+            byte[] expected = sign(secret, parts[0] + "." + parts[1] + "." + parts[2]);
+            if (!MessageDigest.isEqual(expected, DECODER.decode(parts[3])))
+                return null;
+            String decoded = new String(DECODER.decode(parts[2]), StandardCharsets.UTF_8);
+            String[] payload = StringUtils.splitPreserveAllTokens(decoded, '|');
+            if (payload.length != 3 || StringUtils.isEmpty(payload[0]))
+                return null;
+            if (Long.parseLong(payload[2]) < System.currentTimeMillis())
+                return null;
+            return new AuthPrincipal(payload[0],
+                    payload[1].isEmpty() ? null : Arrays.asList(StringUtils.split(payload[1], ',')));
+        } catch (IllegalArgumentException e) {
+            // malformed base64 or expiresAt
+            return null;
+        }
+    }
+
+    private static byte[] sign(byte[] secret, String data) {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(new SecretKeySpec(secret, ALGORITHM));
+            return mac.doFinal(data.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private Keys getKeys() {
+        Keys current = keys;
+        long now = System.currentTimeMillis();
+        if (now - current.loadTime <= KEY_REFRESH_INTERVAL)
+            return current;
+        try {
+            current = parseKeys(systemPropertyService.getPropertyStringValue(SystemPropertyKey.PENGUIN_TOKEN_KEYS),
+                    systemPropertyService.getPropertyLongValue(SystemPropertyKey.PENGUIN_TOKEN_TTL,
+                            DefaultValue.PENGUIN_TOKEN_TTL),
+                    now);
+        } catch (Exception e) {
+            log.error("Error in loading penguin token keys: ", e);
+            current = new Keys(current.secrets, current.currentKeyId, current.ttl, now);
+        }
+        keys = current;
+        return current;
+    }
+
+    static Keys parseKeys(String value, long ttl, long loadTime) {
+        Map<String, byte[]> secrets = new LinkedHashMap<>();
+        String currentKeyId = null;
+        for (String entry : StringUtils.split(StringUtils.defaultString(value), ',')) {
+            String id = StringUtils.substringBefore(entry, ":").trim();
+            String secret = StringUtils.substringAfter(entry, ":").trim();
+            if (id.isEmpty() || id.contains(".") || secret.isEmpty())
+                continue;
+            secrets.put(id, secret.getBytes(StandardCharsets.UTF_8));
+            if (currentKeyId == null)
+                currentKeyId = id;
+        }
+        return new Keys(Collections.unmodifiableMap(secrets), currentKeyId, ttl, loadTime);
+    }
+
+    static class Keys {
+
+        private final Map<String, byte[]> secrets;
+
+        private final String currentKeyId;
+
+        /**
+         * In seconds.
+         */
+        private final long ttl;
+
+        private final long loadTime;
+
+        Keys(Map<String, byte[]> secrets, String currentKeyId, long ttl, long loadTime) {
+            this.secrets = secrets;
+            this.currentKeyId = currentKeyId;
+            this.ttl = ttl;
+            this.loadTime = loadTime;
+        }
+
+    }
+
+}
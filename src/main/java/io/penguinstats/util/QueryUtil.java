@@ -1,24 +1,120 @@
 package io.penguinstats.util;
 
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
 
 import io.penguinstats.model.MatrixElement;
 
+/**
+ * QueryUtil runs queries in a bounded pool with a timeout.<br>
+ * Queries run with a key are single-flight: while a query is running, callers with an equal key wait for the same
+ * computation instead of starting their own, and a successful result is still shared for REUSE_WINDOW after it
+ * completes. A failed query is forgotten at once so the next caller retries it. Each caller keeps its own timeout,
+ * and a caller timing out does not cancel the shared computation.<br>
+ * A result may therefore miss reports saved up to REUSE_WINDOW before it is returned. Callers which cannot accept
+ * that put a version into the key. Shared results are handed to every caller as is, so callers must not modify them
+ * in ways that differ per caller.
+ */
 public class QueryUtil {
 
+    private static final long REUSE_WINDOW = 5000L;
+
     private static ExecutorService pool = Executors.newFixedThreadPool(5);
 
+    private static final ScheduledExecutorService cleaner = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "query-flight-cleaner");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private static final Map<Object, Flight> flights = new ConcurrentHashMap<>();
+
     public static List<? extends MatrixElement> runQuery(Callable<List<? extends MatrixElement>> func, Integer timeout)
             throws InterruptedException, ExecutionException, TimeoutException {
-        Future<List<? extends MatrixElement>> future = pool.submit(func);
+        return runQuery(null, func, timeout);
+    }
+
+    /**
+     * @Title: runQuery
+     * @Description: Run the query, or join the running or just completed query with an equal key.
+     * @param key Built by {@link #keyOf(Object...)}. null to always run the query on its own.
+     * @param func
+     * @param timeout In minutes, null for no timeout.
+     * @return List<? extends MatrixElement>
+     */
+    public static List<? extends MatrixElement> runQuery(Object key, Callable<List<? extends MatrixElement>> func,
+            Integer timeout) throws InterruptedException, ExecutionException, TimeoutException {
+        Future<List<? extends MatrixElement>> future;
+        if (key == null) {
+            future = pool.submit(func);
+        } else {
+            Flight created = new Flight(key, func);
+            Flight flight = flights.putIfAbsent(key, created);
+            if (flight == null) {
+                flight = created;
+                pool.execute(created);
+            }
+            future = flight;
+        }
         return timeout != null ? future.get(timeout, TimeUnit.MINUTES) : future.get();
     }
 
+    /**
+     * @Title: keyOf
+     * @Description: Build a single-flight key from query conditions. Collections are taken as sets of ids, so the
+     *               order and duplicates of ids do not matter, and an empty collection equals null.
+     * @param conditions
+     * @return Object
+     */
+    public static Object keyOf(Object... conditions) {
+        Object[] normalized = new Object[conditions.length];
+        for (int i = 0; i < conditions.length; i++) {
+            Object condition = conditions[i];
+            if (condition instanceof Collection) {
+                Collection<?> ids = (Collection<?>)condition;
+                normalized[i] = ids.isEmpty() ? null
+                        : Collections.unmodifiableList(
+                                ids.stream().map(String::valueOf).distinct().sorted().collect(Collectors.toList()));
+            } else {
+                normalized[i] = condition;
+            }
+        }
+        return Collections.unmodifiableList(Arrays.asList(normalized));
+    }
+
+    private static class Flight extends FutureTask<List<? extends MatrixElement>> {
+
+        private final Object key;
+
+        private Flight(Object key, Callable<List<? extends MatrixElement>> func) {
+            super(func);
+            this.key = key;
+        }
+
+        @Override
+        protected void done() {
+            try {
+                get();
+                cleaner.schedule(() -> flights.remove(key, this), REUSE_WINDOW, TimeUnit.MILLISECONDS);
+            } catch (Exception e) {
+                flights.remove(key, this);
+            }
+        }
+
+    }
+
 }
@@ -0,0 +1,141 @@
+package io.penguinstats.util;
+
+import static java.util.stream.Collectors.groupingBy;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+
+import io.penguinstats.model.DropMatrix;
+import io.penguinstats.model.DropMatrixElement;
+
+/**
+ * ResultJsonWriter writes matrix and trend responses with a streaming JsonGenerator, instead of building
+ * MatrixQueryResponse / TrendQueryResponse and serializing them by reflection.<br>
+ * The output is the same as the Jackson serialization of those responses after toResultView: fields in declaration
+ * order and null fields omitted. Matrix cells are read straight from the DropMatrix arrays, so no element object is
+ * created or mutated. The generator buffers are recycled per thread by JsonFactory.<br>
+ * The matrix can also be written as CBOR with the same structure, for clients which ask for it by Accept.
+ */
+public class ResultJsonWriter {
+
+    private static final JsonFactory JSON_FACTORY =
+            new JsonFactory().disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+
+    private static final CBORFactory CBOR_FACTORY = new CBORFactory();
+
+    static {
+        CBOR_FACTORY.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    }
+
+    /**
+     * @Title: writeMatrix
+     * @Description: Write {"matrix":[...]} with the cells at the given positions.
+     * @param matrix
+     * @param positions
+     * @param count Number of positions to write.
+     * @param out
+     */
+    public static void writeMatrix(DropMatrix matrix, int[] positions, int count, OutputStream out)
+            throws IOException {
+        writeMatrix(JSON_FACTORY, matrix, positions, count, out);
+    }
+
+    /**
+     * @Title: writeMatrixAsCbor
+     * @Description: Same as writeMatrix, encoded as CBOR.
+     * @param matrix
+     * @param positions
+     * @param count Number of positions to write.
+     * @param out
+     */
+    public static void writeMatrixAsCbor(DropMatrix matrix, int[] positions, int count, OutputStream out)
+            throws IOException {
+        writeMatrix(CBOR_FACTORY, matrix, positions, count, out);
+    }
+
+    private static void writeMatrix(JsonFactory factory, DropMatrix matrix, int[] positions, int count,
+            OutputStream out) throws IOException {
+        try (JsonGenerator generator = factory.createGenerator(out, JsonEncoding.UTF8)) {
+            generator.writeStartObject();
+            generator.writeArrayFieldStart("matrix");
+            for (int i = 0; i < count; i++) {
+                int position = positions[i];
+                generator.writeStartObject();
+                generator.writeStringField("stageId", matrix.getStageId(position));
+                generator.writeStringField("itemId", matrix.getItemId(position));
+                generator.writeNumberField("quantity", matrix.getQuantity(position));
+                generator.writeNumberField("times", matrix.getTimes(position));
+                generator.writeNumberField("start", matrix.getStart(position));
+                Long end = matrix.getEnd(position);
+                if (end != null)
+                    generator.writeNumberField("end", end);
+                generator.writeEndObject();
+            }
+            generator.writeEndArray();
+            generator.writeEndObject();
+        }
+    }
+
+    /**
+     * @Title: writeTrend
+     * @Description: Write {"trend":{stageId:{"startTime":...,"results":{itemId:{"times":[...],"quantity":[...]}}}}}.
+     *               Stages and items are grouped into HashMaps the same way as TrendQueryResponse, so keys come out
+     *               in the same order.
+     * @param elements
+     * @param out
+     */
+    public static void writeTrend(List<DropMatrixElement> elements, OutputStream out) throws IOException {
+        Map<String, Map<String, List<DropMatrixElement>>> grouped = elements.stream()
+                .collect(groupingBy(DropMatrixElement::getStageId, groupingBy(DropMatrixElement::getItemId)));
+        Map<String, Map<String, List<DropMatrixElement>>> stageMap = new HashMap<>();
+        grouped.forEach((stageId, subMap) -> {
+            Map<String, List<DropMatrixElement>> itemMap = new HashMap<>();
+            subMap.forEach(itemMap::put);
+            stageMap.put(stageId, itemMap);
+        });
+
+        try (JsonGenerator generator = JSON_FACTORY.createGenerator(out, JsonEncoding.UTF8)) {
+            generator.writeStartObject();
+            generator.writeObjectFieldStart("trend");
+            for (Map.Entry<String, Map<String, List<DropMatrixElement>>> stageEntry : stageMap.entrySet()) {
+                generator.writeObjectFieldStart(stageEntry.getKey());
+                Long startTime = null;
+                for (List<DropMatrixElement> els : stageEntry.getValue().values()) {
+                    for (DropMatrixElement element : els) {
+                        Long start = element.getStart();
+                        if (startTime == null || start != null && start.compareTo(startTime) < 0)
+                            startTime = start;
+                    }
+                }
+                if (startTime != null)
+                    generator.writeNumberField("startTime", startTime);
+                generator.writeObjectFieldStart("results");
+                for (Map.Entry<String, List<DropMatrixElement>> itemEntry : stageEntry.getValue().entrySet()) {
+                    generator.writeObjectFieldStart(itemEntry.getKey());
+                    generator.writeArrayFieldStart("times");
+                    for (DropMatrixElement element : itemEntry.getValue())
+                        generator.writeNumber(element.getTimes());
+                    generator.writeEndArray();
+                    generator.writeArrayFieldStart("quantity");
+                    for (DropMatrixElement element : itemEntry.getValue())
+                        generator.writeNumber(element.getQuantity());
+                    generator.writeEndArray();
+                    generator.writeEndObject();
+                }
+                generator.writeEndObject();
+                generator.writeEndObject();
+            }
+            generator.writeEndObject();
+            generator.writeEndObject();
+        }
+    }
+
+}
@@ -1,10 +1,11 @@
 package io.penguinstats.util;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
-import java.util.Iterator;
 import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.Optional;
@@ -15,6 +16,7 @@ import java.util.stream.Collectors;
 
 import javax.annotation.PostConstruct;
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpHeaders;
@@ -28,21 +30,23 @@ import io.penguinstats.controller.v2.mapper.QueryMapper;
 import io.penguinstats.controller.v2.request.AdvancedQueryRequest;
 import io.penguinstats.controller.v2.response.AdvancedQueryResponse;
 import io.penguinstats.controller.v2.response.BasicQueryResponse;
-import io.penguinstats.controller.v2.response.MatrixQueryResponse;
 import io.penguinstats.controller.v2.response.PatternQueryResponse;
-import io.penguinstats.controller.v2.response.TrendQueryResponse;
 import io.penguinstats.enums.ErrorCode;
+import io.penguinstats.enums.MatrixFormat;
 import io.penguinstats.enums.QueryType;
 import io.penguinstats.enums.Server;
+import io.penguinstats.model.DropMatrix;
 import io.penguinstats.model.DropMatrixElement;
+import io.penguinstats.model.DropSample;
 import io.penguinstats.model.PatternMatrixElement;
 import io.penguinstats.model.query.BasicQuery;
-import io.penguinstats.model.query.GlobalMatrixQuery;
 import io.penguinstats.model.query.GlobalPatternQuery;
 import io.penguinstats.model.query.QueryFactory;
 import io.penguinstats.service.DropInfoService;
 import io.penguinstats.service.DropMatrixElementService;
+import io.penguinstats.service.DropSampleService;
 import io.penguinstats.service.PatternMatrixElementService;
+import io.penguinstats.service.PersonalMatrixService;
 import io.penguinstats.service.SystemPropertyService;
 import io.penguinstats.util.exception.ServiceException;
 import lombok.extern.log4j.Log4j2;
@@ -62,6 +66,10 @@ public class ResultUtil {
     @Autowired
     private SystemPropertyService systemPropertyService;
     @Autowired
+    private PersonalMatrixService personalMatrixService;
+    @Autowired
+    private DropSampleService dropSampleService;
+    @Autowired
     private AuthUtil authUtil;
     @Autowired
     private QueryMapper queryMapper;
@@ -75,41 +83,39 @@ public class ResultUtil {
         resultUtil.dropMatrixElementService = this.dropMatrixElementService;
         resultUtil.patternMatrixElementService = this.patternMatrixElementService;
         resultUtil.systemPropertyService = this.systemPropertyService;
+        resultUtil.personalMatrixService = this.personalMatrixService;
+        resultUtil.dropSampleService = this.dropSampleService;
         resultUtil.authUtil = this.authUtil;
         resultUtil.queryFactory = this.queryFactory;
     }
 
-    @SuppressWarnings("unchecked")
-    public ResponseEntity<MatrixQueryResponse> getMatrixHelper(HttpServletRequest request, Server server,
+    /**
+     * @Title: getMatrixHelper
+     * @Description: Write the matrix response straight into the servlet response with ResultJsonWriter. The JSON is
+     *               the same as serializing MatrixQueryResponse. CBOR or the columnar layout of ColumnarMatrixWriter
+     *               is written instead if the Accept header asks for it. The personal matrix comes from
+     *               PersonalMatrixService.
+     */
+    public void getMatrixHelper(HttpServletRequest request, HttpServletResponse response, Server server,
             boolean showClosedZones, String stageFilter, String itemFilter, boolean isPersonal) throws Exception {
         log.info("GET /matrix");
 
         String userID = isPersonal ? authUtil.authUserFromRequest(request) : null;
         if (isPersonal && userID == null) {
-            return new ResponseEntity<>(new MatrixQueryResponse(new ArrayList<>()), HttpStatus.OK);
+            writeMatrixResponse(request, response, new DropMatrix(null, server, null, 0), new int[0], 0, null);
+            return;
         }
 
-        List<DropMatrixElement> pastElements = null;
-        List<DropMatrixElement> currentElements = null;
+        DropMatrix matrix;
         if (userID != null) {
-            GlobalMatrixQuery pastQuery = (GlobalMatrixQuery)queryFactory.getQuery(QueryType.GLOBAL_MATRIX);
             Integer pastTimeout = systemPropertyService.getPropertyIntegerValue(
                     SystemPropertyKey.PAST_GLOBAL_MATRIX_QUERY_TIMEOUT, DefaultValue.PAST_GLOBAL_MATRIX_QUERY_TIMEOUT);
-            pastQuery.setServer(server).setUserID(userID).setIsPast(true);
-            if (pastTimeout != null)
-                pastQuery.setTimeout(pastTimeout);
-            pastElements = (List<DropMatrixElement>)pastQuery.execute();
-
-            GlobalMatrixQuery currentQuery = (GlobalMatrixQuery)queryFactory.getQuery(QueryType.GLOBAL_MATRIX);
             Integer currentTimeout =
                     systemPropertyService.getPropertyIntegerValue(SystemPropertyKey.CURRENT_GLOBAL_MATRIX_QUERY_TIMEOUT,
                             DefaultValue.CURRENT_GLOBAL_MATRIX_QUERY_TIMEOUT);
-            currentQuery.setServer(server).setUserID(userID).setIsPast(false);
-            if (currentTimeout != null)
-                currentQuery.setTimeout(currentTimeout);
-            currentElements = (List<DropMatrixElement>)currentQuery.execute();
+            matrix = personalMatrixService.getPersonalMatrix(server, userID, pastTimeout, currentTimeout);
         } else {
-            pastElements = dropMatrixElementService.getGlobalDropMatrixElements(server, true);
+            List<DropMatrixElement> pastElements = dropMatrixElementService.getGlobalDropMatrixElements(server, true);
             if (pastElements.isEmpty()) {
                 Thread.sleep(1000L);
                 pastElements = dropMatrixElementService.getGlobalDropMatrixElements(server, true);
@@ -118,7 +124,8 @@ public class ResultUtil {
                 }
             }
 
-            currentElements = dropMatrixElementService.getGlobalDropMatrixElements(server, false);
+            List<DropMatrixElement> currentElements =
+                    dropMatrixElementService.getGlobalDropMatrixElements(server, false);
             if (currentElements.isEmpty()) {
                 Thread.sleep(1000L);
                 currentElements = dropMatrixElementService.getGlobalDropMatrixElements(server, false);
@@ -126,35 +133,58 @@ public class ResultUtil {
                     log.error("current global drop matrix elements shouldn't be empty");
                 }
             }
+            matrix = DropMatrixElementUtil.combineIntoMatrix(pastElements, currentElements);
         }
-        List<DropMatrixElement> elements = DropMatrixElementUtil.combineElementLists(pastElements, currentElements);
 
-        if (!showClosedZones)
-            removeClosedStages(elements, server);
-
-        if (stageFilter != null)
-            filterStages(elements, stageFilter);
-
-        if (itemFilter != null)
-            filterItems(elements, itemFilter);
-
-        HttpHeaders headers = new HttpHeaders();
-        if (userID == null && !elements.isEmpty()) {
-            DropMatrixElement maxLastUpdateTimeElement =
-                    elements.stream().max(Comparator.comparing(DropMatrixElement::getUpdateTime))
-                            .orElseThrow(NoSuchElementException::new);
-            Long lastUpdateTime = maxLastUpdateTimeElement.getUpdateTime();
-            String lastModified = DateUtil.formatDate(new Date(lastUpdateTime));
-            headers.add(HttpHeaders.LAST_MODIFIED, lastModified);
+        Set<String> openingStages =
+                showClosedZones ? null : dropInfoService.getOpeningStages(server, System.currentTimeMillis());
+        Set<String> stageFilters = stageFilter == null ? Collections.emptySet() : extractFilters(stageFilter);
+        Set<String> itemFilters = itemFilter == null ? Collections.emptySet() : extractFilters(itemFilter);
+        int[] positions = new int[matrix.size()];
+        int count = 0;
+        long lastUpdateTime = Long.MIN_VALUE;
+        for (int position = 0; position < matrix.size(); position++) {
+            String stageId = matrix.getStageId(position);
+            if (openingStages != null && !openingStages.contains(stageId))
+                continue;
+            if (!stageFilters.isEmpty() && !stageFilters.contains(stageId))
+                continue;
+            if (!itemFilters.isEmpty() && !itemFilters.contains(matrix.getItemId(position)))
+                continue;
+            positions[count++] = position;
+            lastUpdateTime = Math.max(lastUpdateTime, matrix.getUpdateTime(position));
         }
 
-        elements.forEach(DropMatrixElement::toResultView);
-        MatrixQueryResponse result = new MatrixQueryResponse(elements);
+        writeMatrixResponse(request, response, matrix, positions, count,
+                userID == null && count > 0 ? lastUpdateTime : null);
+    }
 
-        return new ResponseEntity<MatrixQueryResponse>(result, headers, HttpStatus.OK);
+    private void writeMatrixResponse(HttpServletRequest request, HttpServletResponse response, DropMatrix matrix,
+            int[] positions, int count, Long lastUpdateTime) throws IOException {
+        MatrixFormat format = MatrixFormat.fromAccept(request.getHeader(HttpHeaders.ACCEPT));
+        response.setStatus(HttpStatus.OK.value());
+        response.setContentType(format.getContentType());
+        response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+        if (lastUpdateTime != null)
+            response.setHeader(HttpHeaders.LAST_MODIFIED, DateUtil.formatDate(new Date(lastUpdateTime)));
+        switch (format) {
+            case CBOR:
+                ResultJsonWriter.writeMatrixAsCbor(matrix, positions, count, response.getOutputStream());
+                break;
+            case COLUMNAR:
+                ColumnarMatrixWriter.writeMatrix(matrix, positions, count, response.getOutputStream());
+                break;
+            default:
+                ResultJsonWriter.writeMatrix(matrix, positions, count, response.getOutputStream());
+        }
     }
 
-    public ResponseEntity<TrendQueryResponse> getTrendHelper(Server server) throws Exception {
+    /**
+     * @Title: getTrendHelper
+     * @Description: Write the trend response straight into the servlet response with ResultJsonWriter. The JSON is
+     *               the same as serializing TrendQueryResponse.
+     */
+    public void getTrendHelper(HttpServletResponse response, Server server) throws Exception {
         List<DropMatrixElement> elements = dropMatrixElementService.getGlobalTrendElements(server);
         if (elements.isEmpty()) {
             Thread.sleep(1000L);
@@ -164,20 +194,17 @@ public class ResultUtil {
             }
         }
 
-        HttpHeaders headers = new HttpHeaders();
+        response.setStatus(HttpStatus.OK.value());
+        response.setContentType("application/json;charset=UTF-8");
         if (!elements.isEmpty()) {
             DropMatrixElement maxLastUpdateTimeElement =
                     elements.stream().max(Comparator.comparing(DropMatrixElement::getUpdateTime))
                             .orElseThrow(NoSuchElementException::new);
             Long lastUpdateTime = maxLastUpdateTimeElement.getUpdateTime();
             String lastModified = DateUtil.formatDate(new Date(lastUpdateTime));
-            headers.add(HttpHeaders.LAST_MODIFIED, lastModified);
+            response.setHeader(HttpHeaders.LAST_MODIFIED, lastModified);
         }
-
-        elements.forEach(DropMatrixElement::toResultView);
-        TrendQueryResponse result = new TrendQueryResponse(elements);
-
-        return new ResponseEntity<TrendQueryResponse>(result, headers, HttpStatus.OK);
+        ResultJsonWriter.writeTrend(elements, response.getOutputStream());
     }
 
     @SuppressWarnings("unchecked")
@@ -253,6 +280,16 @@ public class ResultUtil {
                 String userID = isPersonal ? userIDFromRequest : null;
                 Integer timeout = systemPropertyService.getPropertyIntegerValue(
                         SystemPropertyKey.ADVANCED_QUERY_TIMEOUT, DefaultValue.ADVANCED_QUERY_TIMEOUT);
+                if (userID == null && singleQuery.getInterval() == null
+                        && Boolean.TRUE.equals(singleQuery.getApproximate())) {
+                    DropSample.Estimation estimation = dropSampleService.estimate(singleQuery.getServer(),
+                            singleQuery.getStageId(), singleQuery.getItemIds(), singleQuery.getStart(),
+                            singleQuery.getEnd());
+                    if (estimation != null) {
+                        results.add(queryMapper.estimationToBasicQueryResponse(singleQuery, estimation));
+                        return;
+                    }
+                }
                 BasicQuery query = queryMapper.queryRequestToQueryModel(singleQuery, userID, timeout);
                 List<DropMatrixElement> elements = (List<DropMatrixElement>)query.execute();
                 elements.forEach(DropMatrixElement::toResultView);
@@ -268,40 +305,6 @@ public class ResultUtil {
         return new ResponseEntity<AdvancedQueryResponse>(advancedQueryResponse, HttpStatus.OK);
     }
 
-    private void removeClosedStages(List<DropMatrixElement> elements, Server server) {
-        Set<String> openingStages = dropInfoService.getOpeningStages(server, System.currentTimeMillis());
-        Iterator<DropMatrixElement> iter = elements.iterator();
-        while (iter.hasNext()) {
-            DropMatrixElement element = iter.next();
-            if (!openingStages.contains(element.getStageId()))
-                iter.remove();
-        }
-    }
-
-    private void filterStages(List<DropMatrixElement> elements, String stageFilter) {
-        Set<String> filters = extractFilters(stageFilter);
-        if (filters.isEmpty())
-            return;
-        Iterator<DropMatrixElement> iter = elements.iterator();
-        while (iter.hasNext()) {
-            DropMatrixElement element = iter.next();
-            if (!filters.contains(element.getStageId()))
-                iter.remove();
-        }
-    }
-
-    private void filterItems(List<DropMatrixElement> elements, String itemFilter) {
-        Set<String> filters = extractFilters(itemFilter);
-        if (filters.isEmpty())
-            return;
-        Iterator<DropMatrixElement> iter = elements.iterator();
-        while (iter.hasNext()) {
-            DropMatrixElement element = iter.next();
-            if (!filters.contains(element.getItemId()))
-                iter.remove();
-        }
-    }
-
     private Set<String> extractFilters(String filterStr) {
         String[] splitted = filterStr.split(",");
         return Arrays.asList(splitted).stream().map(String::trim).collect(Collectors.toSet());
@@ -0,0 +1,227 @@
+package io.penguinstats.util.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import io.penguinstats.enums.DropType;
+import io.penguinstats.model.DropInfo;
+import io.penguinstats.model.TimeRange;
+
+/**
+ * DropInfoIntervalIndex answers "which DropInfos are active at time t" for one server.<br>
+ * All starts and ends of the time ranges are sorted into breakpoints. Between two adjacent breakpoints the set of
+ * active DropInfos does not change, so it is computed once per segment and a lookup is a binary search over the
+ * breakpoints. Each stage has its own breakpoints, and the server keeps global ones for the set of opening stages.<br>
+ * Drop sets are interned: equal sets of different segments and stages are the same instance, so the number of
+ * distinct sets is bounded by the number of distinct drop lists, not by the number of lookups.<br>
+ * Instances are immutable. DropInfos whose time range cannot be found are ignored.
+ */
+public class DropInfoIntervalIndex {
+
+    private static final Set<String> EMPTY_SET = Collections.emptySet();
+
+    private final Map<String, StageTimeline> stages;
+
+    private final long[] breakpoints;
+
+    /**
+     * Stages which have at least one active DropInfo other than RECOGNITION_ONLY, indexed by segment.
+     */
+    private final List<Set<String>> openStages;
+
+    /**
+     * Stages which have at least one active DropInfo, indexed by segment.
+     */
+    private final List<Set<String>> activeStages;
+
+    private DropInfoIntervalIndex(Map<String, StageTimeline> stages, long[] breakpoints, List<Set<String>> openStages,
+            List<Set<String>> activeStages) {
+        this.stages = stages;
+        this.breakpoints = breakpoints;
+        this.openStages = openStages;
+        this.activeStages = activeStages;
+    }
+
+    public static DropInfoIntervalIndex build(List<DropInfo> infos, Map<String, TimeRange> timeRangeMap) {
+        Map<String, List<DropInfo>> infosByStageId = new HashMap<>();
+        for (DropInfo info : infos) {
+            TimeRange range = timeRangeMap.get(info.getTimeRangeID());
+            if (range == null || range.getStart() == null)
+                continue;
+            info.setTimeRange(range);
+            infosByStageId.computeIfAbsent(info.getStageId(), k -> new ArrayList<>()).add(info);
+        }
+
+        Map<String, StageTimeline> stages = new HashMap<>();
+        Map<Set<String>, Set<String>> internedDropSets = new HashMap<>();
+        infosByStageId.forEach((stageId, infosForOneStage) -> stages.put(stageId,
+                new StageTimeline(infosForOneStage, internedDropSets)));
+
+        TreeSet<Long> points = new TreeSet<>();
+        stages.values().forEach(timeline -> Arrays.stream(timeline.breakpoints).forEach(points::add));
+        long[] breakpoints = points.stream().mapToLong(Long::longValue).toArray();
+
+        List<Set<String>> openStages = new ArrayList<>(breakpoints.length + 1);
+        List<Set<String>> activeStages = new ArrayList<>(breakpoints.length + 1);
+        openStages.add(EMPTY_SET);
+        activeStages.add(EMPTY_SET);
+        for (long point : breakpoints) {
+            Set<String> open = new HashSet<>();
+            Set<String> active = new HashSet<>();
+            stages.forEach((stageId, timeline) -> {
+                int segment = timeline.segmentOf(point);
+                if (timeline.hasRegularInfos[segment])
+                    open.add(stageId);
+                if (!timeline.infos.get(segment).isEmpty())
+                    active.add(stageId);
+            });
+            openStages.add(Collections.unmodifiableSet(open));
+            activeStages.add(Collections.unmodifiableSet(active));
+        }
+        return new DropInfoIntervalIndex(Collections.unmodifiableMap(stages), breakpoints, openStages, activeStages);
+    }
+
+    /**
+     * @Title: getOpeningStages
+     * @Description: Get stageIds which have DropInfos other than RECOGNITION_ONLY at the given time.
+     * @param time
+     * @return Set<String> Unmodifiable.
+     */
+    public Set<String> getOpeningStages(long time) {
+        return openStages.get(segmentOf(breakpoints, time));
+    }
+
+    /**
+     * @Title: getActiveStages
+     * @Description: Get stageIds which have any DropInfo at the given time.
+     * @param time
+     * @return Set<String> Unmodifiable.
+     */
+    public Set<String> getActiveStages(long time) {
+        return activeStages.get(segmentOf(breakpoints, time));
+    }
+
+    /**
+     * @Title: getActiveDropInfos
+     * @Description: Get all DropInfos of the stage at the given time, including RECOGNITION_ONLY ones.
+     * @param stageId
+     * @param time
+     * @return List<DropInfo> Unmodifiable. The DropInfo objects are shared and must not be modified.
+     */
+    public List<DropInfo> getActiveDropInfos(String stageId, long time) {
+        StageTimeline timeline = stages.get(stageId);
+        if (timeline == null)
+            return Collections.emptyList();
+        return timeline.infos.get(timeline.segmentOf(time));
+    }
+
+    /**
+     * @Title: getDropSet
+     * @Description: Get itemIds of the DropInfos other than RECOGNITION_ONLY of the stage at the given time.
+     * @param stageId
+     * @param time
+     * @return Set<String> Unmodifiable and shared, empty if the stage is not open.
+     */
+    public Set<String> getDropSet(String stageId, long time) {
+        StageTimeline timeline = stages.get(stageId);
+        if (timeline == null)
+            return EMPTY_SET;
+        return timeline.dropSets.get(timeline.segmentOf(time));
+    }
+
+    /**
+     * @Title: getTimeRanges
+     * @Description: Get distinct time ranges of the DropInfos other than RECOGNITION_ONLY of the stage.
+     * @param stageId
+     * @return List<TimeRange> Unmodifiable.
+     */
+    public List<TimeRange> getTimeRanges(String stageId) {
+        StageTimeline timeline = stages.get(stageId);
+        return timeline == null ? Collections.emptyList() : timeline.timeRanges;
+    }
+
+    /**
+     * @Title: getNextBreakpoint
+     * @Description: Get the first time after the given time at which any stage's active DropInfos change.
+     * @param time
+     * @return long Long.MAX_VALUE if nothing changes after the given time.
+     */
+    public long getNextBreakpoint(long time) {
+        int segment = segmentOf(breakpoints, time);
+        return segment < breakpoints.length ? breakpoints[segment] : Long.MAX_VALUE;
+    }
+
+    /**
+     * Segment 0 is before the first breakpoint, segment i covers [breakpoints[i - 1], breakpoints[i]).
+     */
+    private static int segmentOf(long[] breakpoints, long time) {
+        int index = Arrays.binarySearch(breakpoints, time);
+        return index >= 0 ? index + 1 : -index - 1;
+    }
+
+    private static class StageTimeline {
+
+        private final long[] breakpoints;
+
+        private final List<List<DropInfo>> infos;
+
+        private final List<Set<String>> dropSets;
+
+        private final boolean[] hasRegularInfos;
+
+        private final List<TimeRange> timeRanges;
+
+        private StageTimeline(List<DropInfo> infosForOneStage, Map<Set<String>, Set<String>> internedDropSets) {
+            TreeSet<Long> points = new TreeSet<>();
+            Set<TimeRange> ranges = new LinkedHashSet<>();
+            for (DropInfo info : infosForOneStage) {
+                TimeRange range = info.getTimeRange();
+                points.add(range.getStart());
+                if (range.getEnd() != null)
+                    points.add(range.getEnd());
+                if (DropType.RECOGNITION_ONLY != info.getDropType())
+                    ranges.add(range);
+            }
+            this.breakpoints = points.stream().mapToLong(Long::longValue).toArray();
+            this.timeRanges = Collections.unmodifiableList(new ArrayList<>(ranges));
+
+            this.infos = new ArrayList<>(breakpoints.length + 1);
+            this.dropSets = new ArrayList<>(breakpoints.length + 1);
+            this.hasRegularInfos = new boolean[breakpoints.length + 1];
+            infos.add(Collections.emptyList());
+            dropSets.add(EMPTY_SET);
+            for (int i = 0; i < breakpoints.length; i++) {
+                long point = breakpoints[i];
+                List<DropInfo> active = new ArrayList<>();
+                Set<String> dropSet = new HashSet<>();
+                for (DropInfo info : infosForOneStage) {
+                    if (!info.getTimeRange().isIn(point))
+                        continue;
+                    active.add(info);
+                    if (DropType.RECOGNITION_ONLY != info.getDropType()) {
+                        hasRegularInfos[i + 1] = true;
+                        if (info.getItemId() != null)
+                            dropSet.add(info.getItemId());
+                    }
+                }
+                infos.add(Collections.unmodifiableList(active));
+                dropSets.add(dropSet.isEmpty() ? EMPTY_SET
+                        : internedDropSets.computeIfAbsent(dropSet, Collections::unmodifiableSet));
+            }
+        }
+
+        private int segmentOf(long time) {
+            return DropInfoIntervalIndex.segmentOf(breakpoints, time);
+        }
+
+    }
+
+}
@@ -0,0 +1,304 @@
+package io.penguinstats.util.index;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import lombok.Getter;
+
+/**
+ * DropPrefixSumIndex keeps cumulative drop data of one server, bucketed by a fixed granularity.<br>
+ * For every stage it stores the running total of <b>times</b>, and for every item in that stage the running total of
+ * <b>quantity</b>. The sum over any bucket-aligned range [a, b) is then c(b) - c(a).<br>
+ * Instances are immutable. {@link #append(long, Map)} returns a new index which shares all untouched stage series
+ * with the old one, so readers never need to lock.
+ */
+@Getter
+public class DropPrefixSumIndex {
+
+    private static final int FORMAT_VERSION = 1;
+
+    private final long granularity;
+
+    private final long offset;
+
+    /**
+     * Buckets in [firstBucket, endBucket) are covered by this index.
+     */
+    private final long firstBucket;
+
+    private final long endBucket;
+
+    private final Map<String, StageSeries> stages;
+
+    private DropPrefixSumIndex(long granularity, long offset, long firstBucket, long endBucket,
+            Map<String, StageSeries> stages) {
+        this.granularity = granularity;
+        this.offset = offset;
+        this.firstBucket = firstBucket;
+        this.endBucket = endBucket;
+        this.stages = stages;
+    }
+
+    public static DropPrefixSumIndex empty(long granularity, long offset, long firstBucket) {
+        return new DropPrefixSumIndex(granularity, offset, firstBucket, firstBucket, Collections.emptyMap());
+    }
+
+    public long bucketOf(long timestamp) {
+        return Math.floorDiv(timestamp - offset, granularity);
+    }
+
+    public long bucketStart(long bucket) {
+        return bucket * granularity + offset;
+    }
+
+    public Set<String> getStageIds() {
+        return stages.keySet();
+    }
+
+    /**
+     * @Title: sum
+     * @Description: Sum up times and quantities of one stage in buckets [fromBucket, toBucket). The range is clamped
+     *               to the buckets covered by this index.
+     * @param stageId
+     * @param fromBucket
+     * @param toBucket
+     * @return Counts
+     */
+    public Counts sum(String stageId, long fromBucket, long toBucket) {
+        Counts counts = new Counts();
+        StageSeries series = stages.get(stageId);
+        long from = Math.max(fromBucket, firstBucket);
+        long to = Math.min(toBucket, endBucket);
+        if (series == null || from >= to)
+            return counts;
+        counts.times = series.valueAt(series.times, to) - series.valueAt(series.times, from);
+        series.quantities.forEach((itemId, cumulative) -> {
+            long quantity = series.valueAt(cumulative, to) - series.valueAt(cumulative, from);
+            if (quantity != 0L)
+                counts.quantities.put(itemId, quantity);
+        });
+        return counts;
+    }
+
+    /**
+     * @Title: append
+     * @Description: Extend the index up to newEndBucket (exclusive) with the counts of the new buckets.
+     * @param newEndBucket
+     * @param countsByStageAndBucket Key of the outer map is stageId, key of the inner map is bucket number. All
+     *            buckets must be in [endBucket, newEndBucket).
+     * @return DropPrefixSumIndex
+     */
+    public DropPrefixSumIndex append(long newEndBucket, Map<String, Map<Long, Counts>> countsByStageAndBucket) {
+        if (newEndBucket < endBucket)
+            throw new IllegalArgumentException("newEndBucket " + newEndBucket + " is before endBucket " + endBucket);
+        Map<String, StageSeries> newStages = new HashMap<>(stages);
+        countsByStageAndBucket.forEach((stageId, countsByBucket) -> {
+            if (countsByBucket.isEmpty())
+                return;
+            for (Long bucket : countsByBucket.keySet()) {
+                if (bucket < endBucket || bucket >= newEndBucket)
+                    throw new IllegalArgumentException("bucket " + bucket + " is out of [" + endBucket + ", "
+                            + newEndBucket + ")");
+            }
+            newStages.put(stageId, StageSeries.extend(stages.get(stageId), countsByBucket));
+        });
+        return new DropPrefixSumIndex(granularity, offset, firstBucket, newEndBucket,
+                Collections.unmodifiableMap(newStages));
+    }
+
+    /**
+     * @Title: replaceStage
+     * @Description: Rebuild the series of one stage from the counts of all its buckets, e.g. after some of its
+     *               reports are removed.
+     * @param stageId
+     * @param countsByBucket Key is bucket number. All buckets must be in [firstBucket, endBucket).
+     * @return DropPrefixSumIndex
+     */
+    public DropPrefixSumIndex replaceStage(String stageId, Map<Long, Counts> countsByBucket) {
+        for (Long bucket : countsByBucket.keySet()) {
+            if (bucket < firstBucket || bucket >= endBucket)
+                throw new IllegalArgumentException("bucket " + bucket + " is out of [" + firstBucket + ", "
+                        + endBucket + ")");
+        }
+        Map<String, StageSeries> newStages = new HashMap<>(stages);
+        if (countsByBucket.isEmpty())
+            newStages.remove(stageId);
+        else
+            newStages.put(stageId, StageSeries.extend(null, countsByBucket));
+        return new DropPrefixSumIndex(granularity, offset, firstBucket, endBucket,
+                Collections.unmodifiableMap(newStages));
+    }
+
+    public void writeTo(DataOutputStream out) throws IOException {
+        out.writeInt(FORMAT_VERSION);
+        out.writeLong(granularity);
+        out.writeLong(offset);
+        out.writeLong(firstBucket);
+        out.writeLong(endBucket);
+        out.writeInt(stages.size());
+        for (Map.Entry<String, StageSeries> entry : stages.entrySet()) {
+            StageSeries series = entry.getValue();
+            out.writeUTF(entry.getKey());
+            out.writeLong(series.startBucket);
+            out.writeInt(series.length());
+            writeDeltas(out, series.times);
+            out.writeInt(series.quantities.size());
+            for (Map.Entry<String, long[]> itemEntry : series.quantities.entrySet()) {
+                out.writeUTF(itemEntry.getKey());
+                writeDeltas(out, itemEntry.getValue());
+            }
+        }
+    }
+
+    public static DropPrefixSumIndex readFrom(DataInputStream in) throws IOException {
+        int version = in.readInt();
+        if (version != FORMAT_VERSION)
+            throw new IOException("Unsupported index format version " + version);
+        long granularity = in.readLong();
+        long offset = in.readLong();
+        long firstBucket = in.readLong();
+        long endBucket = in.readLong();
+        int stageNum = in.readInt();
+        Map<String, StageSeries> stages = new HashMap<>(stageNum * 2);
+        for (int i = 0; i < stageNum; i++) {
+            String stageId = in.readUTF();
+            long startBucket = in.readLong();
+            int length = in.readInt();
+            long[] times = readDeltas(in, length);
+            int itemNum = in.readInt();
+            Map<String, long[]> quantities = new HashMap<>(itemNum * 2);
+            for (int j = 0; j < itemNum; j++) {
+                String itemId = in.readUTF();
+                quantities.put(itemId, readDeltas(in, length));
+            }
+            stages.put(stageId, new StageSeries(startBucket, times, quantities));
+        }
+        return new DropPrefixSumIndex(granularity, offset, firstBucket, endBucket,
+                Collections.unmodifiableMap(stages));
+    }
+
+    /**
+     * Cumulative arrays are stored as per-bucket deltas, which are mostly small numbers or zeros and compress well.
+     */
+    private static void writeDeltas(DataOutputStream out, long[] cumulative) throws IOException {
+        for (int i = 1; i < cumulative.length; i++)
+            out.writeLong(cumulative[i] - cumulative[i - 1]);
+    }
+
+    private static long[] readDeltas(DataInputStream in, int length) throws IOException {
+        long[] cumulative = new long[length + 1];
+        for (int i = 1; i <= length; i++)
+            cumulative[i] = cumulative[i - 1] + in.readLong();
+        return cumulative;
+    }
+
+    @Getter
+    public static class Counts {
+
+        private long times;
+
+        private final Map<String, Long> quantities = new HashMap<>();
+
+        public Counts addTimes(long times) {
+            this.times += times;
+            return this;
+        }
+
+        public Counts addQuantity(String itemId, long quantity) {
+            this.quantities.merge(itemId, quantity, Long::sum);
+            return this;
+        }
+
+        public Counts add(Counts counts) {
+            this.times += counts.times;
+            counts.quantities.forEach(this::addQuantity);
+            return this;
+        }
+
+    }
+
+    /**
+     * The series of one stage only spans from its first bucket with data to its last one. Before the span all
+     * cumulative values are 0, after the span they stay at the last value.
+     */
+    private static class StageSeries {
+
+        private final long startBucket;
+
+        private final long[] times;
+
+        private final Map<String, long[]> quantities;
+
+        private StageSeries(long startBucket, long[] times, Map<String, long[]> quantities) {
+            this.startBucket = startBucket;
+            this.times = times;
+            this.quantities = quantities;
+        }
+
+        private int length() {
+            return times.length - 1;
+        }
+
+        private long valueAt(long[] cumulative, long bucket) {
+            long index = bucket - startBucket;
+            if (index <= 0)
+                return 0L;
+            if (index >= cumulative.length)
+                return cumulative[cumulative.length - 1];
+            return cumulative[(int)index];
+        }
+
+        private static StageSeries extend(StageSeries old, Map<Long, Counts> countsByBucket) {
+            long minBucket = Long.MAX_VALUE;
+            long maxBucket = Long.MIN_VALUE;
+            for (Long bucket : countsByBucket.keySet()) {
+                minBucket = Math.min(minBucket, bucket);
+                maxBucket = Math.max(maxBucket, bucket);
+            }
+            long startBucket = old == null ? minBucket : old.startBucket;
+            int oldLength = old == null ? 0 : old.length();
+            int newLength = (int)(maxBucket - startBucket + 1);
+
+            long[] times = copyAndPad(old == null ? null : old.times, newLength);
+            Map<String, long[]> quantities = new HashMap<>();
+            if (old != null)
+                old.quantities.forEach((itemId, cumulative) -> quantities.put(itemId, copyAndPad(cumulative, newLength)));
+
+            for (int i = oldLength; i < newLength; i++) {
+                Counts counts = countsByBucket.get(startBucket + i);
+                times[i + 1] = times[i] + (counts == null ? 0L : counts.times);
+                for (long[] cumulative : quantities.values())
+                    cumulative[i + 1] = cumulative[i];
+                if (counts != null) {
+                    for (Map.Entry<String, Long> entry : counts.quantities.entrySet()) {
+                        long[] cumulative = quantities.get(entry.getKey());
+                        if (cumulative == null) {
+                            cumulative = new long[newLength + 1];
+                            quantities.put(entry.getKey(), cumulative);
+                        }
+                        cumulative[i + 1] = cumulative[i] + entry.getValue();
+                    }
+                }
+            }
+            return new StageSeries(startBucket, times, quantities);
+        }
+
+        private static long[] copyAndPad(long[] cumulative, int newLength) {
+            long[] result = new long[newLength + 1];
+            if (cumulative != null) {
+                System.arraycopy(cumulative, 0, result, 0, cumulative.length);
+                long last = cumulative[cumulative.length - 1];
+                for (int i = cumulative.length; i <= newLength; i++)
+                    result[i] = last;
+            }
+            return result;
+        }
+
+    }
+
+}
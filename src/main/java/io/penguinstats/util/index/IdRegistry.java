@@ -0,0 +1,78 @@
+package io.penguinstats.util.index;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * IdRegistry assigns dense int ids to string identifiers, starting from 0 in the order they are first seen.<br>
+ * Ids are never released, so an id stays valid for the lifetime of the process. The computation layer uses ids as
+ * array indexes and primitive map keys, and converts back to strings only when building the API view.<br>
+ * {@link #STAGES} and {@link #ITEMS} are the shared registries for stageId and itemId. Servers use
+ * {@code Server.ordinal()}.
+ */
+public class IdRegistry {
+
+    public static final IdRegistry STAGES = new IdRegistry();
+
+    public static final IdRegistry ITEMS = new IdRegistry();
+
+    private final ConcurrentHashMap<String, Integer> ids = new ConcurrentHashMap<>();
+
+    private volatile String[] names = new String[64];
+
+    private int size = 0;
+
+    public int idOf(String name) {
+        Integer id = ids.get(name);
+        if (id != null)
+            return id;
+        synchronized (this) {
+            id = ids.get(name);
+            if (id != null)
+                return id;
+            String[] current = names;
+            if (size == current.length)
+                current = Arrays.copyOf(current, size * 2);
+            current[size] = name;
+            names = current;
+            id = size++;
+            ids.put(name, id);
+            return id;
+        }
+    }
+
+    /**
+     * @Title: nameOf
+     * @Description: Get the string of an id returned by idOf. The id is published to other threads through the
+     *               map in idOf, after the name is written, so reading the array here is safe.
+     * @param id
+     * @return String
+     */
+    public String nameOf(int id) {
+        return names[id];
+    }
+
+    public int size() {
+        return ids.size();
+    }
+
+    /**
+     * @Title: pairKey
+     * @Description: Pack two ids, e.g. a stage id and an item id, into one primitive key.
+     * @param high
+     * @param low
+     * @return long
+     */
+    public static long pairKey(int high, int low) {
+        return ((long)high << 32) | (low & 0xFFFFFFFFL);
+    }
+
+    public static int highOf(long pairKey) {
+        return (int)(pairKey >>> 32);
+    }
+
+    public static int lowOf(long pairKey) {
+        return (int)pairKey;
+    }
+
+}
@@ -0,0 +1,78 @@
+package io.penguinstats.util.index;
+
+import java.util.Arrays;
+
+/**
+ * LongIntMap is an open-addressing hash map from primitive long keys to non-negative int values, used to look up
+ * array positions by {@link IdRegistry#pairKey(int, int)} without boxing. It does not support removal and is not
+ * thread-safe.
+ */
+public class LongIntMap {
+
+    public static final int NO_VALUE = -1;
+
+    private static final float LOAD_FACTOR = 0.5f;
+
+    private long[] keys;
+
+    private int[] values;
+
+    private int size;
+
+    public LongIntMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(4, (int)(expectedSize / LOAD_FACTOR)) - 1) << 1;
+        this.keys = new long[capacity];
+        this.values = new int[capacity];
+        Arrays.fill(values, NO_VALUE);
+    }
+
+    public int get(long key) {
+        return values[indexOf(key)];
+    }
+
+    public void put(long key, int value) {
+        int index = indexOf(key);
+        if (values[index] == NO_VALUE) {
+            keys[index] = key;
+            if (++size > keys.length * LOAD_FACTOR) {
+                values[index] = value;
+                resize();
+                return;
+            }
+        }
+        values[index] = value;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private int indexOf(long key) {
+        int mask = keys.length - 1;
+        int index = mix(key) & mask;
+        while (values[index] != NO_VALUE && keys[index] != key)
+            index = (index + 1) & mask;
+        return index;
+    }
+
+    private void resize() {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new long[oldKeys.length * 2];
+        values = new int[oldKeys.length * 2];
+        Arrays.fill(values, NO_VALUE);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldValues[i] != NO_VALUE) {
+                int index = indexOf(oldKeys[i]);
+                keys[index] = oldKeys[i];
+                values[index] = oldValues[i];
+            }
+        }
+    }
+
+    private static int mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int)(h ^ (h >>> 32));
+    }
+
+}
@@ -0,0 +1,57 @@
+package io.penguinstats.util.misc;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * GenerationalCache is a bounded, lock-free cache with approximate LRU eviction.<br>
+ * Entries are put into the current generation. Once it holds generationSize entries it becomes the previous
+ * generation and the old previous one is dropped as a whole. A hit in the previous generation copies the entry into
+ * the current one, so entries read at least once per generation survive. At most about 2 * generationSize entries
+ * are kept. Null keys and values are not allowed.
+ */
+public class GenerationalCache<K, V> {
+
+    private final int generationSize;
+
+    private final AtomicReference<Generations<K, V>> generations;
+
+    public GenerationalCache(int generationSize) {
+        this.generationSize = Math.max(1, generationSize);
+        this.generations =
+                new AtomicReference<>(new Generations<>(new ConcurrentHashMap<>(), new ConcurrentHashMap<>()));
+    }
+
+    public V get(K key) {
+        Generations<K, V> current = generations.get();
+        V value = current.current.get(key);
+        if (value != null)
+            return value;
+        value = current.previous.get(key);
+        if (value != null)
+            put(key, value);
+        return value;
+    }
+
+    public void put(K key, V value) {
+        Generations<K, V> current = generations.get();
+        current.current.put(key, value);
+        if (current.current.size() >= generationSize)
+            generations.compareAndSet(current, new Generations<>(new ConcurrentHashMap<>(), current.current));
+    }
+
+    private static class Generations<K, V> {
+
+        private final Map<K, V> current;
+
+        private final Map<K, V> previous;
+
+        private Generations(Map<K, V> current, Map<K, V> previous) {
+            this.current = current;
+            this.previous = previous;
+        }
+
+    }
+
+}
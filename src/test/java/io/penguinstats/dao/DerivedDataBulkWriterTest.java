@@ -0,0 +1,31 @@
+package io.penguinstats.dao;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.mongodb.WriteConcern;
+
+public class DerivedDataBulkWriterTest {
+
+    private DerivedDataBulkWriter writer(String writeConcernName) {
+        DerivedDataBulkWriter writer = new DerivedDataBulkWriter();
+        ReflectionTestUtils.setField(writer, "writeConcernName", writeConcernName);
+        writer.init();
+        return writer;
+    }
+
+    @Test
+    public void testWriteConcern() {
+        assertEquals(WriteConcern.UNACKNOWLEDGED, ReflectionTestUtils.getField(writer("unacknowledged"),
+                "writeConcern"));
+        assertEquals(WriteConcern.MAJORITY, ReflectionTestUtils.getField(writer("MAJORITY"), "writeConcern"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownWriteConcern() {
+        writer("W_ONE");
+    }
+
+}
@@ -0,0 +1,63 @@
+package io.penguinstats.dao;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.Test;
+
+import io.penguinstats.dao.ItemDropDaoCustomImpl.Schema;
+import io.penguinstats.model.ItemDrop;
+
+public class ItemDropDaoCustomImplTest {
+
+	private ItemDrop report(ObjectId id, long timestamp) {
+		return new ItemDrop().setId(id).setTimestamp(timestamp);
+	}
+
+	@Test
+	public void testHistoryCursor() {
+		ObjectId beforeId = new ObjectId();
+		Document compact = new Document("$or",
+				Arrays.asList(new Document("ts", new Document("$lt", 100L)), new Document("$and",
+						Arrays.asList(new Document("ts", 100L), new Document("_id", new Document("$lt", beforeId))))));
+		assertEquals(compact.toJson(),
+				ItemDropDaoCustomImpl.historyCursor(Schema.COMPACT, 100L, beforeId).getCriteriaObject().toJson());
+
+		// a legacy report is only matched on the full name while it has no compact one
+		Document legacy = new Document("$or", Arrays.asList(
+				new Document("timestamp", new Document("$lt", 100L)).append("ts", new Document("$exists", false)),
+				new Document("$and",
+						Arrays.asList(new Document("timestamp", 100L).append("ts", new Document("$exists", false)),
+								new Document("_id", new Document("$lt", beforeId))))));
+		assertEquals(legacy.toJson(),
+				ItemDropDaoCustomImpl.historyCursor(Schema.LEGACY, 100L, beforeId).getCriteriaObject().toJson());
+	}
+
+	@Test
+	public void testMigrationFilter() {
+		ObjectId id = new ObjectId();
+		Document doc = new Document("_id", id).append("isDeleted", false).append("isReliable", true);
+		Document filter = new Document("$and",
+				Arrays.asList(new Document("_id", id), new Document("del", new Document("$exists", false)),
+						new Document("isDeleted", false), new Document("r", new Document("$exists", false)),
+						new Document("isReliable", true)));
+		assertEquals(filter.toJson(), ItemDropDaoCustomImpl.migrationFilter(doc).getCriteriaObject().toJson());
+	}
+
+	@Test
+	public void testNewestFirstAtCursorBoundary() {
+		ItemDrop older = report(new ObjectId(new Date(1000L), 1), 100L);
+		ItemDrop newer = report(new ObjectId(new Date(1000L), 2), 100L);
+		ItemDrop oldest = report(new ObjectId(new Date(500L), 3), 50L);
+
+		// pages of the two schemas, each already in order
+		List<ItemDrop> merged = ItemDropDaoCustomImpl.newestFirst(Arrays.asList(older, oldest, newer), 2);
+		assertEquals(Arrays.asList(newer, older), merged);
+	}
+
+}
@@ -0,0 +1,49 @@
+package io.penguinstats.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+public class DropSampleTest {
+
+	@Test
+	public void testEstimate() {
+		DropSample sample = new DropSample(100, 1000L, 0L);
+		for (int i = 0; i < 100; i++) {
+			// 30001 drops once every other run, reports are 2 runs each
+			sample.load(i, 2, Collections.singletonList(new Drop("30001", i % 2 == 0 ? 2 : 0)));
+		}
+
+		DropSample.Estimation estimation = sample.estimate(Arrays.asList("30001", "30002"), null, 10L, 60L);
+		assertEquals(50, estimation.getReports());
+		assertEquals(100L, estimation.getTimes());
+		Map<String, DropSample.Estimate> estimates = estimation.getEstimates().stream()
+				.collect(Collectors.toMap(DropSample.Estimate::getItemId, estimate -> estimate));
+
+		DropSample.Estimate dropped = estimates.get("30001");
+		assertEquals(0.5, dropped.getRate(), 1e-9);
+		assertTrue(dropped.getLower() < 0.5 && dropped.getUpper() > 0.5);
+
+		DropSample.Estimate notDropped = estimates.get("30002");
+		assertEquals(0.0, notDropped.getRate(), 1e-9);
+		assertEquals(0.03, notDropped.getUpper(), 1e-9);
+
+		assertEquals(1, sample.estimate(null, Collections.singletonList("30001"), null, null).getEstimates().size());
+	}
+
+	@Test
+	public void testOfferKeepsCapacity() {
+		DropSample sample = new DropSample(10, 0L, 0L);
+		for (int i = 0; i < 1000; i++)
+			sample.offer(i, 1, null);
+		assertEquals(10, sample.size());
+		assertEquals(1000L, sample.getPopulation());
+	}
+
+}
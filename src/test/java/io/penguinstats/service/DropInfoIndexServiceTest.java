@@ -0,0 +1,62 @@
+package io.penguinstats.service;
+
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import io.penguinstats.enums.DropType;
+import io.penguinstats.enums.Server;
+import io.penguinstats.model.DropInfo;
+import io.penguinstats.model.TimeRange;
+import io.penguinstats.util.index.DropInfoIntervalIndex;
+
+public class DropInfoIndexServiceTest {
+
+    private DropInfoIndexServiceImpl dropInfoIndexService;
+
+    private DropInfoService dropInfoService;
+
+    private TimeRangeService timeRangeService;
+
+    @Before
+    public void setUp() {
+        dropInfoService = mock(DropInfoService.class);
+        timeRangeService = mock(TimeRangeService.class);
+        dropInfoIndexService = new DropInfoIndexServiceImpl();
+        ReflectionTestUtils.setField(dropInfoIndexService, "dropInfoService", dropInfoService);
+        ReflectionTestUtils.setField(dropInfoIndexService, "timeRangeService", timeRangeService);
+        // every call rebuilds the index
+        ReflectionTestUtils.setField(dropInfoIndexService, "maxAge", -1L);
+    }
+
+    private List<DropInfo> dropInfos(String itemId) {
+        return Arrays.asList(new DropInfo(null, Server.CN, "main_01-07", itemId, DropType.NORMAL_DROP, "r1", null,
+                true, null));
+    }
+
+    private Map<String, TimeRange> timeRangeMap() {
+        return Collections.singletonMap("r1", new TimeRange(null, "r1", 0L, null, null));
+    }
+
+    @Test
+    public void testRebuildKeepsUnchangedIndex() {
+        when(timeRangeService.getTimeRangeMap()).thenReturn(timeRangeMap(), timeRangeMap(), timeRangeMap());
+        when(dropInfoService.getDropInfosByServer(Server.CN)).thenReturn(dropInfos("30012"), dropInfos("30012"),
+                dropInfos("30013"));
+
+        DropInfoIntervalIndex index = dropInfoIndexService.getIndex(Server.CN);
+        assertSame(index, dropInfoIndexService.getIndex(Server.CN));
+        assertNotSame(index, dropInfoIndexService.getIndex(Server.CN));
+    }
+
+}
@@ -0,0 +1,69 @@
+package io.penguinstats.service;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SetOperations;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import io.penguinstats.dao.ItemDropDao;
+import io.penguinstats.enums.Server;
+import io.penguinstats.model.QueryConditions;
+
+public class DropTimeIndexServiceTest {
+
+    private static final long DAY = 86400000L;
+
+    private DropTimeIndexServiceImpl dropTimeIndexService;
+
+    private ValueOperations<String, Object> valueOps;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        ItemDropDao itemDropDao = mock(ItemDropDao.class);
+        when(itemDropDao.findFirstReliableTimestamp()).thenReturn(System.currentTimeMillis() - 5 * DAY);
+        RedisTemplate<String, Object> redisTemplate = mock(RedisTemplate.class);
+        valueOps = mock(ValueOperations.class);
+        SetOperations<String, Object> setOps = mock(SetOperations.class);
+        when(redisTemplate.opsForValue()).thenReturn(valueOps);
+        when(redisTemplate.opsForSet()).thenReturn(setOps);
+        when(setOps.members("drop_time_index_stages::CN")).thenReturn(Collections.singleton("main_01-07"));
+
+        dropTimeIndexService = new DropTimeIndexServiceImpl();
+        ReflectionTestUtils.setField(dropTimeIndexService, "itemDropDao", itemDropDao);
+        ReflectionTestUtils.setField(dropTimeIndexService, "redisTemplate", redisTemplate);
+        ReflectionTestUtils.setField(dropTimeIndexService, "granularity", DAY);
+        ReflectionTestUtils.setField(dropTimeIndexService, "offset", 0L);
+        ReflectionTestUtils.setField(dropTimeIndexService, "settle", DAY);
+        ReflectionTestUtils.setField(dropTimeIndexService, "rebuildInterval", 7 * DAY);
+        ReflectionTestUtils.setField(dropTimeIndexService, "path", "");
+    }
+
+    @Test
+    public void testFullBuildStartsFromCurrentVersions() {
+        // the stage had removals before this instance started
+        when(valueOps.multiGet(anyList())).thenReturn(Arrays.asList(3L));
+        dropTimeIndexService.refresh();
+
+        long now = System.currentTimeMillis();
+        QueryConditions conditions =
+                new QueryConditions().addServer(Server.CN).addStage("main_01-07", now - 4 * DAY, now);
+        assertNotNull(dropTimeIndexService.aggregateItemDrops(conditions));
+
+        // a later removal declines the stage until it is resynced
+        when(valueOps.multiGet(anyList())).thenReturn(Arrays.asList(4L));
+        assertNull(dropTimeIndexService.aggregateItemDrops(conditions));
+    }
+
+}
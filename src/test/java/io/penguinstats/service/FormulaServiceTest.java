@@ -0,0 +1,66 @@
+package io.penguinstats.service;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.penguinstats.model.EncodedDocument;
+import io.penguinstats.model.Formula;
+import io.penguinstats.util.exception.ServiceException;
+
+public class FormulaServiceTest {
+
+    private FormulaServiceImpl formulaService;
+
+    @Before
+    public void setUp() {
+        formulaService = new FormulaServiceImpl();
+        ReflectionTestUtils.setField(formulaService, "objectMapper", new ObjectMapper());
+        ReflectionTestUtils.setField(formulaService, "path", "");
+    }
+
+    @Test
+    public void testLoadBundledFormula() throws Exception {
+        formulaService.init();
+        List<Formula> formulas = formulaService.getFormulas();
+        assertFalse(formulas.isEmpty());
+
+        EncodedDocument document = formulaService.getDocument();
+        List<?> reparsed = new ObjectMapper().readValue(document.getJson(), List.class);
+        assertEquals(formulas.size(), reparsed.size());
+        assertFalse(formulaService.reloadIfModified());
+        assertSame(document, formulaService.getDocument());
+    }
+
+    @Test
+    public void testInvalidReloadKeepsCurrent() throws Exception {
+        formulaService.init();
+        EncodedDocument document = formulaService.getDocument();
+
+        File file = File.createTempFile("formula", ".json");
+        file.deleteOnExit();
+        Files.write(file.toPath(),
+                "[{\"id\":\"30135\",\"goldCost\":400,\"costs\":[{\"id\":\"30084\",\"count\":1}],\"extraOutcome\":[{\"id\":\"30014\",\"weight\":84}],\"totalWeight\":1}]"
+                        .getBytes(StandardCharsets.UTF_8));
+        ReflectionTestUtils.setField(formulaService, "path", file.getAbsolutePath());
+        try {
+            formulaService.reloadIfModified();
+        } catch (ServiceException e) {
+            // expected, totalWeight does not match
+        }
+        assertArrayEquals(document.getJson(), formulaService.getDocument().getJson());
+    }
+
+}
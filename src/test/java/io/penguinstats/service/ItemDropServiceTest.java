@@ -0,0 +1,66 @@
+package io.penguinstats.service;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Optional;
+
+import org.bson.types.ObjectId;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import io.penguinstats.dao.ItemDropDao;
+import io.penguinstats.enums.Server;
+import io.penguinstats.model.ItemDrop;
+
+public class ItemDropServiceTest {
+
+    private ItemDropServiceImpl itemDropService;
+
+    private ItemDropDao itemDropDao;
+
+    private UserUploadStatsService userUploadStatsService;
+
+    private PersonalMatrixService personalMatrixService;
+
+    private DropTimeIndexService dropTimeIndexService;
+
+    private CustomQueryCacheService customQueryCacheService;
+
+    @Before
+    public void setUp() {
+        itemDropDao = mock(ItemDropDao.class);
+        userUploadStatsService = mock(UserUploadStatsService.class);
+        personalMatrixService = mock(PersonalMatrixService.class);
+        dropTimeIndexService = mock(DropTimeIndexService.class);
+        customQueryCacheService = mock(CustomQueryCacheService.class);
+        itemDropService = new ItemDropServiceImpl();
+        ReflectionTestUtils.setField(itemDropService, "itemDropDao", itemDropDao);
+        ReflectionTestUtils.setField(itemDropService, "userUploadStatsService", userUploadStatsService);
+        ReflectionTestUtils.setField(itemDropService, "personalMatrixService", personalMatrixService);
+        ReflectionTestUtils.setField(itemDropService, "dropTimeIndexService", dropTimeIndexService);
+        ReflectionTestUtils.setField(itemDropService, "customQueryCacheService", customQueryCacheService);
+    }
+
+    @Test
+    public void testConcurrentDeletesRemoveOnce() throws Exception {
+        ObjectId id = new ObjectId();
+        // both deletes read the report before either of them has set the flag
+        when(itemDropDao.findById(id.toString())).thenAnswer(invocation -> Optional.of(new ItemDrop().setId(id)
+                .setUserID("user").setServer(Server.CN).setStageId("main_01-07").setIsReliable(true)));
+        when(itemDropDao.markDeleted(id)).thenReturn(true, false);
+
+        itemDropService.deleteItemDrop("user", id.toString());
+        itemDropService.deleteItemDrop("user", id.toString());
+
+        verify(userUploadStatsService, times(1)).recordRemoval(any());
+        verify(personalMatrixService, times(1)).applyRemoval(any());
+        verify(dropTimeIndexService, times(1)).applyRemoval(any());
+        verify(customQueryCacheService, times(1)).invalidateStage(Server.CN, "main_01-07");
+    }
+
+}
@@ -0,0 +1,157 @@
+package io.penguinstats.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import io.penguinstats.enums.DropMatrixElementType;
+import io.penguinstats.enums.Server;
+import io.penguinstats.model.Drop;
+import io.penguinstats.model.DropMatrix;
+import io.penguinstats.model.DropMatrixElement;
+import io.penguinstats.model.ItemDrop;
+import io.penguinstats.model.MatrixPlan;
+import io.penguinstats.model.TimeRange;
+import io.penguinstats.util.DropMatrixElementUtil;
+
+public class PersonalMatrixServiceTest {
+
+    private static final String USER_ID = "user";
+
+    private PersonalMatrixServiceImpl personalMatrixService;
+
+    private DropMatrixElementService dropMatrixElementService;
+
+    private MatrixPlan plan;
+
+    private DropInfoService dropInfoService;
+
+    /**
+     * Reports of the user as they are in the database.
+     */
+    private final List<ItemDrop> reports = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        Map<String, TimeRange> timeRangeMap = new HashMap<>();
+        timeRangeMap.put("r0", new TimeRange(null, "r0", 0L, 500L, null));
+        timeRangeMap.put("r1", new TimeRange(null, "r1", 500L, 1000L, null));
+        timeRangeMap.put("r2", new TimeRange(null, "r2", 1000L, null, null));
+        Map<String, Map<String, List<String>>> timeRangeIDsMap = new HashMap<>();
+        Map<String, List<String>> mainRanges = new HashMap<>();
+        mainRanges.put("30012", Arrays.asList("r0", "r1", "r2"));
+        mainRanges.put("30013", Arrays.asList("r2"));
+        timeRangeIDsMap.put("main_01-07", mainRanges);
+        timeRangeIDsMap.put("act_01", Collections.singletonMap("30012", Arrays.asList("r1")));
+        plan = MatrixPlan.compile(Server.CN, timeRangeIDsMap, timeRangeMap, System.currentTimeMillis());
+
+        MatrixPlanService matrixPlanService = mock(MatrixPlanService.class);
+        when(matrixPlanService.getPlan(Server.CN)).thenReturn(plan);
+        dropInfoService = mock(DropInfoService.class);
+        when(dropInfoService.getDropSet(eq(Server.CN), anyString(), anyLong()))
+                .thenReturn(new HashSet<>(Arrays.asList("30012", "30013")));
+        dropMatrixElementService = mock(DropMatrixElementService.class);
+        when(dropMatrixElementService.generateGlobalDropMatrixElements(eq(Server.CN), eq(USER_ID), anyBoolean()))
+                .thenAnswer(invocation -> fullBuild(invocation.getArgument(2)));
+
+        personalMatrixService = new PersonalMatrixServiceImpl();
+        ReflectionTestUtils.setField(personalMatrixService, "dropMatrixElementService", dropMatrixElementService);
+        ReflectionTestUtils.setField(personalMatrixService, "matrixPlanService", matrixPlanService);
+        ReflectionTestUtils.setField(personalMatrixService, "dropInfoService", dropInfoService);
+        ReflectionTestUtils.setField(personalMatrixService, "ttl", 600000L);
+        ReflectionTestUtils.setField(personalMatrixService, "maxBytes", 67108864L);
+    }
+
+    /**
+     * What generateGlobalDropMatrixElements aggregates from the reports: per slice of the plan, every item of the
+     * stage slice in the drop set, for stages which have reports in the range.
+     */
+    private List<DropMatrixElement> fullBuild(boolean isPast) {
+        DropMatrix matrix = new DropMatrix(DropMatrixElementType.REGULAR, Server.CN, isPast, 0);
+        for (MatrixPlan.Slice slice : plan.getSlices(isPast)) {
+            slice.getStages().forEach((stageId, stageSlice) -> {
+                TimeRange range = stageSlice.getRange();
+                List<ItemDrop> inRange = reports.stream()
+                        .filter(report -> report.getStageId().equals(stageId) && range.isIn(report.getTimestamp()))
+                        .collect(Collectors.toList());
+                if (inRange.isEmpty())
+                    return;
+                int times = inRange.stream().mapToInt(ItemDrop::getTimes).sum();
+                for (String itemId : dropInfoService.getDropSet(Server.CN, stageId, range.getStart())) {
+                    if (stageSlice.getItemIds().contains(itemId))
+                        matrix.add(stageId, itemId, inRange.stream().mapToInt(r -> r.getDropQuantity(itemId)).sum(),
+                                times, range.getStart(), range.getEnd(), 0L);
+                }
+            });
+        }
+        return matrix.toElements();
+    }
+
+    private ItemDrop report(String stageId, long timestamp, Drop... drops) {
+        return new ItemDrop().setUserID(USER_ID).setServer(Server.CN).setStageId(stageId).setTimestamp(timestamp)
+                .setTimes(1).setDrops(Arrays.asList(drops));
+    }
+
+    private List<String> cells(DropMatrix matrix) {
+        return matrix.toElements().stream()
+                .map(el -> el.getStageId() + "/" + el.getItemId() + " " + el.getQuantity() + "/" + el.getTimes() + " "
+                        + el.getStart() + "-" + el.getEnd() + " " + el.getIsPast())
+                .sorted().collect(Collectors.toList());
+    }
+
+    private void assertEqualsFullBuild() throws Exception {
+        DropMatrix expected = DropMatrixElementUtil.combineIntoMatrix(fullBuild(true), fullBuild(false));
+        assertEquals(cells(expected), cells(personalMatrixService.getPersonalMatrix(Server.CN, USER_ID, null, null)));
+    }
+
+    @Test
+    public void testDeltasEqualFullBuild() throws Exception {
+        ItemDrop past = report("main_01-07", 100L, new Drop("30012", 2));
+        ItemDrop act = report("act_01", 700L, new Drop("30012", 1));
+        reports.addAll(Arrays.asList(past, report("main_01-07", 600L, new Drop("30012", 1)), act));
+        assertEqualsFullBuild();
+
+        // the first current report adds the current cell of 30013
+        List<ItemDrop> uploads = Arrays.asList(report("main_01-07", 3000L, new Drop("30012", 3)),
+                report("act_01", 800L), report("main_01-07", 300L, new Drop("30013", 1)));
+        reports.addAll(uploads);
+        personalMatrixService.applyReports(uploads);
+        assertEqualsFullBuild();
+
+        reports.remove(past);
+        personalMatrixService.applyRemoval(past);
+        assertEqualsFullBuild();
+        // all of the above are served from the cached entry
+        verify(dropMatrixElementService, times(2)).generateGlobalDropMatrixElements(eq(Server.CN), eq(USER_ID),
+                anyBoolean());
+
+        // emptying a cell drops the entry, which is then built again
+        reports.remove(act);
+        personalMatrixService.applyRemoval(act);
+        reports.remove(uploads.get(1));
+        personalMatrixService.applyRemoval(uploads.get(1));
+        assertEqualsFullBuild();
+        verify(dropMatrixElementService, times(4)).generateGlobalDropMatrixElements(eq(Server.CN), eq(USER_ID),
+                anyBoolean());
+    }
+
+}
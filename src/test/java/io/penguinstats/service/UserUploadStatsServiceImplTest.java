@@ -0,0 +1,34 @@
+package io.penguinstats.service;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Date;
+
+import org.bson.types.ObjectId;
+import org.junit.Test;
+
+import io.penguinstats.model.ItemDrop;
+
+public class UserUploadStatsServiceImplTest {
+
+    @Test
+    public void testIsCounted() {
+        long countingSince = 1600000000500L;
+
+        ItemDrop before = new ItemDrop();
+        before.setId(new ObjectId(new Date(1599999999000L), 1));
+        assertFalse(UserUploadStatsServiceImpl.isCounted(before, countingSince));
+
+        ItemDrop sameSecond = new ItemDrop();
+        sameSecond.setId(new ObjectId(new Date(1600000000000L), 1));
+        assertTrue(UserUploadStatsServiceImpl.isCounted(sameSecond, countingSince));
+
+        ItemDrop after = new ItemDrop();
+        after.setId(new ObjectId(new Date(1600000001000L), 1));
+        assertTrue(UserUploadStatsServiceImpl.isCounted(after, countingSince));
+
+        assertFalse(UserUploadStatsServiceImpl.isCounted(new ItemDrop(), countingSince));
+    }
+
+}
@@ -0,0 +1,65 @@
+package io.penguinstats.util;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+import io.penguinstats.enums.DropMatrixElementType;
+import io.penguinstats.enums.Server;
+import io.penguinstats.model.DropMatrix;
+
+public class ColumnarMatrixWriterTest {
+
+	private static long readVarint(ByteArrayInputStream in) {
+		long result = 0;
+		int shift = 0;
+		int b;
+		do {
+			b = in.read();
+			result |= (long)(b & 0x7F) << shift;
+			shift += 7;
+		} while ((b & 0x80) != 0);
+		return result;
+	}
+
+	private static String readString(ByteArrayInputStream in) {
+		byte[] bytes = new byte[(int)readVarint(in)];
+		in.read(bytes, 0, bytes.length);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	@Test
+	public void testWriteMatrix() throws Exception {
+		DropMatrix matrix = new DropMatrix(DropMatrixElementType.REGULAR, Server.CN, null, 4);
+		matrix.add("main_01-07", "30012", 300, 1000, 1556676000000L, null, 0L);
+		matrix.add("main_04-04", "30062", 1, 5, 1556676000000L, 1556676000100L, 0L);
+		matrix.add("main_01-07", "30062", 7, 1000, 1556676000000L, null, 0L);
+		int[] positions = {0, 1, 2};
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ColumnarMatrixWriter.writeMatrix(matrix, positions, positions.length, out);
+		ByteArrayInputStream in = new ByteArrayInputStream(out.toByteArray());
+
+		assertEquals(ColumnarMatrixWriter.VERSION, readVarint(in));
+		assertEquals(2, readVarint(in));
+		assertEquals("main_01-07", readString(in));
+		assertEquals("main_04-04", readString(in));
+		assertEquals(2, readVarint(in));
+		assertEquals("30012", readString(in));
+		assertEquals("30062", readString(in));
+		assertEquals(3, readVarint(in));
+
+		long[][] rows = {{0, 0, 300, 1000, 1556676000000L, 0}, {1, 1, 1, 5, 1556676000000L, 101},
+				{0, 1, 7, 1000, 1556676000000L, 0}};
+		for (long[] row : rows) {
+			for (long value : row)
+				assertEquals(value, readVarint(in));
+		}
+		assertEquals(0, in.available());
+	}
+
+}
@@ -0,0 +1,55 @@
+package io.penguinstats.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+import io.penguinstats.enums.DropMatrixElementType;
+import io.penguinstats.enums.Server;
+import io.penguinstats.model.DropMatrixElement;
+
+public class DropMatrixElementUtilTest {
+
+	private DropMatrixElement element(String stageId, String itemId, int quantity, int times, long start, Long end,
+			boolean isPast) {
+		return new DropMatrixElement(DropMatrixElementType.REGULAR, stageId, itemId, quantity, times, start, end,
+				Server.CN, isPast, start);
+	}
+
+	@Test
+	public void testCombineElementLists() {
+		List<DropMatrixElement> past = Arrays.asList(element("main_01-07", "30012", 10, 20, 0L, 100L, true),
+				element("main_01-07", "30012", 99, 99, 0L, 100L, true),
+				element("main_04-04", "30062", 1, 5, 50L, 100L, true));
+		List<DropMatrixElement> current = Arrays.asList(element("main_01-07", "30012", 3, 4, 100L, null, false),
+				element("act_01", "30012", 2, 2, 100L, null, false));
+
+		Map<String, DropMatrixElement> result = DropMatrixElementUtil.combineElementLists(past, current).stream()
+				.collect(Collectors.toMap(el -> el.getStageId() + "/" + el.getItemId(), el -> el));
+		assertEquals(3, result.size());
+
+		DropMatrixElement combined = result.get("main_01-07/30012");
+		assertEquals(13, combined.getQuantity().intValue());
+		assertEquals(24, combined.getTimes().intValue());
+		assertEquals(0L, combined.getStart().longValue());
+		assertNull(combined.getEnd());
+		assertEquals(100L, combined.getUpdateTime().longValue());
+
+		assertEquals(100L, result.get("main_04-04/30062").getEnd().longValue());
+		assertEquals(2, result.get("act_01/30012").getQuantity().intValue());
+
+		// each cell keeps the isPast of its first element
+		assertTrue(combined.getIsPast());
+		assertTrue(result.get("main_04-04/30062").getIsPast());
+		assertFalse(result.get("act_01/30012").getIsPast());
+	}
+
+}
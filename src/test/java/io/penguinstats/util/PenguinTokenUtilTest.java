@@ -0,0 +1,58 @@
+package io.penguinstats.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Base64;
+
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import io.penguinstats.constant.Constant.UserTag;
+import io.penguinstats.model.AuthPrincipal;
+
+public class PenguinTokenUtilTest {
+
+	private PenguinTokenUtil tokenUtil(String keys, long ttl) {
+		PenguinTokenUtil tokenUtil = new PenguinTokenUtil();
+		ReflectionTestUtils.setField(tokenUtil, "keys", PenguinTokenUtil.parseKeys(keys, ttl, Long.MAX_VALUE / 2));
+		return tokenUtil;
+	}
+
+	@Test
+	public void testIssueAndVerify() {
+		PenguinTokenUtil tokenUtil = tokenUtil("k2:new-secret,k1:old-secret", 3600L);
+		String token = tokenUtil.issue("12345678", Arrays.asList(UserTag.TESTER, "bad|tag"));
+		assertNotNull(token);
+
+		AuthPrincipal principal = tokenUtil.verify(token);
+		assertEquals("12345678", principal.getUserID());
+		assertTrue(principal.hasTag(UserTag.TESTER));
+		assertEquals(1, principal.getTags().size());
+
+		// still accepted after k3 is put in front
+		assertNotNull(tokenUtil("k3:newest,k2:new-secret", 3600L).verify(token));
+		// rejected once k2 is removed
+		assertNull(tokenUtil("k3:newest", 3600L).verify(token));
+	}
+
+	@Test
+	public void testRejectForgedOrExpired() {
+		PenguinTokenUtil tokenUtil = tokenUtil("k1:secret", 3600L);
+		String token = tokenUtil.issue("12345678", null);
+		String[] parts = token.split("\\.");
+		String forgedPayload = Base64.getUrlEncoder().withoutPadding()
+				.encodeToString(("87654321||" + Long.MAX_VALUE).getBytes());
+		assertNull(tokenUtil.verify(parts[0] + "." + parts[1] + "." + forgedPayload + "." + parts[3]));
+		assertNull(tokenUtil.verify("garbage"));
+		assertNull(tokenUtil.verify(token + "x"));
+
+		PenguinTokenUtil expired = tokenUtil("k1:secret", -1L);
+		assertNull(expired.verify(expired.issue("12345678", null)));
+		assertNull(tokenUtil("", 3600L).issue("12345678", null));
+	}
+
+}
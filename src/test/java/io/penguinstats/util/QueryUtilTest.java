@@ -0,0 +1,64 @@
+package io.penguinstats.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import io.penguinstats.model.MatrixElement;
+
+public class QueryUtilTest {
+
+	@Test
+	public void testKeyOf() {
+		assertEquals(QueryUtil.keyOf("matrix", "main_01-07", Arrays.asList("30012", "30011", "30012"), 1L, null),
+				QueryUtil.keyOf("matrix", "main_01-07", Arrays.asList("30011", "30012"), 1L, null));
+		assertEquals(QueryUtil.keyOf("matrix", Collections.emptyList()), QueryUtil.keyOf("matrix", null));
+		assertNotEquals(QueryUtil.keyOf("matrix", 1L, null), QueryUtil.keyOf("matrix", null, 1L));
+	}
+
+	@Test
+	public void testConcurrentQueriesShareOneRun() throws Exception {
+		Object key = QueryUtil.keyOf("test", System.nanoTime());
+		AtomicInteger runs = new AtomicInteger();
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		List<MatrixElement> result = Collections.emptyList();
+		ExecutorService callers = Executors.newFixedThreadPool(4);
+		try {
+			Future<List<? extends MatrixElement>> first = callers.submit(() -> QueryUtil.runQuery(key, () -> {
+				runs.incrementAndGet();
+				started.countDown();
+				release.await();
+				return result;
+			}, 1));
+			started.await();
+			Future<List<? extends MatrixElement>> second = callers.submit(() -> QueryUtil.runQuery(key, () -> {
+				runs.incrementAndGet();
+				return Collections.emptyList();
+			}, 1));
+			release.countDown();
+			assertSame(result, first.get());
+			assertSame(result, second.get());
+			// completed just now, so it is still reused
+			assertSame(result, QueryUtil.runQuery(key, () -> {
+				runs.incrementAndGet();
+				return Collections.emptyList();
+			}, 1));
+			assertEquals(1, runs.get());
+		} finally {
+			callers.shutdownNow();
+		}
+	}
+
+}
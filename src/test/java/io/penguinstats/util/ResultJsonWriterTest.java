@@ -0,0 +1,67 @@
+package io.penguinstats.util;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.penguinstats.controller.v2.response.MatrixQueryResponse;
+import io.penguinstats.controller.v2.response.TrendQueryResponse;
+import io.penguinstats.enums.DropMatrixElementType;
+import io.penguinstats.enums.Server;
+import io.penguinstats.model.DropMatrix;
+import io.penguinstats.model.DropMatrixElement;
+
+public class ResultJsonWriterTest {
+
+	/**
+	 * Configured like the ObjectMapper of Spring Boot, which serialized the responses before.
+	 */
+	private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+
+	private DropMatrixElement trendElement(String stageId, String itemId, int quantity, int times, Long section) {
+		return new DropMatrixElement(null, DropMatrixElementType.TREND, stageId, itemId, quantity, times, section,
+				null, Server.CN, null, 0L);
+	}
+
+	@Test
+	public void testWriteMatrix() throws Exception {
+		DropMatrix matrix = new DropMatrix(DropMatrixElementType.REGULAR, Server.CN, true, 4);
+		matrix.add("main_01-07", "30012", 300, 1000, 1556676000000L, null, 0L);
+		matrix.add("main_04-04", "30062", 1, 5, 1556676000000L, 1556676000100L, 0L);
+		matrix.add("main_01-07", "30062", 7, 1000, 1556676000000L, null, 0L);
+		// a filtered subset, in the order of positions
+		int[] positions = {2, 1};
+
+		List<DropMatrixElement> elements = new ArrayList<>();
+		for (int position : positions)
+			elements.add(matrix.toElement(position).toResultView());
+		byte[] expected = objectMapper.writeValueAsBytes(new MatrixQueryResponse(elements));
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ResultJsonWriter.writeMatrix(matrix, positions, positions.length, out);
+		assertArrayEquals(expected, out.toByteArray());
+	}
+
+	@Test
+	public void testWriteTrend() throws Exception {
+		List<DropMatrixElement> elements = Arrays.asList(trendElement("main_01-07", "30012", 3, 10, 0L),
+				trendElement("main_01-07", "30012", 4, 12, 1L), trendElement("main_01-07", "30062", 1, 10, 0L),
+				trendElement("main_01-07", "30062", 0, 12, 1L), trendElement("act_01", "30012", 2, 5, 3L),
+				trendElement("act_02", "furni", 1, 1, null));
+		elements.forEach(DropMatrixElement::toResultView);
+		byte[] expected = objectMapper.writeValueAsBytes(new TrendQueryResponse(elements));
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ResultJsonWriter.writeTrend(elements, out);
+		assertArrayEquals(expected, out.toByteArray());
+	}
+
+}
@@ -0,0 +1,68 @@
+package io.penguinstats.util.index;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import io.penguinstats.enums.DropType;
+import io.penguinstats.enums.Server;
+import io.penguinstats.model.DropInfo;
+import io.penguinstats.model.TimeRange;
+
+public class DropInfoIntervalIndexTest {
+
+	private DropInfo dropInfo(String stageId, String itemId, DropType dropType, String timeRangeID) {
+		return new DropInfo(null, Server.CN, stageId, itemId, dropType, timeRangeID, null, true, null);
+	}
+
+	private DropInfoIntervalIndex buildIndex() {
+		Map<String, TimeRange> timeRangeMap = new HashMap<>();
+		timeRangeMap.put("r1", new TimeRange(null, "r1", 0L, 100L, null));
+		timeRangeMap.put("r2", new TimeRange(null, "r2", 100L, null, null));
+		timeRangeMap.put("event", new TimeRange(null, "event", 50L, 80L, null));
+		List<DropInfo> infos = Arrays.asList(dropInfo("main_01-07", "30012", DropType.NORMAL_DROP, "r1"),
+				dropInfo("main_01-07", "30012", DropType.NORMAL_DROP, "r2"),
+				dropInfo("main_01-07", "30013", DropType.NORMAL_DROP, "r2"),
+				dropInfo("main_01-07", "randomMaterial_1", DropType.RECOGNITION_ONLY, "r1"),
+				dropInfo("act_01", "30012", DropType.NORMAL_DROP, "event"),
+				dropInfo("act_02", "furni", DropType.RECOGNITION_ONLY, "event"),
+				dropInfo("missing", "30012", DropType.NORMAL_DROP, "unknown"));
+		return DropInfoIntervalIndex.build(infos, timeRangeMap);
+	}
+
+	@Test
+	public void testDropSet() {
+		DropInfoIntervalIndex index = buildIndex();
+		assertTrue(index.getDropSet("main_01-07", -1L).isEmpty());
+		assertEquals(new HashSet<>(Arrays.asList("30012")), index.getDropSet("main_01-07", 99L));
+		assertEquals(new HashSet<>(Arrays.asList("30012", "30013")), index.getDropSet("main_01-07", 100L));
+		assertTrue(index.getDropSet("act_01", 80L).isEmpty());
+		assertTrue(index.getDropSet("missing", 10L).isEmpty());
+	}
+
+	@Test
+	public void testDropSetInterned() {
+		DropInfoIntervalIndex index = buildIndex();
+		assertSame(index.getDropSet("main_01-07", 10L), index.getDropSet("main_01-07", 60L));
+		assertSame(index.getDropSet("main_01-07", 10L), index.getDropSet("act_01", 60L));
+	}
+
+	@Test
+	public void testStages() {
+		DropInfoIntervalIndex index = buildIndex();
+		assertEquals(new HashSet<>(Arrays.asList("main_01-07", "act_01")), index.getOpeningStages(60L));
+		assertEquals(new HashSet<>(Arrays.asList("main_01-07", "act_01", "act_02")), index.getActiveStages(60L));
+		assertEquals(new HashSet<>(Arrays.asList("main_01-07")), index.getOpeningStages(1000L));
+		assertEquals(2, index.getActiveDropInfos("main_01-07", 10L).size());
+		assertEquals(2, index.getTimeRanges("main_01-07").size());
+	}
+
+}
@@ -0,0 +1,107 @@
+package io.penguinstats.util.index;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import io.penguinstats.util.index.DropPrefixSumIndex.Counts;
+
+public class DropPrefixSumIndexTest {
+
+	private static final long DAY = 86400000L;
+
+	private DropPrefixSumIndex buildIndex() {
+		DropPrefixSumIndex index = DropPrefixSumIndex.empty(DAY, 0L, 10L);
+		Map<String, Map<Long, Counts>> first = new HashMap<>();
+		first.computeIfAbsent("main_01-07", k -> new HashMap<>()).put(10L,
+				new Counts().addTimes(5).addQuantity("30012", 3));
+		first.computeIfAbsent("main_01-07", k -> new HashMap<>()).put(12L,
+				new Counts().addTimes(2).addQuantity("30012", 1).addQuantity("30013", 1));
+		index = index.append(13L, first);
+
+		Map<String, Map<Long, Counts>> second = new HashMap<>();
+		second.computeIfAbsent("main_01-07", k -> new HashMap<>()).put(14L, new Counts().addTimes(4));
+		second.computeIfAbsent("main_04-04", k -> new HashMap<>()).put(13L,
+				new Counts().addTimes(1).addQuantity("30062", 1));
+		return index.append(15L, second);
+	}
+
+	@Test
+	public void testSum() {
+		DropPrefixSumIndex index = buildIndex();
+
+		Counts all = index.sum("main_01-07", 0L, 100L);
+		assertEquals(11L, all.getTimes());
+		assertEquals(Long.valueOf(4L), all.getQuantities().get("30012"));
+		assertEquals(Long.valueOf(1L), all.getQuantities().get("30013"));
+
+		Counts middle = index.sum("main_01-07", 11L, 13L);
+		assertEquals(2L, middle.getTimes());
+		assertEquals(Long.valueOf(1L), middle.getQuantities().get("30012"));
+
+		Counts tail = index.sum("main_01-07", 13L, 15L);
+		assertEquals(4L, tail.getTimes());
+		assertNull(tail.getQuantities().get("30012"));
+
+		assertEquals(1L, index.sum("main_04-04", 10L, 15L).getTimes());
+		assertEquals(0L, index.sum("main_04-04", 10L, 13L).getTimes());
+		assertEquals(0L, index.sum("main_00-01", 10L, 15L).getTimes());
+	}
+
+	@Test
+	public void testReplaceStage() {
+		DropPrefixSumIndex index = buildIndex();
+		Map<Long, Counts> countsByBucket = new HashMap<>();
+		// the report in bucket 12 is removed
+		countsByBucket.put(10L, new Counts().addTimes(5).addQuantity("30012", 3));
+		countsByBucket.put(14L, new Counts().addTimes(4));
+		DropPrefixSumIndex replaced = index.replaceStage("main_01-07", countsByBucket);
+
+		Counts all = replaced.sum("main_01-07", 0L, 100L);
+		assertEquals(9L, all.getTimes());
+		assertEquals(Long.valueOf(3L), all.getQuantities().get("30012"));
+		assertNull(all.getQuantities().get("30013"));
+		assertEquals(1L, replaced.sum("main_04-04", 10L, 15L).getTimes());
+		assertEquals(11L, index.sum("main_01-07", 0L, 100L).getTimes());
+
+		assertEquals(0L, index.replaceStage("main_04-04", new HashMap<>()).sum("main_04-04", 10L, 15L).getTimes());
+	}
+
+	@Test
+	public void testBucket() {
+		DropPrefixSumIndex index = DropPrefixSumIndex.empty(DAY, -8 * 3600000L, 0L);
+		assertEquals(0L, index.bucketOf(-8 * 3600000L));
+		assertEquals(-1L, index.bucketOf(-8 * 3600000L - 1));
+		assertEquals(DAY - 8 * 3600000L, index.bucketStart(1L));
+	}
+
+	@Test
+	public void testWriteAndRead() throws IOException {
+		DropPrefixSumIndex index = buildIndex();
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		index.writeTo(new DataOutputStream(bytes));
+		DropPrefixSumIndex read =
+				DropPrefixSumIndex.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+		assertEquals(index.getEndBucket(), read.getEndBucket());
+		assertEquals(index.getStageIds(), read.getStageIds());
+		for (long from = 9L; from <= 15L; from++) {
+			for (long to = from; to <= 16L; to++) {
+				Counts expected = index.sum("main_01-07", from, to);
+				Counts actual = read.sum("main_01-07", from, to);
+				assertEquals(expected.getTimes(), actual.getTimes());
+				assertEquals(expected.getQuantities(), actual.getQuantities());
+			}
+		}
+	}
+
+}
@@ -0,0 +1,42 @@
+package io.penguinstats.util.index;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+public class LongObjectMapTest {
+
+	@Test
+	public void testPutAndGet() {
+		LongObjectMap<String> map = new LongObjectMap<>(2);
+		for (int stage = 0; stage < 100; stage++) {
+			for (int item = 0; item < 50; item++)
+				map.put(IdRegistry.pairKey(stage, item), stage + "_" + item);
+		}
+		assertEquals(5000, map.size());
+		assertEquals("42_7", map.get(IdRegistry.pairKey(42, 7)));
+		assertNull(map.get(IdRegistry.pairKey(7, 42 + 50)));
+		assertFalse(map.containsKey(IdRegistry.pairKey(100, 0)));
+		assertEquals("42_7", map.computeIfAbsent(IdRegistry.pairKey(42, 7), k -> "other"));
+	}
+
+	@Test
+	public void testPairKey() {
+		long key = IdRegistry.pairKey(12345, 67890);
+		assertEquals(12345, IdRegistry.highOf(key));
+		assertEquals(67890, IdRegistry.lowOf(key));
+	}
+
+	@Test
+	public void testIdRegistry() {
+		IdRegistry registry = new IdRegistry();
+		for (int i = 0; i < 200; i++)
+			assertEquals(i, registry.idOf("item_" + i));
+		assertEquals(5, registry.idOf("item_5"));
+		assertEquals("item_199", registry.nameOf(199));
+		assertEquals(200, registry.size());
+	}
+
+}
@@ -0,0 +1,24 @@
+package io.penguinstats.util.misc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+public class GenerationalCacheTest {
+
+	@Test
+	public void testEviction() {
+		GenerationalCache<String, Integer> cache = new GenerationalCache<>(2);
+		cache.put("a", 1);
+		cache.put("b", 2);
+		// a and b are now the previous generation, reading a keeps it
+		assertEquals(Integer.valueOf(1), cache.get("a"));
+		cache.put("c", 3);
+		// a and c are the previous generation, b is dropped
+		assertNull(cache.get("b"));
+		assertEquals(Integer.valueOf(1), cache.get("a"));
+		assertEquals(Integer.valueOf(3), cache.get("c"));
+	}
+
+}